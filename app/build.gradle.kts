@@ -36,6 +36,11 @@ android {
     buildFeatures {
         viewBinding = true
     }
+
+    testOptions {
+        // android.util.Log and friends return defaults in local unit tests
+        unitTests.isReturnDefaultValues = true
+    }
 }
 
 dependencies {
@@ -66,6 +71,10 @@ dependencies {
     implementation(libs.gson)
 
     testImplementation(libs.junit)
+
+    // Micro-benchmarks under src/test, run from their main()
+    testImplementation(libs.jmhCore)
+    testAnnotationProcessor(libs.jmhGenerator)
     androidTestImplementation(libs.extJunit)
     androidTestImplementation(libs.espressoCore)
 }
\ No newline at end of file
@@ -0,0 +1,95 @@
+package com.example.expensemanager.data;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.expensemanager.data.local.AppDatabase;
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that queued writes share transactions and that a failing write does not
+ * take the rest of its group down with it.
+ */
+@RunWith(AndroidJUnit4.class)
+public class DataSchedulerTest {
+
+    private static final String USER = "user-a";
+
+    private AppDatabase db;
+    private DataScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class).build();
+        scheduler = new DataScheduler(db);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private CompletableFuture<Long> insert(long contentHash) {
+        return scheduler.write(new DataScheduler.Write<Long>() {
+            @Override
+            protected Long apply() {
+                TransactionEntity entity = new TransactionEntity();
+                entity.userId = USER;
+                entity.amountMinor = 100;
+                entity.contentHash = contentHash;
+                return db.transactionDao().insert(entity);
+            }
+        });
+    }
+
+    @Test
+    public void burstOfWrites_isGroupedIntoFewerCommits() throws Exception {
+        List<CompletableFuture<Long>> futures = new ArrayList<>();
+        for (int i = 0; i < 50; i++) {
+            futures.add(insert(i));
+        }
+        for (CompletableFuture<Long> future : futures) {
+            assertTrue(future.get(5, TimeUnit.SECONDS) > 0);
+        }
+
+        DataScheduler.Stats stats = scheduler.getStats();
+        assertEquals(50, stats.writes);
+        assertTrue(stats.commits < 50);
+        assertEquals(0, stats.writeQueueDepth);
+        assertEquals(50, db.transactionDao().countByUser(USER));
+    }
+
+    @Test
+    public void failingWrite_failsAlone() throws Exception {
+        CompletableFuture<Long> first = insert(1);
+        CompletableFuture<Long> duplicate = insert(1); // unique (userId, contentHash)
+        CompletableFuture<Long> second = insert(2);
+
+        assertTrue(first.get(5, TimeUnit.SECONDS) > 0);
+        assertTrue(second.get(5, TimeUnit.SECONDS) > 0);
+        try {
+            duplicate.get(5, TimeUnit.SECONDS);
+            fail("Duplicate content hash should not insert");
+        } catch (ExecutionException expected) {
+            // SQLiteConstraintException
+        }
+        assertEquals(2, db.transactionDao().countByUser(USER));
+    }
+}
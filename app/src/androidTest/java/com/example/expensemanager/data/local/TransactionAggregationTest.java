@@ -0,0 +1,173 @@
+package com.example.expensemanager.data.local;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import com.example.expensemanager.utils.DateKeys;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the SQL aggregates in TransactionDao against the Java loops the dashboard
+ * used to run over the full transaction list.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransactionAggregationTest {
+
+    private static final String USER = "user-a";
+    private static final String OTHER_USER = "user-b";
+    private static final String[] CATEGORIES = {"Food", "Transport", "Shopping", "Bills", null};
+
+    private AppDatabase db;
+    private TransactionDao dao;
+    private final List<TransactionEntity> seeded = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.transactionDao();
+
+        // Two years of history ending today, plus another user's rows that must be ignored
+        Random random = new Random(42);
+        long now = System.currentTimeMillis();
+        long twoYears = 2L * 365 * 24 * 60 * 60 * 1000;
+        for (int i = 0; i < 2000; i++) {
+            TransactionEntity entity = new TransactionEntity();
+            entity.userId = i % 10 == 0 ? OTHER_USER : USER;
+            entity.type = random.nextInt(4) == 0 ? "income" : "expense";
+            entity.category = CATEGORIES[random.nextInt(CATEGORIES.length)];
+            entity.wallet = "Cash";
+            entity.amountMinor = Math.round(random.nextDouble() * 500000);
+            entity.dateTimestamp = now - (long) (random.nextDouble() * twoYears);
+            entity.yearMonth = DateKeys.yearMonth(entity.dateTimestamp);
+            entity.dayKey = DateKeys.dayKey(entity.dateTimestamp);
+            entity.contentHash = ContentHash.of(entity);
+            entity.typeCode = TransactionEntity.typeCode(entity.type);
+            entity.categoryId = categoryId(entity.category);
+            entity.walletId = walletId(entity.wallet);
+            dao.insert(entity);
+            if (USER.equals(entity.userId)) {
+                seeded.add(entity);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private Integer categoryId(String name) {
+        if (name == null) return null;
+        CategoryEntity category = new CategoryEntity();
+        category.name = name;
+        db.dictionaryDao().insertCategory(category);
+        return db.dictionaryDao().getCategoryId(name);
+    }
+
+    private Integer walletId(String name) {
+        WalletEntity wallet = new WalletEntity();
+        wallet.name = name;
+        db.dictionaryDao().insertWallet(wallet);
+        return db.dictionaryDao().getWalletId(name);
+    }
+
+    @Test
+    public void totalsByType_matchJavaLoop() {
+        long totalIncome = 0;
+        long totalExpense = 0;
+        int incomeCount = 0;
+        int expenseCount = 0;
+        for (TransactionEntity entity : seeded) {
+            if ("income".equals(entity.type)) {
+                totalIncome += entity.amountMinor;
+                incomeCount++;
+            } else if ("expense".equals(entity.type)) {
+                totalExpense += entity.amountMinor;
+                expenseCount++;
+            }
+        }
+
+        Map<String, TypeTotal> byType = new HashMap<>();
+        for (TypeTotal total : dao.getTotalsByTypeSync(USER)) {
+            byType.put(total.type, total);
+        }
+        assertEquals(totalIncome, byType.get("income").total);
+        assertEquals(incomeCount, byType.get("income").count);
+        assertEquals(totalExpense, byType.get("expense").total);
+        assertEquals(expenseCount, byType.get("expense").count);
+        assertEquals(seeded.size(), dao.countByUser(USER));
+    }
+
+    @Test
+    public void currentMonthExpense_matchesJavaLoop() {
+        Calendar currentMonth = Calendar.getInstance();
+        int currentYear = currentMonth.get(Calendar.YEAR);
+        int currentMonthValue = currentMonth.get(Calendar.MONTH);
+        long currentMonthExpense = 0;
+        for (TransactionEntity entity : seeded) {
+            if ("expense".equals(entity.type)) {
+                Calendar expenseCal = Calendar.getInstance();
+                expenseCal.setTimeInMillis(entity.dateTimestamp);
+                if (expenseCal.get(Calendar.YEAR) == currentYear &&
+                    expenseCal.get(Calendar.MONTH) == currentMonthValue) {
+                    currentMonthExpense += entity.amountMinor;
+                }
+            }
+        }
+
+        long fromSql = dao.getTypeTotalInRangeSync(USER, TransactionEntity.TYPE_EXPENSE,
+                DateKeys.monthStart(currentYear, currentMonthValue),
+                DateKeys.monthEnd(currentYear, currentMonthValue));
+        assertEquals(currentMonthExpense, fromSql);
+    }
+
+    @Test
+    public void monthlyCategoryTotals_matchJavaLoopForEveryMonth() {
+        Calendar month = Calendar.getInstance();
+        for (int i = 0; i < 25; i++) {
+            int year = month.get(Calendar.YEAR);
+            int monthValue = month.get(Calendar.MONTH);
+
+            Map<String, Long> expected = new HashMap<>();
+            Calendar transactionCal = Calendar.getInstance();
+            for (TransactionEntity transaction : seeded) {
+                transactionCal.setTimeInMillis(transaction.dateTimestamp);
+                if (transactionCal.get(Calendar.YEAR) == year &&
+                    transactionCal.get(Calendar.MONTH) == monthValue &&
+                    "expense".equals(transaction.type)) {
+                    String category = transaction.category != null ? transaction.category : "Others";
+                    expected.put(category, expected.getOrDefault(category, 0L) + transaction.amountMinor);
+                }
+            }
+
+            List<CategoryTotal> actual = dao.getCategoryTotalsInRangeSync(USER, TransactionEntity.TYPE_EXPENSE,
+                    DateKeys.monthStart(year, monthValue), DateKeys.monthEnd(year, monthValue));
+            assertEquals(expected.size(), actual.size());
+            for (CategoryTotal total : actual) {
+                assertTrue(expected.containsKey(total.category));
+                assertEquals((long) expected.get(total.category), total.total);
+            }
+
+            month.add(Calendar.MONTH, -1);
+        }
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.expensemanager.data.local;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks that moving rows into transactions_archive leaves monthly_rollup alone
+ * and that the union pages read both tables in one keyset order.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransactionArchiveTest {
+
+    private static final String USER = "user-a";
+    private static final long CUTOFF = 1_000;
+
+    private AppDatabase db;
+    private TransactionDao dao;
+    private ArchiveDao archiveDao;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .addCallback(AppDatabase.CREATE_TRIGGERS)
+                .build();
+        dao = db.transactionDao();
+        archiveDao = db.archiveDao();
+
+        // Ten rows either side of the cutoff, spread over two months
+        for (int i = 0; i < 20; i++) {
+            insert(i * 100L, i % 2 == 0 ? 202401 : 202402, 1000 + i);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private long insert(long timestamp, int yearMonth, long amountMinor) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.userId = USER;
+        entity.amountMinor = amountMinor;
+        entity.dateTimestamp = timestamp;
+        entity.yearMonth = yearMonth;
+        entity.contentHash = timestamp * 31 + amountMinor;
+        return dao.insert(entity);
+    }
+
+    private void archive() {
+        db.runInTransaction(() -> {
+            archiveDao.copyOlderThan(USER, CUTOFF);
+            archiveDao.deleteHotOlderThan(USER, CUTOFF);
+        });
+    }
+
+    private long categoryTotal(int yearMonth) {
+        List<CategoryTotal> totals = db.rollupDao().getCategoryTotalsForMonthsSync(
+                USER, TransactionEntity.TYPE_EXPENSE, yearMonth, yearMonth);
+        assertEquals(1, totals.size());
+        return totals.get(0).total;
+    }
+
+    @Test
+    public void move_keepsRollupTotals() {
+        long january = categoryTotal(202401);
+        archive();
+
+        assertEquals(10, dao.countByUser(USER));
+        assertEquals(Long.valueOf(CUTOFF - 100 + 1), archiveDao.getArchivedBefore(USER));
+        assertEquals(january, categoryTotal(202401));
+
+        // Deleting an archived row still comes off the totals
+        TransactionArchiveEntity oldest = archiveDao.getById(1);
+        archiveDao.deleteById(oldest.id);
+        assertEquals(january - oldest.amountMinor, categoryTotal(202401));
+    }
+
+    @Test
+    public void unionPage_interleavesBackdatedHotRows() {
+        archive();
+        long backdated = insert(450, 202401, 5);
+
+        List<TransactionRow> page = archiveDao.getPageBefore(USER, Long.MIN_VALUE, Long.MAX_VALUE,
+                500, Long.MAX_VALUE, 3);
+        assertEquals(3, page.size());
+        assertEquals(backdated, page.get(0).id);
+        assertEquals(400, page.get(1).dateTimestamp);
+        assertEquals(300, page.get(2).dateTimestamp);
+    }
+
+    @Test
+    public void copyToHot_restoresRowWithItsId() {
+        archive();
+        long id = archiveDao.getById(5).id;
+        db.runInTransaction(() -> {
+            archiveDao.copyToHot(id);
+            archiveDao.deleteById(id);
+        });
+
+        assertNull(archiveDao.getById(id));
+        assertEquals(400, dao.getById(id).dateTimestamp);
+        assertNull(archiveDao.getArchivedBefore("nobody"));
+    }
+}
@@ -0,0 +1,129 @@
+package com.example.expensemanager.data.local;
+
+import android.content.Context;
+
+import androidx.room.Room;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * Checks the transactions_fts index stays in step with transactions and that
+ * search() filters and ranks the way the transaction list expects.
+ */
+@RunWith(AndroidJUnit4.class)
+public class TransactionSearchTest {
+
+    private static final String USER = "user-a";
+    private static final String OTHER_USER = "user-b";
+
+    private AppDatabase db;
+    private TransactionDao dao;
+    private int foodId;
+    private long nextTimestamp = 1_700_000_000_000L;
+
+    @Before
+    public void setUp() {
+        Context context = InstrumentationRegistry.getInstrumentation().getTargetContext();
+        db = Room.inMemoryDatabaseBuilder(context, AppDatabase.class)
+                .allowMainThreadQueries()
+                .build();
+        dao = db.transactionDao();
+
+        CategoryEntity food = new CategoryEntity();
+        food.name = "Food";
+        foodId = (int) db.dictionaryDao().insertCategory(food);
+    }
+
+    @After
+    public void tearDown() {
+        db.close();
+    }
+
+    private long insert(String userId, Integer categoryId, String note) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.userId = userId;
+        entity.categoryId = categoryId;
+        entity.amountMinor = 1000;
+        entity.dateTimestamp = nextTimestamp++;
+        entity.note = note;
+        entity.contentHash = entity.dateTimestamp;
+        return dao.insert(entity);
+    }
+
+    private List<TransactionRow> search(String text) {
+        return dao.search(USER, TransactionFtsEntity.toMatchQuery(text), 50);
+    }
+
+    @Test
+    public void search_matchesWordPrefixesForOneUser() {
+        long groceries = insert(USER, foodId, "Groceries from the supermarket");
+        insert(USER, foodId, "Bus fare");
+        insert(OTHER_USER, foodId, "Groceries for someone else");
+
+        List<TransactionRow> hits = search("gro SUP");
+        assertEquals(1, hits.size());
+        assertEquals(groceries, hits.get(0).id);
+        assertTrue(search("market").isEmpty()); // prefixes only, not substrings
+    }
+
+    @Test
+    public void search_ranksNotesWithMoreMatchesFirst() {
+        long once = insert(USER, null, "tea");
+        long twice = insert(USER, null, "tea and more tea");
+        long newerOnce = insert(USER, null, "iced tea");
+
+        List<TransactionRow> hits = search("tea");
+        assertEquals(3, hits.size());
+        assertEquals(twice, hits.get(0).id);
+        // Equal rank falls back to newest first
+        assertEquals(newerOnce, hits.get(1).id);
+        assertEquals(once, hits.get(2).id);
+    }
+
+    @Test
+    public void search_combinesWithCategoryAndDateFilters() {
+        long inFood = insert(USER, foodId, "lunch");
+        long uncategorised = insert(USER, null, "lunch");
+
+        List<TransactionRow> byCategory = dao.searchInCategory(USER, TransactionFtsEntity.toMatchQuery("lunch"),
+                foodId, Long.MIN_VALUE, Long.MAX_VALUE, 50);
+        assertEquals(1, byCategory.size());
+        assertEquals(inFood, byCategory.get(0).id);
+
+        TransactionEntity second = dao.getById(uncategorised);
+        List<TransactionRow> byDate = dao.search(USER, TransactionFtsEntity.toMatchQuery("lunch"),
+                second.dateTimestamp, second.dateTimestamp + 1, 50);
+        assertEquals(1, byDate.size());
+        assertEquals(uncategorised, byDate.get(0).id);
+    }
+
+    @Test
+    public void index_followsUpdatesAndDeletes() {
+        long id = insert(USER, null, "old note");
+        TransactionEntity entity = dao.getById(id);
+        entity.note = "new note";
+        dao.update(entity);
+
+        assertTrue(search("old").isEmpty());
+        assertEquals(1, search("new").size());
+
+        dao.delete(entity);
+        assertTrue(search("note").isEmpty());
+    }
+
+    @Test
+    public void toMatchQuery_quotesTermsAndDropsOperators() {
+        assertEquals("\"rent*\" \"OR*\"", TransactionFtsEntity.toMatchQuery("rent OR -\"*"));
+        assertNull(TransactionFtsEntity.toMatchQuery("  -*() "));
+        assertNull(TransactionFtsEntity.toMatchQuery(null));
+    }
+}
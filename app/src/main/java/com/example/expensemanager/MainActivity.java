@@ -10,10 +10,12 @@ import androidx.annotation.NonNull;
 import androidx.appcompat.app.AlertDialog;
 import androidx.appcompat.app.AppCompatActivity;
 import androidx.fragment.app.Fragment;
+import androidx.lifecycle.ViewModelProvider;
 
 import com.example.expensemanager.databinding.ActivityMainBinding;
 import com.example.expensemanager.ui.main.DashboardFragment;
 import com.example.expensemanager.ui.main.AIInsightsFragment;
+import com.example.expensemanager.ui.main.TransactionViewModel;
 import com.example.expensemanager.ui.main.TransactionsFragment;
 import com.example.expensemanager.utils.BudgetPreferences;
 import com.google.android.material.navigation.NavigationBarView;
@@ -39,6 +41,8 @@ public class MainActivity extends AppCompatActivity {
         // Default fragment
         if (savedInstanceState == null) {
             replaceFragment(new DashboardFragment());
+            // Keep the hot table trimmed to the configured horizon, once per app start
+            new ViewModelProvider(this).get(TransactionViewModel.class).archiveOldTransactions(null);
         }
 
         binding.bottomNav.setOnItemSelectedListener(new NavigationBarView.OnItemSelectedListener() {
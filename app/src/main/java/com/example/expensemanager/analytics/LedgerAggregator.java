@@ -0,0 +1,323 @@
+package com.example.expensemanager.analytics;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.CategoryTotal;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateBuckets;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Builds a LedgerSummary in one pass over the column store. Month windows are turned
+ * into timestamp bounds up front, so each row costs a few comparisons and no calendar
+ * work.
+ * <p>
+ * Large ledgers are split into contiguous chunks scanned as fork/join tasks, each
+ * filling its own Partial; partials are merged pairwise as the tasks join, and the
+ * category lists are sorted once at the end. Below PARALLEL_THRESHOLD rows one thread
+ * scans everything, as splitting costs more than it saves.
+ */
+public final class LedgerAggregator {
+
+    private static final String UNCATEGORISED = "Others";
+    // Rows between checks for cancellation
+    private static final int CANCEL_CHECK_INTERVAL = 8192;
+    // Ledgers smaller than this are scanned on the calling thread
+    static final int PARALLEL_THRESHOLD = 50_000;
+    // Rows per fork/join leaf; large enough to amortise a task, small enough to balance
+    static final int CHUNK_ROWS = 16_384;
+
+    private LedgerAggregator() {
+    }
+
+    /**
+     * @param nowMillis Decides the current, previous and year-to-date windows
+     * @param selectedYearMonth yyyyMM of the month the dashboard is showing
+     * @param budget Monthly budget in paisa, or 0 for none
+     */
+    public static LedgerSummary summarize(Columns columns, long nowMillis, int selectedYearMonth, long budget) {
+        return summarize(columns, nowMillis, selectedYearMonth, budget, () -> false);
+    }
+
+    /**
+     * @param cancelled Polled during the scan, possibly from several threads; once it
+     *                  returns true the pass stops
+     * @return The summary, or null if cancelled
+     */
+    public static LedgerSummary summarize(Columns columns, long nowMillis, int selectedYearMonth, long budget,
+                                          BooleanSupplier cancelled) {
+        return summarize(columns, nowMillis, selectedYearMonth, budget, cancelled, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * As above, splitting large scans over the given pool
+     */
+    static LedgerSummary summarize(Columns columns, long nowMillis, int selectedYearMonth, long budget,
+                                   BooleanSupplier cancelled, ForkJoinPool pool) {
+        Windows windows = new Windows(nowMillis, selectedYearMonth);
+        Partial totals;
+        if (columns.size < PARALLEL_THRESHOLD || pool.getParallelism() < 2) {
+            totals = scan(columns, windows, 0, columns.size, cancelled);
+        } else {
+            totals = pool.invoke(new ScanTask(columns, windows, 0, columns.size, cancelled));
+        }
+        if (totals == null) return null;
+
+        List<CategoryTotal> currentByCategory = toTotals(columns, totals.current, totals.currentCount);
+        List<CategoryTotal> previousByCategory = toTotals(columns, totals.previous, totals.previousCount);
+        List<CategoryTotal> selectedByCategory = toTotals(columns, totals.selected, totals.selectedCount);
+        return new LedgerSummary(totals.totalIncome, totals.totalExpense, totals.incomeCount, totals.expenseCount,
+                windows.currentYearMonth, windows.previousYearMonth, selectedYearMonth,
+                totals.currentMonthIncome, sum(currentByCategory), totals.previousMonthIncome,
+                sum(previousByCategory), sum(selectedByCategory),
+                currentByCategory, previousByCategory, selectedByCategory,
+                toTotals(columns, totals.yearToDate, totals.yearToDateCount),
+                largestChange(currentByCategory, previousByCategory, true),
+                largestChange(currentByCategory, previousByCategory, false), budget);
+    }
+
+    /**
+     * Scan rows [from, to) into a new Partial
+     * @return The partial, or null if cancelled
+     */
+    private static Partial scan(Columns columns, Windows windows, int from, int to, BooleanSupplier cancelled) {
+        Partial partial = new Partial(columns.categorySlots());
+        long[] current = partial.current;
+        long[] previous = partial.previous;
+        long[] selected = partial.selected;
+        long[] yearToDate = partial.yearToDate;
+        int[] currentCount = partial.currentCount;
+        int[] previousCount = partial.previousCount;
+        int[] selectedCount = partial.selectedCount;
+        int[] yearToDateCount = partial.yearToDateCount;
+        long yearStart = windows.yearStart;
+        long previousStart = windows.previousStart;
+        long currentStart = windows.currentStart;
+        long currentEnd = windows.currentEnd;
+        long selectedStart = windows.selectedStart;
+        long selectedEnd = windows.selectedEnd;
+
+        for (int i = from; i < to; i++) {
+            if ((i - from) % CANCEL_CHECK_INTERVAL == 0 && cancelled.getAsBoolean()) {
+                return null;
+            }
+            long timestamp = columns.timestampAt(i);
+            long amount = columns.amountAt(i);
+            if (columns.typeAt(i) == TransactionEntity.TYPE_INCOME) {
+                partial.totalIncome += amount;
+                partial.incomeCount++;
+                if (timestamp >= currentStart && timestamp < currentEnd) {
+                    partial.currentMonthIncome += amount;
+                } else if (timestamp >= previousStart && timestamp < currentStart) {
+                    partial.previousMonthIncome += amount;
+                }
+                continue;
+            }
+            partial.totalExpense += amount;
+            partial.expenseCount++;
+            int category = columns.categoryAt(i);
+            if (timestamp >= currentStart && timestamp < currentEnd) {
+                current[category] += amount;
+                currentCount[category]++;
+            } else if (timestamp >= previousStart && timestamp < currentStart) {
+                previous[category] += amount;
+                previousCount[category]++;
+            }
+            if (timestamp >= yearStart && timestamp < currentEnd) {
+                yearToDate[category] += amount;
+                yearToDateCount[category]++;
+            }
+            if (timestamp >= selectedStart && timestamp < selectedEnd) {
+                selected[category] += amount;
+                selectedCount[category]++;
+            }
+        }
+        return partial;
+    }
+
+    /**
+     * Timestamp bounds of the months a summary reports on
+     */
+    private static final class Windows {
+        final int currentYearMonth;
+        final int previousYearMonth;
+        final long yearStart;
+        final long previousStart;
+        final long currentStart;
+        final long currentEnd;
+        final long selectedStart;
+        final long selectedEnd;
+
+        Windows(long nowMillis, int selectedYearMonth) {
+            DateBuckets buckets = DateBuckets.current();
+            currentYearMonth = buckets.yearMonth(nowMillis);
+            int year = currentYearMonth / 100;
+            int month = currentYearMonth % 100 - 1;
+            previousYearMonth = month == 0 ? (year - 1) * 100 + 12 : currentYearMonth - 1;
+
+            yearStart = buckets.monthStart(year, 0);
+            previousStart = buckets.monthStart(previousYearMonth / 100, previousYearMonth % 100 - 1);
+            currentStart = buckets.monthStart(year, month);
+            currentEnd = buckets.monthEnd(year, month);
+            selectedStart = buckets.monthStart(selectedYearMonth / 100, selectedYearMonth % 100 - 1);
+            selectedEnd = buckets.monthEnd(selectedYearMonth / 100, selectedYearMonth % 100 - 1);
+        }
+    }
+
+    /**
+     * Sums over one chunk of rows. Per-category arrays are indexed by category id.
+     */
+    private static final class Partial {
+        long totalIncome;
+        long totalExpense;
+        int incomeCount;
+        int expenseCount;
+        long currentMonthIncome;
+        long previousMonthIncome;
+        final long[] current;
+        final long[] previous;
+        final long[] selected;
+        final long[] yearToDate;
+        final int[] currentCount;
+        final int[] previousCount;
+        final int[] selectedCount;
+        final int[] yearToDateCount;
+
+        Partial(int slots) {
+            current = new long[slots];
+            previous = new long[slots];
+            selected = new long[slots];
+            yearToDate = new long[slots];
+            currentCount = new int[slots];
+            previousCount = new int[slots];
+            selectedCount = new int[slots];
+            yearToDateCount = new int[slots];
+        }
+
+        /**
+         * Add another chunk's sums into this one
+         */
+        Partial merge(Partial other) {
+            totalIncome += other.totalIncome;
+            totalExpense += other.totalExpense;
+            incomeCount += other.incomeCount;
+            expenseCount += other.expenseCount;
+            currentMonthIncome += other.currentMonthIncome;
+            previousMonthIncome += other.previousMonthIncome;
+            for (int id = 0; id < current.length; id++) {
+                current[id] += other.current[id];
+                previous[id] += other.previous[id];
+                selected[id] += other.selected[id];
+                yearToDate[id] += other.yearToDate[id];
+                currentCount[id] += other.currentCount[id];
+                previousCount[id] += other.previousCount[id];
+                selectedCount[id] += other.selectedCount[id];
+                yearToDateCount[id] += other.yearToDateCount[id];
+            }
+            return this;
+        }
+    }
+
+    /**
+     * Halves its range until it is at most CHUNK_ROWS long, then scans. Null from
+     * either half means the pass was cancelled.
+     */
+    private static final class ScanTask extends RecursiveTask<Partial> {
+        private final Columns columns;
+        private final Windows windows;
+        private final int from;
+        private final int to;
+        private final BooleanSupplier cancelled;
+
+        ScanTask(Columns columns, Windows windows, int from, int to, BooleanSupplier cancelled) {
+            this.columns = columns;
+            this.windows = windows;
+            this.from = from;
+            this.to = to;
+            this.cancelled = cancelled;
+        }
+
+        @Override
+        protected Partial compute() {
+            if (to - from <= CHUNK_ROWS) {
+                return scan(columns, windows, from, to, cancelled);
+            }
+            int mid = (from + to) >>> 1;
+            ScanTask left = new ScanTask(columns, windows, from, mid, cancelled);
+            left.fork();
+            Partial right = new ScanTask(columns, windows, mid, to, cancelled).compute();
+            Partial leftTotals = left.join();
+            if (leftTotals == null || right == null) return null;
+            return leftTotals.merge(right);
+        }
+    }
+
+    /**
+     * The category whose spending rose (or fell) the most in percent, among those with
+     * spending in both months, or null if none moved that way
+     */
+    private static LedgerSummary.CategoryChange largestChange(List<CategoryTotal> current,
+                                                              List<CategoryTotal> previous, boolean increase) {
+        Map<String, Long> previousTotals = new HashMap<>();
+        for (CategoryTotal total : previous) {
+            previousTotals.put(total.category, total.total);
+        }
+        LedgerSummary.CategoryChange best = null;
+        for (CategoryTotal total : current) {
+            Long last = previousTotals.get(total.category);
+            if (last == null || last <= 0) continue;
+            LedgerSummary.CategoryChange change = new LedgerSummary.CategoryChange(total.category, last, total.total);
+            double percent = change.percentChange();
+            if (increase ? percent > 0 && (best == null || percent > best.percentChange())
+                    : percent < 0 && (best == null || percent < best.percentChange())) {
+                best = change;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * Per-category sums as a list, largest first. Rows without a category are reported
+     * as "Others", merged with a category of that name, like the rollup queries do.
+     */
+    private static List<CategoryTotal> toTotals(Columns columns, long[] totals, int[] counts) {
+        List<CategoryTotal> result = new ArrayList<>();
+        CategoryTotal others = null;
+        for (int id = 0; id < totals.length; id++) {
+            if (counts[id] == 0) continue;
+            String name = id == Columns.NONE ? null : columns.categoryName(id);
+            if (name == null || name.equals(UNCATEGORISED)) {
+                if (others == null) {
+                    others = new CategoryTotal();
+                    others.category = UNCATEGORISED;
+                    result.add(others);
+                }
+                others.total += totals[id];
+                others.count += counts[id];
+                continue;
+            }
+            CategoryTotal total = new CategoryTotal();
+            total.category = name;
+            total.total = totals[id];
+            total.count = counts[id];
+            result.add(total);
+        }
+        Collections.sort(result, (a, b) -> Long.compare(b.total, a.total));
+        return Collections.unmodifiableList(result);
+    }
+
+    private static long sum(List<CategoryTotal> totals) {
+        long sum = 0;
+        for (CategoryTotal total : totals) {
+            sum += total.total;
+        }
+        return sum;
+    }
+}
@@ -0,0 +1,117 @@
+package com.example.expensemanager.analytics;
+
+import com.example.expensemanager.data.local.CategoryTotal;
+
+import java.util.List;
+
+/**
+ * Everything the dashboard, budget card and insights show, computed together by
+ * LedgerAggregator. Immutable; amounts are paisa and category lists are expenses
+ * only, largest first.
+ */
+public final class LedgerSummary {
+
+    // All time
+    public final long totalIncome;
+    public final long totalExpense;
+    public final int incomeCount;
+    public final int expenseCount;
+
+    // yyyyMM keys the month figures refer to
+    public final int currentYearMonth;
+    public final int previousYearMonth;
+    public final int selectedYearMonth;
+
+    public final long currentMonthIncome;
+    public final long currentMonthExpense;
+    public final long previousMonthIncome;
+    public final long previousMonthExpense;
+    public final long selectedMonthExpense;
+
+    public final List<CategoryTotal> currentMonthByCategory;
+    public final List<CategoryTotal> previousMonthByCategory;
+    public final List<CategoryTotal> selectedMonthByCategory;
+    public final List<CategoryTotal> yearToDateByCategory;  // January through the current month
+
+    // Categories that changed most against last month, among those spent on in both; may be null
+    public final CategoryChange largestIncrease;
+    public final CategoryChange largestDecrease;
+
+    public final long budget;  // monthly budget, 0 when none is set
+
+    LedgerSummary(long totalIncome, long totalExpense, int incomeCount, int expenseCount,
+                  int currentYearMonth, int previousYearMonth, int selectedYearMonth,
+                  long currentMonthIncome, long currentMonthExpense,
+                  long previousMonthIncome, long previousMonthExpense, long selectedMonthExpense,
+                  List<CategoryTotal> currentMonthByCategory, List<CategoryTotal> previousMonthByCategory,
+                  List<CategoryTotal> selectedMonthByCategory, List<CategoryTotal> yearToDateByCategory,
+                  CategoryChange largestIncrease, CategoryChange largestDecrease, long budget) {
+        this.totalIncome = totalIncome;
+        this.totalExpense = totalExpense;
+        this.incomeCount = incomeCount;
+        this.expenseCount = expenseCount;
+        this.currentYearMonth = currentYearMonth;
+        this.previousYearMonth = previousYearMonth;
+        this.selectedYearMonth = selectedYearMonth;
+        this.currentMonthIncome = currentMonthIncome;
+        this.currentMonthExpense = currentMonthExpense;
+        this.previousMonthIncome = previousMonthIncome;
+        this.previousMonthExpense = previousMonthExpense;
+        this.selectedMonthExpense = selectedMonthExpense;
+        this.currentMonthByCategory = currentMonthByCategory;
+        this.previousMonthByCategory = previousMonthByCategory;
+        this.selectedMonthByCategory = selectedMonthByCategory;
+        this.yearToDateByCategory = yearToDateByCategory;
+        this.largestIncrease = largestIncrease;
+        this.largestDecrease = largestDecrease;
+        this.budget = budget;
+    }
+
+    public long balance() {
+        return totalIncome - totalExpense;
+    }
+
+    public int transactionCount() {
+        return incomeCount + expenseCount;
+    }
+
+    public boolean hasBudget() {
+        return budget > 0;
+    }
+
+    /**
+     * Share of the monthly budget spent so far this month; above 1 when over budget
+     */
+    public double budgetUtilization() {
+        return hasBudget() ? currentMonthExpense / (double) budget : 0;
+    }
+
+    /**
+     * Budget left this month; negative when over budget
+     */
+    public long budgetRemaining() {
+        return budget - currentMonthExpense;
+    }
+
+    /**
+     * One category's expense this month against last month
+     */
+    public static final class CategoryChange {
+        public final String category;
+        public final long previous;  // paisa
+        public final long current;
+
+        CategoryChange(String category, long previous, long current) {
+            this.category = category;
+            this.previous = previous;
+            this.current = current;
+        }
+
+        /**
+         * Change against last month in percent; negative when spending went down
+         */
+        public double percentChange() {
+            return (current - previous) * 100.0 / previous;
+        }
+    }
+}
@@ -0,0 +1,47 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.QuantileSketch;
+
+/**
+ * How one category's expense amounts are spread over a range of months, merged
+ * from the monthly sketches. Percentiles are approximate, to within about one
+ * percent of rank.
+ */
+public final class CategoryDistribution {
+
+    public final String category;  // null for uncategorised spending
+    private final QuantileSketch sketch;
+
+    CategoryDistribution(String category, QuantileSketch sketch) {
+        this.category = category;
+        this.sketch = sketch;
+    }
+
+    /**
+     * Number of expenses
+     */
+    public long count() {
+        return sketch.count();
+    }
+
+    /**
+     * @param fraction 0.9 for the amount nine in ten expenses stay at or under
+     * @return Paisa
+     */
+    public long percentile(double fraction) {
+        return sketch.quantile(fraction);
+    }
+
+    public long median() {
+        return sketch.quantile(0.5);
+    }
+
+    /**
+     * Share of expenses at least this large, as a whole percent from 1 to 100
+     * @param amount Paisa
+     */
+    public int topPercent(long amount) {
+        double atOrAbove = 1 - sketch.rank(amount - 1);
+        return (int) Math.max(1, Math.min(100, Math.round(atOrAbove * 100)));
+    }
+}
@@ -0,0 +1,295 @@
+package com.example.expensemanager.data;
+
+import android.util.Log;
+
+import com.example.expensemanager.data.local.AppDatabase;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * The one place database work runs, shared by every repository in the process.
+ * <p>
+ * Writes go to a single writer thread. Writes that arrive within GROUP_WINDOW_MS of
+ * the first one in a batch are committed together in one SQLite transaction, so a
+ * burst of saves pays for one journal sync instead of one each. If a group fails,
+ * its writes are retried one transaction each so a bad write only fails itself.
+ * <p>
+ * Reads go to a small fixed pool. Room runs reads alongside the writer (WAL), so
+ * they do not wait for commits.
+ */
+public final class DataScheduler {
+
+    private static final String TAG = "DataScheduler";
+
+    static final long GROUP_WINDOW_MS = 4;
+    static final int MAX_GROUP_SIZE = 64;
+    static final int READER_THREADS = Math.max(2, Math.min(4, Runtime.getRuntime().availableProcessors()));
+
+    private static volatile DataScheduler INSTANCE;
+
+    private final AppDatabase db;
+    private final BlockingQueue<PendingWrite<?>> writes = new LinkedBlockingQueue<>();
+    private final ThreadPoolExecutor readers;
+
+    // Commit statistics, written by the writer thread only
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong committedWrites = new AtomicLong();
+    private final AtomicLong totalCommitNanos = new AtomicLong();
+    private final AtomicLong maxCommitNanos = new AtomicLong();
+    private final AtomicLong lastCommitNanos = new AtomicLong();
+    // Size of the group the writer is working on; only the writer thread sets it
+    private volatile int inFlight;
+
+    DataScheduler(AppDatabase db) {
+        this.db = db;
+        this.readers = new ThreadPoolExecutor(READER_THREADS, READER_THREADS, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+                    Thread thread = new Thread(runnable, "data-reader");
+                    thread.setDaemon(true);
+                    return thread;
+                });
+        Thread writer = new Thread(this::runWriter, "data-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    public static DataScheduler getInstance(AppDatabase db) {
+        if (INSTANCE == null) {
+            synchronized (DataScheduler.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new DataScheduler(db);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * A unit of work for the writer thread
+     * @param <T> Result of apply(), handed to committed() and to the returned future
+     */
+    public abstract static class Write<T> {
+
+        /**
+         * Runs on the writer thread before the group transaction begins. Work that must
+         * not be rolled back with the group, such as adding dictionary names, goes here.
+         */
+        protected void prepare() {
+        }
+
+        /**
+         * Runs inside the group transaction
+         */
+        protected abstract T apply();
+
+        /**
+         * Runs on the writer thread once the group has committed, in submission order
+         */
+        protected void committed(T result) {
+        }
+    }
+
+    /**
+     * Queue a write
+     * @return Completes with apply()'s result after commit, or exceptionally if the write failed
+     */
+    public <T> CompletableFuture<T> write(Write<T> write) {
+        PendingWrite<T> pending = new PendingWrite<>(write);
+        writes.add(pending);
+        return pending.future;
+    }
+
+    /**
+     * Run a read on the reader pool
+     */
+    public void read(Runnable read) {
+        readers.execute(read);
+    }
+
+    public ExecutorService getReadExecutor() {
+        return readers;
+    }
+
+    /**
+     * Writes queued but not yet committed, including the group being committed now
+     */
+    public int getWriteQueueDepth() {
+        return writes.size() + inFlight;
+    }
+
+    public int getReadQueueDepth() {
+        return readers.getQueue().size();
+    }
+
+    public Stats getStats() {
+        long commitCount = commits.get();
+        return new Stats(getWriteQueueDepth(), getReadQueueDepth(), commitCount, committedWrites.get(),
+                nanosToMillis(lastCommitNanos.get()),
+                commitCount == 0 ? 0 : nanosToMillis(totalCommitNanos.get()) / commitCount,
+                nanosToMillis(maxCommitNanos.get()));
+    }
+
+    private void runWriter() {
+        List<PendingWrite<?>> group = new ArrayList<>(MAX_GROUP_SIZE);
+        while (true) {
+            try {
+                group.add(writes.take());
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(GROUP_WINDOW_MS);
+                while (group.size() < MAX_GROUP_SIZE) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        writes.drainTo(group, MAX_GROUP_SIZE - group.size());
+                        break;
+                    }
+                    PendingWrite<?> next = writes.poll(remaining, TimeUnit.NANOSECONDS);
+                    if (next == null) break;
+                    group.add(next);
+                }
+                inFlight = group.size();
+                commitGroup(group);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (RuntimeException e) {
+                // Never let one bad write take the writer thread down
+                Log.e(TAG, "Writer error", e);
+            } finally {
+                group.clear();
+                inFlight = 0;
+            }
+        }
+    }
+
+    private void commitGroup(List<PendingWrite<?>> group) {
+        List<PendingWrite<?>> ready = new ArrayList<>(group.size());
+        for (PendingWrite<?> pending : group) {
+            if (pending.prepare()) {
+                ready.add(pending);
+            }
+        }
+        if (ready.isEmpty()) return;
+
+        long start = System.nanoTime();
+        try {
+            db.runInTransaction(() -> {
+                for (PendingWrite<?> pending : ready) {
+                    pending.apply();
+                }
+            });
+        } catch (RuntimeException groupFailure) {
+            if (ready.size() == 1) {
+                ready.get(0).fail(groupFailure);
+                return;
+            }
+            // Find the write that failed by committing each on its own
+            for (PendingWrite<?> pending : ready) {
+                long retryStart = System.nanoTime();
+                try {
+                    db.runInTransaction(pending::apply);
+                } catch (RuntimeException e) {
+                    pending.fail(e);
+                    continue;
+                }
+                recordCommit(retryStart, 1);
+                pending.commit();
+            }
+            return;
+        }
+        recordCommit(start, ready.size());
+        for (PendingWrite<?> pending : ready) {
+            pending.commit();
+        }
+    }
+
+    private void recordCommit(long startNanos, int writeCount) {
+        long elapsed = System.nanoTime() - startNanos;
+        commits.incrementAndGet();
+        committedWrites.addAndGet(writeCount);
+        totalCommitNanos.addAndGet(elapsed);
+        lastCommitNanos.set(elapsed);
+        if (elapsed > maxCommitNanos.get()) {
+            maxCommitNanos.set(elapsed);
+        }
+    }
+
+    private static double nanosToMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+
+    private static final class PendingWrite<T> {
+        final Write<T> write;
+        final CompletableFuture<T> future = new CompletableFuture<>();
+        T result;
+
+        PendingWrite(Write<T> write) {
+            this.write = write;
+        }
+
+        boolean prepare() {
+            try {
+                write.prepare();
+                return true;
+            } catch (RuntimeException e) {
+                fail(e);
+                return false;
+            }
+        }
+
+        void apply() {
+            result = write.apply();
+        }
+
+        void commit() {
+            try {
+                write.committed(result);
+            } catch (RuntimeException e) {
+                Log.e(TAG, "Commit callback failed", e);
+            }
+            future.complete(result);
+        }
+
+        void fail(Exception e) {
+            future.completeExceptionally(e);
+        }
+    }
+
+    /**
+     * Point-in-time contention figures. Latencies cover the SQLite transaction only,
+     * not time spent queued.
+     */
+    public static class Stats {
+        public final int writeQueueDepth;
+        public final int readQueueDepth;
+        public final long commits;
+        public final long writes;
+        public final double lastCommitMillis;
+        public final double averageCommitMillis;
+        public final double maxCommitMillis;
+
+        Stats(int writeQueueDepth, int readQueueDepth, long commits, long writes,
+              double lastCommitMillis, double averageCommitMillis, double maxCommitMillis) {
+            this.writeQueueDepth = writeQueueDepth;
+            this.readQueueDepth = readQueueDepth;
+            this.commits = commits;
+            this.writes = writes;
+            this.lastCommitMillis = lastCommitMillis;
+            this.averageCommitMillis = averageCommitMillis;
+            this.maxCommitMillis = maxCommitMillis;
+        }
+
+        /**
+         * Writes per commit; above 1 means group commit is saving syncs
+         */
+        public double averageGroupSize() {
+            return commits == 0 ? 0 : (double) writes / commits;
+        }
+    }
+}
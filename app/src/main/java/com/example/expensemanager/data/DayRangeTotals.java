@@ -0,0 +1,152 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+
+/**
+ * Expense and income per day as Fenwick (binary indexed) trees, one per type for all
+ * categories and one per type and category, over a fixed span of days. Adding a
+ * transaction and summing any run of days both cost O(log days), whatever the number
+ * of rows.
+ * <p>
+ * Days are epoch days (see DateKeys.epochDay). The span is fixed when built; add()
+ * reports a day outside it so the owner can build a wider one. Not thread-safe.
+ */
+final class DayRangeTotals {
+
+    // Days kept free past the newest transaction or today, so new rows rarely force a rebuild
+    static final int HEADROOM_DAYS = 366;
+
+    private final int firstDay;
+    private final int days;
+    private final long[][] byType = new long[2][];        // [type][1..days]
+    private final long[][][] byCategory = new long[2][][]; // [type][category][1..days], allocated on first use
+
+    /**
+     * @param firstDay Epoch day of the first day in the span
+     * @param days Length of the span
+     */
+    DayRangeTotals(int firstDay, int days) {
+        this.firstDay = firstDay;
+        this.days = days;
+        for (int type = 0; type < 2; type++) {
+            byType[type] = new long[days + 1];
+            byCategory[type] = new long[0][];
+        }
+    }
+
+    /**
+     * Trees for every row in columns, built in linear time
+     * @param epochDays Epoch day of each row, parallel to the columns
+     * @param today Epoch day of today; the span always reaches it
+     */
+    static DayRangeTotals build(Columns columns, int[] epochDays, int today) {
+        int min = today;
+        int max = today;
+        for (int i = 0; i < columns.size; i++) {
+            min = Math.min(min, epochDays[i]);
+            max = Math.max(max, epochDays[i]);
+        }
+        DayRangeTotals totals = new DayRangeTotals(min - HEADROOM_DAYS, max - min + 2 * HEADROOM_DAYS + 1);
+
+        // Plain per-day totals first, then each array folded into a tree in place
+        for (int i = 0; i < columns.size; i++) {
+            int index = epochDays[i] - totals.firstDay + 1;
+            int type = typeIndex(columns.typeAt(i));
+            totals.byType[type][index] += columns.amountAt(i);
+            totals.categoryTree(type, columns.categoryAt(i))[index] += columns.amountAt(i);
+        }
+        for (int type = 0; type < 2; type++) {
+            heapify(totals.byType[type]);
+            for (long[] tree : totals.byCategory[type]) {
+                if (tree != null) heapify(tree);
+            }
+        }
+        return totals;
+    }
+
+    /**
+     * Add amount (negative to take away) to a day
+     * @return False if the day is outside the span; nothing is changed
+     */
+    boolean add(int epochDay, int typeCode, int categoryId, long amount) {
+        long offset = (long) epochDay - firstDay + 1;
+        if (offset < 1 || offset > days) return false;
+        int index = (int) offset;
+        int type = typeIndex(typeCode);
+        add(byType[type], index, amount);
+        add(categoryTree(type, categoryId), index, amount);
+        return true;
+    }
+
+    /**
+     * Total in paisa over a run of days. Days outside the span hold nothing.
+     * @param typeCode TransactionEntity.TYPE_EXPENSE, TYPE_INCOME or Columns.ANY
+     * @param categoryId Category id, Columns.NONE or Columns.ANY
+     * @param fromEpochDay Inclusive
+     * @param toEpochDay Inclusive
+     */
+    long sum(int typeCode, int categoryId, int fromEpochDay, int toEpochDay) {
+        if (typeCode == Columns.ANY) {
+            return sum(TransactionEntity.TYPE_EXPENSE, categoryId, fromEpochDay, toEpochDay)
+                    + sum(TransactionEntity.TYPE_INCOME, categoryId, fromEpochDay, toEpochDay);
+        }
+        int type = typeIndex(typeCode);
+        long[] tree;
+        if (categoryId == Columns.ANY) {
+            tree = byType[type];
+        } else if (categoryId >= 0 && categoryId < byCategory[type].length) {
+            tree = byCategory[type][categoryId];
+        } else {
+            tree = null;
+        }
+        if (tree == null) return 0;
+        int from = (int) Math.max((long) fromEpochDay - firstDay + 1, 1);
+        int to = (int) Math.min((long) toEpochDay - firstDay + 1, days);
+        if (from > to) return 0;
+        return prefix(tree, to) - prefix(tree, from - 1);
+    }
+
+    private long[] categoryTree(int type, int categoryId) {
+        long[][] trees = byCategory[type];
+        if (categoryId >= trees.length) {
+            long[][] grown = new long[Math.max(categoryId + 1, trees.length * 2)][];
+            System.arraycopy(trees, 0, grown, 0, trees.length);
+            byCategory[type] = trees = grown;
+        }
+        if (trees[categoryId] == null) {
+            trees[categoryId] = new long[days + 1];
+        }
+        return trees[categoryId];
+    }
+
+    private static int typeIndex(int typeCode) {
+        return typeCode == TransactionEntity.TYPE_INCOME ? 1 : 0;
+    }
+
+    private static void add(long[] tree, int index, long amount) {
+        for (; index < tree.length; index += index & -index) {
+            tree[index] += amount;
+        }
+    }
+
+    private static long prefix(long[] tree, int index) {
+        long total = 0;
+        for (; index > 0; index -= index & -index) {
+            total += tree[index];
+        }
+        return total;
+    }
+
+    /**
+     * Turn per-day values into a tree by pushing each node into its parent once
+     */
+    private static void heapify(long[] tree) {
+        for (int index = 1; index < tree.length; index++) {
+            int parent = index + (index & -index);
+            if (parent < tree.length) {
+                tree[parent] += tree[index];
+            }
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package com.example.expensemanager.data;
+
+/**
+ * A day on which one category's spending was far above its usual level
+ */
+public final class SpendAnomaly {
+
+    public final String category;  // null for uncategorised spending
+    public final int dayKey;
+    public final long amount;      // paisa spent that day
+    public final long expected;    // usual daily spend before that day
+    public final double deviations; // standard deviations above the usual level
+
+    SpendAnomaly(String category, int dayKey, long amount, long expected, double deviations) {
+        this.category = category;
+        this.dayKey = dayKey;
+        this.amount = amount;
+        this.expected = expected;
+        this.deviations = deviations;
+    }
+}
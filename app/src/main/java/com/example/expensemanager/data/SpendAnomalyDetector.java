@@ -0,0 +1,134 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateKeys;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Flags days on which a category's spending jumps well above normal. Each category
+ * keeps an exponentially weighted mean and variance of its daily spend plus the total
+ * of its latest day, so state is O(1) per category and an expense is checked in O(1)
+ * as it arrives.
+ * <p>
+ * Days must arrive in order per category. add() refuses an earlier day, and the
+ * detector cannot take spending away, so the owner rebuilds it from the columns
+ * after backdated inserts, edits and deletes. Not thread-safe.
+ */
+final class SpendAnomalyDetector {
+
+    // Weight of the newest day; about a 30-day memory
+    static final double ALPHA = 2.0 / (30 + 1);
+    // Days of history needed before anything is flagged
+    static final int WARM_UP_DAYS = 14;
+    // Standard deviations above the mean that count as unusual
+    static final double THRESHOLD = 3.0;
+    // A day must also be this many times the mean, so near-constant spending is not flagged for small bumps
+    static final double MIN_RATIO = 2.0;
+    // Quiet days folded in after a gap; beyond this the averages are effectively zero anyway
+    private static final int MAX_GAP_DAYS = 366;
+
+    private State[] states = new State[0];  // by category id; index 0 is NONE
+
+    /**
+     * A detector that has seen every expense in the columns
+     * @param epochDays Epoch day of each row, parallel to the columns
+     */
+    static SpendAnomalyDetector build(Columns columns, int[] epochDays) {
+        SpendAnomalyDetector detector = new SpendAnomalyDetector();
+        for (int i = 0; i < columns.size; i++) {
+            if (columns.typeAt(i) == TransactionEntity.TYPE_EXPENSE) {
+                // Rows are in time order, so this never refuses
+                detector.add(epochDays[i], columns.categoryAt(i), columns.amountAt(i));
+            }
+        }
+        return detector;
+    }
+
+    /**
+     * Count an expense
+     * @param categoryId Category id or Columns.NONE
+     * @return False if the day is before the category's latest day; nothing is changed
+     */
+    boolean add(int epochDay, int categoryId, long amount) {
+        if (categoryId >= states.length) {
+            State[] grown = new State[Math.max(categoryId + 1, states.length * 2)];
+            System.arraycopy(states, 0, grown, 0, states.length);
+            states = grown;
+        }
+        State state = states[categoryId];
+        if (state == null) {
+            state = states[categoryId] = new State(epochDay);
+        }
+        if (epochDay < state.day) return false;
+        if (epochDay > state.day) {
+            state.fold(state.dayTotal);
+            for (int gap = Math.min(epochDay - state.day - 1, MAX_GAP_DAYS); gap > 0; gap--) {
+                state.fold(0);
+            }
+            state.day = epochDay;
+            state.dayTotal = 0;
+        }
+        state.dayTotal += amount;
+        state.check();
+        return true;
+    }
+
+    /**
+     * Flagged days on or after a day, with category names from the columns
+     */
+    List<SpendAnomaly> since(int epochDay, Columns columns) {
+        List<SpendAnomaly> anomalies = new ArrayList<>();
+        for (int id = 0; id < states.length; id++) {
+            State state = states[id];
+            if (state == null || state.flagDay < epochDay) continue;
+            anomalies.add(new SpendAnomaly(columns.categoryName(id), DateKeys.fromEpochDay(state.flagDay),
+                    state.flagAmount, Math.round(state.flagExpected), state.flagDeviations));
+        }
+        return anomalies;
+    }
+
+    private static final class State {
+        int day;          // latest epoch day with spending
+        long dayTotal;    // spending on that day so far; not yet in mean or variance
+        double mean;      // of daily spend before that day
+        double variance;
+        int days;         // days folded in
+
+        // Latest flagged day; Integer.MIN_VALUE when none
+        int flagDay = Integer.MIN_VALUE;
+        long flagAmount;
+        double flagExpected;
+        double flagDeviations;
+
+        State(int day) {
+            this.day = day;
+        }
+
+        /**
+         * Incremental exponentially weighted mean and variance
+         */
+        void fold(long value) {
+            double diff = value - mean;
+            double increment = ALPHA * diff;
+            mean += increment;
+            variance = (1 - ALPHA) * (variance + diff * increment);
+            days++;
+        }
+
+        void check() {
+            if (days < WARM_UP_DAYS) return;
+            double deviation = Math.sqrt(variance);
+            double deviations = deviation > 0 ? (dayTotal - mean) / deviation
+                    : dayTotal > mean ? Double.POSITIVE_INFINITY : 0;
+            if (deviations >= THRESHOLD && dayTotal > MIN_RATIO * mean) {
+                flagDay = day;
+                flagAmount = dayTotal;
+                flagExpected = mean;
+                flagDeviations = deviations;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.example.expensemanager.data;
+
+/**
+ * Where this month's spending is heading. Amounts are paisa.
+ */
+public final class SpendForecast {
+
+    public final long spentSoFar;       // this month up to and including today
+    public final long projectedTotal;   // by the end of the month
+    public final long budget;           // 0 when none is set
+    public final int overshootDayKey;   // first day over budget, today if already over, 0 if never
+    public final String topCategory;    // category expected to add the most, may be null
+
+    SpendForecast(long spentSoFar, long projectedTotal, long budget, int overshootDayKey, String topCategory) {
+        this.spentSoFar = spentSoFar;
+        this.projectedTotal = projectedTotal;
+        this.budget = budget;
+        this.overshootDayKey = overshootDayKey;
+        this.topCategory = topCategory;
+    }
+
+    public boolean willOvershoot() {
+        return overshootDayKey != 0;
+    }
+}
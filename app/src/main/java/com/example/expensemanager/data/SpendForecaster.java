@@ -0,0 +1,198 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateKeys;
+
+/**
+ * Projects month-end spending from a learned profile: an exponentially weighted daily
+ * spend per category and a spend level per weekday. Both are updated per expense in
+ * O(1), so a forecast costs one pass over the categories and the days left in the
+ * month, never over history.
+ * <p>
+ * The days left are forecast at a blend of the profile's rate and this month's own
+ * pace, trusting the month more as it goes on, scaled by each weekday's usual share.
+ * Like SpendAnomalyDetector, days must arrive in order and the owner replays it from
+ * the columns after anything else. Not thread-safe.
+ */
+final class SpendForecaster {
+
+    // Weight of the newest day in a category's daily rate; about a 30-day memory
+    static final double ALPHA = 2.0 / (30 + 1);
+    // Weight of the newest week in a weekday's level; about an 8-week memory
+    static final double WEEKDAY_ALPHA = 2.0 / (8 + 1);
+    // Weeks of history before weekday levels are trusted
+    static final int MIN_WEEKS = 2;
+    private static final int MAX_GAP_DAYS = 366;
+
+    // All expenses, for the weekday levels
+    private int day = Integer.MIN_VALUE;  // latest day with spending; unset until the first
+    private long dayTotal;                // spending that day so far
+    private final double[] weekdayLevel = new double[7];  // Monday first
+    private final int[] weekdayWeeks = new int[7];
+
+    private Category[] categories = new Category[0];  // by category id; index 0 is NONE
+
+    /**
+     * A forecaster that has seen every expense in the columns
+     * @param epochDays Epoch day of each row, parallel to the columns
+     */
+    static SpendForecaster build(Columns columns, int[] epochDays) {
+        SpendForecaster forecaster = new SpendForecaster();
+        for (int i = 0; i < columns.size; i++) {
+            if (columns.typeAt(i) == TransactionEntity.TYPE_EXPENSE) {
+                forecaster.add(epochDays[i], columns.categoryAt(i), columns.amountAt(i));
+            }
+        }
+        return forecaster;
+    }
+
+    /**
+     * Count an expense
+     * @param categoryId Category id or Columns.NONE
+     * @return False if the day is before the latest day seen; nothing is changed
+     */
+    boolean add(int epochDay, int categoryId, long amount) {
+        if (epochDay < day) return false;
+        if (categoryId >= categories.length) {
+            Category[] grown = new Category[Math.max(categoryId + 1, categories.length * 2)];
+            System.arraycopy(categories, 0, grown, 0, categories.length);
+            categories = grown;
+        }
+        Category category = categories[categoryId];
+        if (category == null) {
+            category = categories[categoryId] = new Category(epochDay);
+        }
+
+        if (epochDay > day) {
+            if (day != Integer.MIN_VALUE) {
+                foldWeekday(day, dayTotal);
+                for (int gap = Math.min(epochDay - day - 1, MAX_GAP_DAYS), quiet = day + 1; gap > 0; gap--, quiet++) {
+                    foldWeekday(quiet, 0);
+                }
+            }
+            day = epochDay;
+            dayTotal = 0;
+        }
+        dayTotal += amount;
+        category.add(epochDay, amount);
+        return true;
+    }
+
+    /**
+     * @param today Epoch day of today
+     * @param monthStart Epoch day of the 1st of this month
+     * @param monthEnd Epoch day of the 1st of next month
+     * @param spentSoFar This month's expenses up to and including today
+     * @param budget Monthly budget, or 0 for none
+     * @param columns Names the top category
+     */
+    SpendForecast forecast(int today, int monthStart, int monthEnd, long spentSoFar, long budget, Columns columns) {
+        double profileRate = 0;
+        int topCategory = -1;
+        double topRate = 0;
+        for (int id = 0; id < categories.length; id++) {
+            if (categories[id] == null) continue;
+            double rate = categories[id].rateOn(today);
+            profileRate += rate;
+            if (rate > topRate) {
+                topRate = rate;
+                topCategory = id;
+            }
+        }
+
+        int elapsed = today - monthStart + 1;
+        double pace = spentSoFar / (double) elapsed;
+        double trust = elapsed / (double) (monthEnd - monthStart);
+        double rate = profileRate > 0 ? trust * pace + (1 - trust) * profileRate : pace;
+
+        double[] shares = weekdayShares();
+        double projected = spentSoFar;
+        int overshoot = budget > 0 && spentSoFar > budget ? today : 0;
+        for (int d = today + 1; d < monthEnd; d++) {
+            projected += rate * shares[weekday(d)];
+            if (overshoot == 0 && budget > 0 && projected > budget) {
+                overshoot = d;
+            }
+        }
+        return new SpendForecast(spentSoFar, Math.round(projected), budget,
+                overshoot != 0 ? DateKeys.fromEpochDay(overshoot) : 0,
+                topCategory > 0 ? columns.categoryName(topCategory) : null);
+    }
+
+    /**
+     * Each weekday's level over the average level, or all ones until every weekday
+     * has MIN_WEEKS of history
+     */
+    private double[] weekdayShares() {
+        double[] shares = {1, 1, 1, 1, 1, 1, 1};
+        double[] levels = new double[7];
+        double sum = 0;
+        for (int weekday = 0; weekday < 7; weekday++) {
+            if (weekdayWeeks[weekday] < MIN_WEEKS) return shares;
+            levels[weekday] = weekdayLevel[weekday] / (1 - Math.pow(1 - WEEKDAY_ALPHA, weekdayWeeks[weekday]));
+            sum += levels[weekday];
+        }
+        if (sum <= 0) return shares;
+        for (int weekday = 0; weekday < 7; weekday++) {
+            shares[weekday] = levels[weekday] * 7 / sum;
+        }
+        return shares;
+    }
+
+    private void foldWeekday(int epochDay, long total) {
+        int weekday = weekday(epochDay);
+        weekdayLevel[weekday] += WEEKDAY_ALPHA * (total - weekdayLevel[weekday]);
+        weekdayWeeks[weekday]++;
+    }
+
+    /**
+     * 0 for Monday; epoch day 0 was a Thursday
+     */
+    static int weekday(int epochDay) {
+        return Math.floorMod(epochDay + 3, 7);
+    }
+
+    /**
+     * Exponentially weighted daily spend of one category. The latest day stays out of
+     * the mean until a later one arrives, and the mean starts from zero, so rates are
+     * divided by the weight the days so far add up to.
+     */
+    private static final class Category {
+        int day;
+        long dayTotal;
+        double mean;
+        int days;  // days folded into mean, quiet ones included
+
+        Category(int day) {
+            this.day = day;
+        }
+
+        void add(int epochDay, long amount) {
+            if (epochDay > day) {
+                mean += ALPHA * (dayTotal - mean);
+                int gap = epochDay - day - 1;
+                mean *= Math.pow(1 - ALPHA, gap);
+                days += gap + 1;
+                day = epochDay;
+                dayTotal = 0;
+            }
+            dayTotal += amount;
+        }
+
+        /**
+         * Expected spend per day, from every day before today
+         */
+        double rateOn(int today) {
+            double rate = mean;
+            int weight = days;
+            if (day < today) {
+                rate += ALPHA * (dayTotal - rate);
+                int gap = today - day - 1;
+                rate *= Math.pow(1 - ALPHA, gap);
+                weight += gap + 1;
+            }
+            return weight > 0 ? rate / (1 - Math.pow(1 - ALPHA, weight)) : 0;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.data.local.TransactionRow;
+import com.example.expensemanager.utils.Money;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Recently touched transactions by id, least recently used evicted first, shared by
+ * every repository. Kept current from TransactionChangeFeed, so a hit is never staler
+ * than the last commit. Entries are copies; callers may change what they get back.
+ */
+public final class TransactionCache {
+
+    static final int MAX_ENTRIES = 64;
+
+    private static final TransactionCache INSTANCE = new TransactionCache();
+
+    // Guarded by "this"; access order makes iteration start at the eldest entry
+    private final LinkedHashMap<Long, TransactionEntity> entries =
+            new LinkedHashMap<Long, TransactionEntity>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Long, TransactionEntity> eldest) {
+                    return size() > MAX_ENTRIES;
+                }
+            };
+
+    private TransactionCache() {
+        TransactionChangeFeed.getInstance().addListener(this::onTransactionChanged);
+    }
+
+    public static TransactionCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * @return A copy of the cached transaction, or null on a miss
+     */
+    public synchronized TransactionEntity get(long id) {
+        TransactionEntity entity = entries.get(id);
+        return entity != null ? entity.copy() : null;
+    }
+
+    /**
+     * Remember a transaction with its display fields filled in
+     */
+    public synchronized void put(TransactionEntity entity) {
+        entries.put(entity.id, entity.copy());
+    }
+
+    /**
+     * Remember a list row the user is about to open. A row has every field the edit
+     * screen shows; the ids and hash it lacks are filled in again when it is saved.
+     */
+    public void putRow(TransactionRow row, String userId) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.id = row.id;
+        entity.userId = userId;
+        entity.amountMinor = row.amountMinor;
+        entity.amount = Money.toMajor(row.amountMinor);
+        entity.typeCode = row.typeCode;
+        entity.type = TransactionEntity.typeName(row.typeCode);
+        entity.category = row.category;
+        entity.wallet = row.wallet;
+        entity.note = row.note;
+        entity.dateTimestamp = row.dateTimestamp;
+        entity.yearMonth = row.dayKey / 100;
+        entity.dayKey = row.dayKey;
+        synchronized (this) {
+            entries.put(entity.id, entity);
+        }
+    }
+
+    public synchronized void remove(long id) {
+        entries.remove(id);
+    }
+
+    private void onTransactionChanged(TransactionChange change) {
+        // Pending writes may still fail; only commits change what is cached
+        if (change.pending) return;
+        switch (change.kind) {
+            case INSERTED:
+            case UPDATED:
+                put(change.after);
+                break;
+            case DELETED:
+                remove(change.id);
+                break;
+            default:
+                break;
+        }
+    }
+}
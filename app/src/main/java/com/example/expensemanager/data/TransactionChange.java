@@ -0,0 +1,54 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.TransactionEntity;
+
+/**
+ * One write to a user's transactions, as published by TransactionChangeFeed.
+ * Entities carry both the stored columns and the display names. They are the
+ * change's own copies, taken when it is published, so they never change afterwards
+ * and are shared by every listener; treat them as read-only.
+ * <p>
+ * Single-row writes are published twice: first as pending, the moment they are
+ * queued, then once more when they commit (or as REVERTED if they fail). Both share
+ * a token so a consumer can drop its optimistic copy when the outcome arrives.
+ */
+public class TransactionChange {
+
+    public enum Kind {
+        INSERTED,
+        UPDATED,
+        DELETED,
+        /** Many rows changed at once (bulk import); re-read instead of applying a delta */
+        RELOAD,
+        /** The pending write with this token failed; nothing changed */
+        REVERTED
+    }
+
+    public final Kind kind;
+    /** Queued but not yet committed */
+    public final boolean pending;
+    /** Pairs a pending change with its outcome; 0 for writes published only once */
+    public final long token;
+    /** Feed version after this change; versions increase by one per change */
+    public final long version;
+    public final String userId;
+    /** Row id, or 0 for RELOAD and REVERTED. A pending insert has a negative placeholder id. */
+    public final long id;
+    /** The row as it was before the write; null for INSERTED, RELOAD, REVERTED and pending changes */
+    public final TransactionEntity before;
+    /** The row as written; null for DELETED, RELOAD and REVERTED */
+    public final TransactionEntity after;
+
+    TransactionChange(Kind kind, boolean pending, long token, long version, String userId, long id,
+                      TransactionEntity before, TransactionEntity after) {
+        this.kind = kind;
+        this.pending = pending;
+        this.token = token;
+        this.version = version;
+        this.userId = userId;
+        this.id = id;
+        // The caller's objects go on to be prepared and committed on the writer thread
+        this.before = before != null ? before.copy() : null;
+        this.after = after != null ? after.copy() : null;
+    }
+}
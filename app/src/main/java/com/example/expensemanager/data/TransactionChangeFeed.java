@@ -0,0 +1,79 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Process-wide stream of committed transaction writes. Every TransactionRepository
+ * publishes here, so a listener sees writes from all screens, in commit order, with
+ * the old and new values instead of having to re-query the whole list.
+ * <p>
+ * Listeners run on the thread that published the change and must not block it:
+ * the caller's thread for pending changes, the writer thread for outcomes.
+ */
+public final class TransactionChangeFeed {
+
+    private static final TransactionChangeFeed INSTANCE = new TransactionChangeFeed();
+
+    private final AtomicLong version = new AtomicLong();
+    private final AtomicLong tokens = new AtomicLong();
+    private final List<TransactionRepository.OnTransactionChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+    private TransactionChangeFeed() {
+    }
+
+    public static TransactionChangeFeed getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Version of the last published change, pending or committed. Anything read from
+     * the database after this call reflects every change committed by then.
+     */
+    public long getVersion() {
+        return version.get();
+    }
+
+    public void addListener(TransactionRepository.OnTransactionChangeListener listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(TransactionRepository.OnTransactionChangeListener listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * A fresh token for an optimistic write. Its negation doubles as the placeholder
+     * id of a pending insert, which can never clash with a real row id.
+     */
+    long nextToken() {
+        return tokens.incrementAndGet();
+    }
+
+    /**
+     * Deliver a committed change that had no pending announcement
+     */
+    TransactionChange publish(TransactionChange.Kind kind, String userId, long id,
+                              TransactionEntity before, TransactionEntity after) {
+        return publish(kind, false, 0, userId, id, before, after);
+    }
+
+    /**
+     * Assign the next version and deliver the change
+     * @param pending True when announcing a queued write, false for a committed one
+     * @param token From nextToken() for optimistic writes, otherwise 0
+     */
+    synchronized TransactionChange publish(TransactionChange.Kind kind, boolean pending, long token,
+                                           String userId, long id,
+                                           TransactionEntity before, TransactionEntity after) {
+        TransactionChange change = new TransactionChange(kind, pending, token, version.incrementAndGet(),
+                userId, id, before, after);
+        for (TransactionRepository.OnTransactionChangeListener listener : listeners) {
+            listener.onTransactionChanged(change);
+        }
+        return change;
+    }
+}
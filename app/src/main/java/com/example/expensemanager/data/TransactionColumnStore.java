@@ -0,0 +1,842 @@
+package com.example.expensemanager.data;
+
+import android.database.Cursor;
+import android.util.Log;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.expensemanager.data.local.ArchiveDao;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateBuckets;
+import com.example.expensemanager.utils.DateKeys;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * A user's transactions, hot and archived, held in memory as parallel primitive
+ * arrays sorted by (dateTimestamp, id), for aggregations over arbitrary date ranges.
+ * A scan reads a few contiguous arrays instead of chasing one entity object per row.
+ * <p>
+ * The store loads once, then follows committed writes from TransactionChangeFeed.
+ * Every change produces a new immutable Columns sharing all but the segment it
+ * touched, so a write costs about SEGMENT_ROWS, readers never lock and never see a
+ * half-applied write. Bulk imports, and writes that race the load, read everything
+ * again.
+ * <p>
+ * Alongside the columns it keeps per-day totals in DayRangeTotals, so a total over
+ * any run of days costs O(log days) rather than a scan, day, week and month
+ * buckets in TrendBuckets for trend charts, and the streaming SpendAnomalyDetector
+ * and SpendForecaster. The streams only move forward; edits, deletes and backdated
+ * rows are replayed into new ones on the executor, never on the caller's thread. So
+ * are the day indexes when a row lands outside the days they span; until then their
+ * totals miss that row, and getColumns() emits again once they have it.
+ * <p>
+ * There is one store per user for the whole process, shared by every screen, so
+ * opening another screen never loads the ledger again.
+ */
+public class TransactionColumnStore {
+
+    private static final String TAG = "TransactionColumnStore";
+
+    // Open stores by user id; guarded by itself, as is each store's references
+    private static final Map<String, TransactionColumnStore> OPEN = new HashMap<>();
+
+    private final ArchiveDao archiveDao;
+    private final TransactionDictionary dictionary;
+    private final Executor executor;
+    private final String userId;
+    private final MutableLiveData<Columns> columns = new MutableLiveData<>();
+    private final MutableLiveData<Columns> spendStreams = new MutableLiveData<>();
+    private final TransactionRepository.OnTransactionChangeListener changeListener = this::onTransactionChanged;
+    private int references;
+
+    // Guarded by "this"
+    private Columns current = Columns.EMPTY;
+    private DayRangeTotals dayTotals;
+    private TrendBuckets trends;
+    private SpendAnomalyDetector anomalies;
+    private SpendForecaster forecaster;
+    private boolean streamsStale;  // anomalies and forecaster are behind the columns
+    private boolean indexesStale;  // dayTotals and trends miss a row outside their span
+    private boolean replayScheduled;
+    private boolean loading;
+    private boolean reloadPending;
+    private boolean loadFailed;     // the columns are stale; the next change reads everything again
+
+    /**
+     * The user's store, loading it if no one has it open. Callers must close() it when done.
+     */
+    static TransactionColumnStore open(ArchiveDao archiveDao, TransactionDictionary dictionary, Executor executor,
+                                       String userId) {
+        synchronized (OPEN) {
+            TransactionColumnStore store = OPEN.get(userId);
+            if (store == null) {
+                store = new TransactionColumnStore(archiveDao, dictionary, executor, userId);
+                OPEN.put(userId, store);
+            }
+            store.references++;
+            return store;
+        }
+    }
+
+    private TransactionColumnStore(ArchiveDao archiveDao, TransactionDictionary dictionary, Executor executor,
+                                   String userId) {
+        this.archiveDao = archiveDao;
+        this.dictionary = dictionary;
+        this.executor = executor;
+        this.userId = userId;
+        rebuildDayIndexes(Columns.EMPTY);
+        TransactionChangeFeed.getInstance().addListener(changeListener);
+        reload();
+    }
+
+    /**
+     * Emits the columns after the first load and after every change
+     */
+    public LiveData<Columns> getColumns() {
+        return columns;
+    }
+
+    /**
+     * Emits the columns the anomaly and forecast streams have caught up with. After an
+     * edit or delete that lands a replay later than getColumns().
+     */
+    public LiveData<Columns> getSpendStreams() {
+        return spendStreams;
+    }
+
+    /**
+     * The latest columns; empty until the first load completes
+     */
+    public synchronized Columns snapshot() {
+        return current;
+    }
+
+    /**
+     * Total in paisa over a run of days, from the latest columns
+     * @param typeCode TransactionEntity.TYPE_EXPENSE, TYPE_INCOME or Columns.ANY
+     * @param categoryId Category id, Columns.NONE or Columns.ANY
+     * @param fromDayKey First day, inclusive, e.g. 20241001
+     * @param toDayKey Last day, inclusive
+     */
+    public synchronized long sumDays(int typeCode, int categoryId, int fromDayKey, int toDayKey) {
+        return dayTotals.sum(typeCode, categoryId, DateKeys.epochDay(fromDayKey), DateKeys.epochDay(toDayKey));
+    }
+
+    /**
+     * Income and expense per bucket from the latest columns
+     * @param categoryId Category id, Columns.NONE or Columns.ANY
+     * @param walletId Wallet id, Columns.NONE or Columns.ANY; only one of the two may filter
+     * @param fromDayKey First day, inclusive, e.g. 20241001
+     * @param toDayKey Last day, inclusive
+     */
+    public synchronized TrendSeries trend(TrendSeries.Resolution resolution, int categoryId, int walletId,
+                                          int fromDayKey, int toDayKey) {
+        return trends.series(resolution, categoryId, walletId,
+                DateKeys.epochDay(fromDayKey), DateKeys.epochDay(toDayKey));
+    }
+
+    /**
+     * Days since a given day on which a category's spending was unusually high, at most
+     * one per category. O(categories); as of the columns getSpendStreams() last emitted.
+     * @param sinceDayKey First day to report, e.g. 20241012
+     */
+    public synchronized List<SpendAnomaly> anomalies(int sinceDayKey) {
+        return anomalies.since(DateKeys.epochDay(sinceDayKey), current);
+    }
+
+    /**
+     * This month's projected spending against a budget. O(categories + days left in
+     * the month); as of the columns getSpendStreams() last emitted.
+     * @param budget Monthly budget in paisa, or 0 for none
+     */
+    public synchronized SpendForecast forecast(long budget) {
+        int todayKey = DateBuckets.current().dayKey(System.currentTimeMillis());
+        int yearMonth = todayKey / 100;
+        int nextYearMonth = yearMonth % 100 == 12 ? (yearMonth / 100 + 1) * 100 + 1 : yearMonth + 1;
+        int today = DateKeys.epochDay(todayKey);
+        int monthStart = DateKeys.epochDay(yearMonth * 100 + 1);
+        int monthEnd = DateKeys.epochDay(nextYearMonth * 100 + 1);
+        long spentSoFar = dayTotals.sum(TransactionEntity.TYPE_EXPENSE, Columns.ANY, monthStart, today);
+        return forecaster.forecast(today, monthStart, monthEnd, spentSoFar, budget, current);
+    }
+
+    /**
+     * Give up one open(); the last close stops the store listening for changes
+     */
+    public void close() {
+        synchronized (OPEN) {
+            if (references == 0 || --references > 0) return;
+            OPEN.remove(userId);
+        }
+        TransactionChangeFeed.getInstance().removeListener(changeListener);
+    }
+
+    private void reload() {
+        synchronized (this) {
+            if (loading) {
+                reloadPending = true;
+                return;
+            }
+            loading = true;
+        }
+        executor.execute(this::load);
+    }
+
+    private void load() {
+        boolean again;
+        try {
+            Columns loaded;
+            try (Cursor cursor = archiveDao.getLedgerColumns(userId)) {
+                loaded = read(cursor);
+            }
+            int[] days = epochDays(loaded);
+            int today = today();
+            DayRangeTotals loadedTotals = DayRangeTotals.build(loaded, days, today);
+            TrendBuckets loadedTrends = TrendBuckets.build(loaded, days, today);
+            SpendAnomalyDetector loadedAnomalies = SpendAnomalyDetector.build(loaded, days);
+            SpendForecaster loadedForecaster = SpendForecaster.build(loaded, days);
+            synchronized (this) {
+                loading = false;
+                again = reloadPending;
+                reloadPending = false;
+                if (!again) {
+                    dayTotals = loadedTotals;
+                    trends = loadedTrends;
+                    anomalies = loadedAnomalies;
+                    forecaster = loadedForecaster;
+                    streamsStale = false;
+                    indexesStale = false;
+                    loadFailed = false;
+                    publish(loaded);
+                }
+            }
+        } catch (RuntimeException e) {
+            // Escaping the reader pool would take the app down. Keep the last columns,
+            // and without clearing loading every later change would wait forever.
+            Log.e(TAG, "Column store load failed", e);
+            synchronized (this) {
+                loading = false;
+                reloadPending = false;
+                loadFailed = true;
+            }
+            return;
+        }
+        if (again) {
+            // A write committed while reading; it may or may not be in what was read
+            reload();
+        }
+    }
+
+    private Columns read(Cursor cursor) {
+        int size = cursor.getCount();
+        long[] ids = new long[size];
+        long[] timestamps = new long[size];
+        long[] amounts = new long[size];
+        int[] types = new int[size];
+        int[] categories = new int[size];
+        int[] wallets = new int[size];
+        int maxCategory = 0;
+        int maxWallet = 0;
+        for (int i = 0; i < size && cursor.moveToNext(); i++) {
+            ids[i] = cursor.getLong(0);
+            timestamps[i] = cursor.getLong(1);
+            amounts[i] = cursor.getLong(2);
+            types[i] = cursor.getInt(3);
+            categories[i] = cursor.isNull(4) ? Columns.NONE : cursor.getInt(4);
+            wallets[i] = cursor.isNull(5) ? Columns.NONE : cursor.getInt(5);
+            maxCategory = Math.max(maxCategory, categories[i]);
+            maxWallet = Math.max(maxWallet, wallets[i]);
+        }
+
+        // One shared String per id, looked up once per load
+        String[] categoryNames = new String[maxCategory + 1];
+        for (int id = 1; id <= maxCategory; id++) {
+            categoryNames[id] = dictionary.categoryName(id);
+        }
+        String[] walletNames = new String[maxWallet + 1];
+        for (int id = 1; id <= maxWallet; id++) {
+            walletNames[id] = dictionary.walletName(id);
+        }
+        return new Columns(size, ids, timestamps, amounts, types, categories, wallets, categoryNames, walletNames);
+    }
+
+    private void onTransactionChanged(TransactionChange change) {
+        // Only commits count; an optimistic write may still fail
+        if (change.pending || change.kind == TransactionChange.Kind.REVERTED) return;
+        if (!userId.equals(change.userId)) return;
+
+        synchronized (this) {
+            if (change.kind == TransactionChange.Kind.RELOAD || loading || loadFailed) {
+                reload();
+                return;
+            }
+            Columns next = current;
+            boolean inSpan = true;
+            if (change.before != null) {
+                Columns removed = next.without(change.id, change.before.dateTimestamp);
+                if (removed != next) {
+                    inSpan = addToDayIndexes(change.before, -change.before.amountMinor);
+                    // The streams only move forward; publish() schedules a replay
+                    streamsStale = true;
+                }
+                next = removed;
+            }
+            if (change.after != null) {
+                next = next.with(change.id, change.after);
+                inSpan &= addToDayIndexes(change.after, change.after.amountMinor);
+            }
+            if (!inSpan) {
+                // A day outside the indexes' span; publish() schedules wider ones
+                indexesStale = true;
+                streamsStale = true;
+            }
+            if (next != current) {
+                publish(next);
+            }
+        }
+    }
+
+    private boolean addToDayIndexes(TransactionEntity entity, long amount) {
+        int day = DateKeys.epochDay(DateBuckets.current().dayKey(entity.dateTimestamp));
+        int category = entity.categoryId != null ? entity.categoryId : Columns.NONE;
+        int wallet = entity.walletId != null ? entity.walletId : Columns.NONE;
+        if (amount > 0 && entity.typeCode == TransactionEntity.TYPE_EXPENSE && !streamsStale) {
+            boolean inOrder = anomalies.add(day, category, amount);
+            inOrder &= forecaster.add(day, category, amount);
+            if (!inOrder) {
+                streamsStale = true;  // backdated
+            }
+        }
+        // Both share a span, so either both take the change or neither does
+        return dayTotals.add(day, entity.typeCode, category, amount)
+                && trends.add(day, entity.typeCode, category, wallet, amount);
+    }
+
+    private void rebuildDayIndexes(Columns columns) {
+        int[] days = epochDays(columns);
+        int today = today();
+        dayTotals = DayRangeTotals.build(columns, days, today);
+        trends = TrendBuckets.build(columns, days, today);
+        anomalies = SpendAnomalyDetector.build(columns, days);
+        forecaster = SpendForecaster.build(columns, days);
+        streamsStale = false;
+    }
+
+    private void scheduleReplay() {
+        if (replayScheduled) return;
+        replayScheduled = true;
+        executor.execute(this::replayStreams);
+    }
+
+    /**
+     * Rebuild the streams, and the day indexes if they are stale too, from the latest
+     * columns outside the lock. Writes that land meanwhile leave them stale, so it goes
+     * round again.
+     */
+    private void replayStreams() {
+        Columns replayed;
+        boolean withIndexes;
+        synchronized (this) {
+            replayed = current;
+            withIndexes = indexesStale;
+        }
+        int[] days = epochDays(replayed);
+        DayRangeTotals replayedTotals = null;
+        TrendBuckets replayedTrends = null;
+        if (withIndexes) {
+            int today = today();
+            replayedTotals = DayRangeTotals.build(replayed, days, today);
+            replayedTrends = TrendBuckets.build(replayed, days, today);
+        }
+        SpendAnomalyDetector replayedAnomalies = SpendAnomalyDetector.build(replayed, days);
+        SpendForecaster replayedForecaster = SpendForecaster.build(replayed, days);
+        synchronized (this) {
+            replayScheduled = false;
+            if (!streamsStale && !indexesStale) return;  // a load got there first
+            if (current != replayed || indexesStale && !withIndexes) {
+                scheduleReplay();
+                return;
+            }
+            if (withIndexes) {
+                dayTotals = replayedTotals;
+                trends = replayedTrends;
+                indexesStale = false;
+                // Range totals read from the columns' emissions now include every row
+                columns.postValue(replayed);
+            }
+            anomalies = replayedAnomalies;
+            forecaster = replayedForecaster;
+            streamsStale = false;
+            spendStreams.postValue(replayed);
+        }
+    }
+
+    /**
+     * Days are taken from timestamps in the device zone, as the columns' readers do
+     */
+    private static int[] epochDays(Columns columns) {
+        DateBuckets buckets = DateBuckets.current();
+        int[] days = new int[columns.size];
+        for (int i = 0; i < columns.size; i++) {
+            days[i] = DateKeys.epochDay(buckets.dayKey(columns.timestampAt(i)));
+        }
+        return days;
+    }
+
+    private static int today() {
+        return DateKeys.epochDay(DateBuckets.current().dayKey(System.currentTimeMillis()));
+    }
+
+    private void publish(Columns next) {
+        current = next;
+        columns.postValue(next);
+        if (streamsStale) {
+            scheduleReplay();
+        } else {
+            spendStreams.postValue(next);
+        }
+    }
+
+    /**
+     * An immutable copy of the store. Rows are kept in segments of at most
+     * SEGMENT_ROWS, so a committed write copies one segment and the small segment
+     * tables rather than every column; unchanged segments are shared between copies.
+     * The aggregation methods run over the arrays in place and allocate nothing; the
+     * ones that fill a caller's array index it by category or wallet id, so size it
+     * with categorySlots() or walletSlots().
+     */
+    public static final class Columns {
+
+        /** Matches every type or category in the aggregation methods */
+        public static final int ANY = -1;
+        /** Category or wallet id of a row that has none */
+        public static final int NONE = 0;
+
+        static final int SEGMENT_ROWS = 1024;
+        private static final int BLOCK_SHIFT = 8;
+        // Every segment but a lone one holds at least this many rows, so a block of
+        // that many rows spans at most two segments and finding a row's segment is O(1)
+        static final int MIN_SEGMENT_ROWS = 1 << BLOCK_SHIFT;
+
+        static final Columns EMPTY = new Columns(new Segment[0], new String[1], new String[1]);
+
+        public final int size;
+        private final Segment[] segments;
+        private final int[] starts;         // index of each segment's first row, then size
+        private final int[] blockSegments;  // segment holding row (block << BLOCK_SHIFT)
+        private final String[] categoryNames;  // by id; index 0 is NONE
+        private final String[] walletNames;
+
+        /**
+         * Columns over whole arrays already sorted by (timestamp, id)
+         */
+        Columns(int size, long[] ids, long[] timestamps, long[] amounts, int[] types, int[] categories,
+                int[] wallets, String[] categoryNames, String[] walletNames) {
+            this(cut(size, ids, timestamps, amounts, types, categories, wallets), categoryNames, walletNames);
+        }
+
+        private Columns(Segment[] segments, String[] categoryNames, String[] walletNames) {
+            this.segments = segments;
+            this.starts = new int[segments.length + 1];
+            for (int s = 0; s < segments.length; s++) {
+                starts[s + 1] = starts[s] + segments[s].size;
+            }
+            this.size = starts[segments.length];
+            this.blockSegments = new int[(size + MIN_SEGMENT_ROWS - 1) >>> BLOCK_SHIFT];
+            for (int block = 0, s = 0; block < blockSegments.length; block++) {
+                while (starts[s + 1] <= block << BLOCK_SHIFT) {
+                    s++;
+                }
+                blockSegments[block] = s;
+            }
+            this.categoryNames = categoryNames;
+            this.walletNames = walletNames;
+        }
+
+        /**
+         * Even segments of at most SEGMENT_ROWS; with more than one, each holds over half that
+         */
+        private static Segment[] cut(int size, long[] ids, long[] timestamps, long[] amounts, int[] types,
+                                     int[] categories, int[] wallets) {
+            int count = (size + SEGMENT_ROWS - 1) / SEGMENT_ROWS;
+            Segment[] segments = new Segment[count];
+            for (int s = 0; s < count; s++) {
+                int from = (int) ((long) size * s / count);
+                int to = (int) ((long) size * (s + 1) / count);
+                segments[s] = new Segment(Arrays.copyOfRange(ids, from, to),
+                        Arrays.copyOfRange(timestamps, from, to),
+                        Arrays.copyOfRange(amounts, from, to),
+                        Arrays.copyOfRange(types, from, to),
+                        Arrays.copyOfRange(categories, from, to),
+                        Arrays.copyOfRange(wallets, from, to));
+            }
+            return segments;
+        }
+
+        public long idAt(int index) {
+            int s = segmentOf(index);
+            return segments[s].ids[index - starts[s]];
+        }
+
+        public long timestampAt(int index) {
+            int s = segmentOf(index);
+            return segments[s].timestamps[index - starts[s]];
+        }
+
+        public long amountAt(int index) {
+            int s = segmentOf(index);
+            return segments[s].amounts[index - starts[s]];
+        }
+
+        public int typeAt(int index) {
+            int s = segmentOf(index);
+            return segments[s].types[index - starts[s]];
+        }
+
+        public int categoryAt(int index) {
+            int s = segmentOf(index);
+            return segments[s].categories[index - starts[s]];
+        }
+
+        public int walletAt(int index) {
+            int s = segmentOf(index);
+            return segments[s].wallets[index - starts[s]];
+        }
+
+        public int categorySlots() {
+            return categoryNames.length;
+        }
+
+        public int walletSlots() {
+            return walletNames.length;
+        }
+
+        public String categoryName(int categoryId) {
+            return categoryId > 0 && categoryId < categoryNames.length ? categoryNames[categoryId] : null;
+        }
+
+        public String walletName(int walletId) {
+            return walletId > 0 && walletId < walletNames.length ? walletNames[walletId] : null;
+        }
+
+        /**
+         * @return The category's id, or NONE if no row uses the name
+         */
+        public int categoryId(String name) {
+            for (int id = 1; id < categoryNames.length; id++) {
+                if (categoryNames[id] != null && categoryNames[id].equals(name)) {
+                    return id;
+                }
+            }
+            return NONE;
+        }
+
+        /**
+         * Index of the first row at or after a timestamp, or size if there is none
+         */
+        public int lowerBound(long millis) {
+            // First segment whose last row is at or after millis
+            int low = 0;
+            int high = segments.length;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                Segment segment = segments[mid];
+                if (segment.timestamps[segment.size - 1] < millis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low == segments.length ? size : starts[low] + segments[low].lowerBound(millis);
+        }
+
+        /**
+         * Total in paisa of the matching rows
+         * @param typeCode TransactionEntity.TYPE_EXPENSE, TYPE_INCOME or ANY
+         * @param categoryId Category id, or ANY
+         * @param startMillis Inclusive
+         * @param endMillis Exclusive
+         */
+        public long sum(int typeCode, int categoryId, long startMillis, long endMillis) {
+            long total = 0;
+            int from = lowerBound(startMillis);
+            int to = lowerBound(endMillis);
+            for (int s = from < to ? segmentOf(from) : segments.length; s < segments.length && starts[s] < to; s++) {
+                Segment segment = segments[s];
+                for (int i = Math.max(from - starts[s], 0), end = Math.min(to - starts[s], segment.size); i < end; i++) {
+                    if ((typeCode == ANY || segment.types[i] == typeCode)
+                            && (categoryId == ANY || segment.categories[i] == categoryId)) {
+                        total += segment.amounts[i];
+                    }
+                }
+            }
+            return total;
+        }
+
+        /**
+         * Number of matching rows; parameters as for sum()
+         */
+        public int count(int typeCode, int categoryId, long startMillis, long endMillis) {
+            int count = 0;
+            int from = lowerBound(startMillis);
+            int to = lowerBound(endMillis);
+            for (int s = from < to ? segmentOf(from) : segments.length; s < segments.length && starts[s] < to; s++) {
+                Segment segment = segments[s];
+                for (int i = Math.max(from - starts[s], 0), end = Math.min(to - starts[s], segment.size); i < end; i++) {
+                    if ((typeCode == ANY || segment.types[i] == typeCode)
+                            && (categoryId == ANY || segment.categories[i] == categoryId)) {
+                        count++;
+                    }
+                }
+            }
+            return count;
+        }
+
+        /**
+         * Add each matching row's amount to totals[categoryId]
+         * @param totals At least categorySlots() long
+         */
+        public void sumByCategory(int typeCode, long startMillis, long endMillis, long[] totals) {
+            int from = lowerBound(startMillis);
+            int to = lowerBound(endMillis);
+            for (int s = from < to ? segmentOf(from) : segments.length; s < segments.length && starts[s] < to; s++) {
+                Segment segment = segments[s];
+                for (int i = Math.max(from - starts[s], 0), end = Math.min(to - starts[s], segment.size); i < end; i++) {
+                    if (typeCode == ANY || segment.types[i] == typeCode) {
+                        totals[segment.categories[i]] += segment.amounts[i];
+                    }
+                }
+            }
+        }
+
+        /**
+         * Add each matching row's amount to totals[walletId]
+         * @param totals At least walletSlots() long
+         */
+        public void sumByWallet(int typeCode, long startMillis, long endMillis, long[] totals) {
+            int from = lowerBound(startMillis);
+            int to = lowerBound(endMillis);
+            for (int s = from < to ? segmentOf(from) : segments.length; s < segments.length && starts[s] < to; s++) {
+                Segment segment = segments[s];
+                for (int i = Math.max(from - starts[s], 0), end = Math.min(to - starts[s], segment.size); i < end; i++) {
+                    if (typeCode == ANY || segment.types[i] == typeCode) {
+                        totals[segment.wallets[i]] += segment.amounts[i];
+                    }
+                }
+            }
+        }
+
+        /**
+         * A copy with one committed row added in order. The entity's names label its
+         * ids, so no dictionary lookup is needed. Copies one segment, splitting it in
+         * two when it grows past SEGMENT_ROWS.
+         */
+        Columns with(long id, TransactionEntity entity) {
+            int category = entity.categoryId != null ? entity.categoryId : NONE;
+            int wallet = entity.walletId != null ? entity.walletId : NONE;
+            String[] nextCategoryNames = named(categoryNames, category, entity.category);
+            String[] nextWalletNames = named(walletNames, wallet, entity.wallet);
+            if (size == 0) {
+                Segment first = new Segment(new long[]{id}, new long[]{entity.dateTimestamp},
+                        new long[]{entity.amountMinor}, new int[]{entity.typeCode}, new int[]{category},
+                        new int[]{wallet});
+                return new Columns(new Segment[]{first}, nextCategoryNames, nextWalletNames);
+            }
+
+            // After every row with an earlier (dateTimestamp, id)
+            int at = lowerBound(entity.dateTimestamp);
+            while (at < size && timestampAt(at) == entity.dateTimestamp && idAt(at) < id) {
+                at++;
+            }
+            // Into the segment of the row before, so appends go to the last segment
+            int s = at == 0 ? 0 : segmentOf(at - 1);
+            Segment grown = segments[s].insert(at - starts[s], id, entity.dateTimestamp, entity.amountMinor,
+                    entity.typeCode, category, wallet);
+            Segment[] next = grown.size > SEGMENT_ROWS
+                    ? replace(segments, s, 1, grown.slice(0, grown.size / 2), grown.slice(grown.size / 2, grown.size))
+                    : replace(segments, s, 1, grown);
+            return new Columns(next, nextCategoryNames, nextWalletNames);
+        }
+
+        /**
+         * A copy without the row, or this if it is not present. Copies one segment,
+         * merging it into a neighbour when it falls below MIN_SEGMENT_ROWS.
+         * @param dateTimestamp Where to look first; the whole store is scanned if it is wrong
+         */
+        Columns without(long id, long dateTimestamp) {
+            int at = -1;
+            for (int i = lowerBound(dateTimestamp); i < size && timestampAt(i) == dateTimestamp; i++) {
+                if (idAt(i) == id) {
+                    at = i;
+                    break;
+                }
+            }
+            for (int s = 0; at < 0 && s < segments.length; s++) {
+                long[] ids = segments[s].ids;
+                for (int i = 0; i < ids.length; i++) {
+                    if (ids[i] == id) {
+                        at = starts[s] + i;
+                        break;
+                    }
+                }
+            }
+            if (at < 0) return this;
+
+            int s = segmentOf(at);
+            Segment shrunk = segments[s].remove(at - starts[s]);
+            Segment[] next;
+            if (shrunk.size == 0) {
+                next = replace(segments, s, 1);
+            } else if (shrunk.size < MIN_SEGMENT_ROWS && segments.length > 1) {
+                // Join a neighbour, splitting the pair again if it is too long
+                int left = s + 1 < segments.length ? s : s - 1;
+                Segment merged = left == s ? Segment.concat(shrunk, segments[s + 1])
+                        : Segment.concat(segments[left], shrunk);
+                next = merged.size > SEGMENT_ROWS
+                        ? replace(segments, left, 2, merged.slice(0, merged.size / 2),
+                                merged.slice(merged.size / 2, merged.size))
+                        : replace(segments, left, 2, merged);
+            } else {
+                next = replace(segments, s, 1, shrunk);
+            }
+            return new Columns(next, categoryNames, walletNames);
+        }
+
+        private int segmentOf(int index) {
+            int s = blockSegments[index >>> BLOCK_SHIFT];
+            while (starts[s + 1] <= index) {
+                s++;
+            }
+            return s;
+        }
+
+        /**
+         * A copy of the segment table with count segments from index on swapped for others
+         */
+        private static Segment[] replace(Segment[] segments, int index, int count, Segment... with) {
+            Segment[] next = new Segment[segments.length - count + with.length];
+            System.arraycopy(segments, 0, next, 0, index);
+            System.arraycopy(with, 0, next, index, with.length);
+            System.arraycopy(segments, index + count, next, index + with.length, segments.length - index - count);
+            return next;
+        }
+
+        /**
+         * The name table with id labelled, shared unchanged when it already is
+         */
+        private static String[] named(String[] names, int id, String name) {
+            if (id == NONE || name == null) return names;
+            if (id < names.length && name.equals(names[id])) return names;
+            String[] next = Arrays.copyOf(names, Math.max(names.length, id + 1));
+            next[id] = name;
+            return next;
+        }
+    }
+
+    /**
+     * A run of consecutive rows, never empty, never changed once built
+     */
+    private static final class Segment {
+        final int size;
+        final long[] ids;
+        final long[] timestamps;
+        final long[] amounts;
+        final int[] types;
+        final int[] categories;
+        final int[] wallets;
+
+        Segment(long[] ids, long[] timestamps, long[] amounts, int[] types, int[] categories, int[] wallets) {
+            this.size = ids.length;
+            this.ids = ids;
+            this.timestamps = timestamps;
+            this.amounts = amounts;
+            this.types = types;
+            this.categories = categories;
+            this.wallets = wallets;
+        }
+
+        int lowerBound(long millis) {
+            int low = 0;
+            int high = size;
+            while (low < high) {
+                int mid = (low + high) >>> 1;
+                if (timestamps[mid] < millis) {
+                    low = mid + 1;
+                } else {
+                    high = mid;
+                }
+            }
+            return low;
+        }
+
+        Segment insert(int at, long id, long timestamp, long amount, int type, int category, int wallet) {
+            return new Segment(insert(ids, at, id), insert(timestamps, at, timestamp), insert(amounts, at, amount),
+                    insert(types, at, type), insert(categories, at, category), insert(wallets, at, wallet));
+        }
+
+        Segment remove(int at) {
+            return new Segment(remove(ids, at), remove(timestamps, at), remove(amounts, at),
+                    remove(types, at), remove(categories, at), remove(wallets, at));
+        }
+
+        Segment slice(int from, int to) {
+            return new Segment(Arrays.copyOfRange(ids, from, to), Arrays.copyOfRange(timestamps, from, to),
+                    Arrays.copyOfRange(amounts, from, to), Arrays.copyOfRange(types, from, to),
+                    Arrays.copyOfRange(categories, from, to), Arrays.copyOfRange(wallets, from, to));
+        }
+
+        static Segment concat(Segment a, Segment b) {
+            return new Segment(concat(a.ids, b.ids), concat(a.timestamps, b.timestamps),
+                    concat(a.amounts, b.amounts), concat(a.types, b.types),
+                    concat(a.categories, b.categories), concat(a.wallets, b.wallets));
+        }
+
+        private static long[] insert(long[] column, int at, long value) {
+            long[] next = new long[column.length + 1];
+            System.arraycopy(column, 0, next, 0, at);
+            next[at] = value;
+            System.arraycopy(column, at, next, at + 1, column.length - at);
+            return next;
+        }
+
+        private static int[] insert(int[] column, int at, int value) {
+            int[] next = new int[column.length + 1];
+            System.arraycopy(column, 0, next, 0, at);
+            next[at] = value;
+            System.arraycopy(column, at, next, at + 1, column.length - at);
+            return next;
+        }
+
+        private static long[] remove(long[] column, int at) {
+            long[] next = new long[column.length - 1];
+            System.arraycopy(column, 0, next, 0, at);
+            System.arraycopy(column, at + 1, next, at, column.length - at - 1);
+            return next;
+        }
+
+        private static int[] remove(int[] column, int at) {
+            int[] next = new int[column.length - 1];
+            System.arraycopy(column, 0, next, 0, at);
+            System.arraycopy(column, at + 1, next, at, column.length - at - 1);
+            return next;
+        }
+
+        private static long[] concat(long[] a, long[] b) {
+            long[] next = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, next, a.length, b.length);
+            return next;
+        }
+
+        private static int[] concat(int[] a, int[] b) {
+            int[] next = Arrays.copyOf(a, a.length + b.length);
+            System.arraycopy(b, 0, next, a.length, b.length);
+            return next;
+        }
+    }
+}
@@ -0,0 +1,153 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.AppDatabase;
+import com.example.expensemanager.data.local.CategoryEntity;
+import com.example.expensemanager.data.local.DictionaryDao;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.data.local.WalletEntity;
+import com.example.expensemanager.utils.Money;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Maps category and wallet names to the ids stored in transactions and back,
+ * and converts between the stored paisa and the taka shown in the UI.
+ * Both lookup tables are small and only ever grow, so they are cached in full
+ * after the first use. Every method may hit the database; call off the main thread.
+ */
+public final class TransactionDictionary {
+
+    private static volatile TransactionDictionary INSTANCE;
+
+    private final DictionaryDao dictionaryDao;
+
+    // Guarded by "this"
+    private final Map<String, Integer> categoryIds = new HashMap<>();
+    private final Map<Integer, String> categoryNames = new HashMap<>();
+    private final Map<String, Integer> walletIds = new HashMap<>();
+    private final Map<Integer, String> walletNames = new HashMap<>();
+    private boolean loaded;
+
+    private TransactionDictionary(AppDatabase db) {
+        this.dictionaryDao = db.dictionaryDao();
+    }
+
+    public static TransactionDictionary getInstance(AppDatabase db) {
+        if (INSTANCE == null) {
+            synchronized (TransactionDictionary.class) {
+                if (INSTANCE == null) {
+                    INSTANCE = new TransactionDictionary(db);
+                }
+            }
+        }
+        return INSTANCE;
+    }
+
+    /**
+     * Fill amountMinor, typeCode, categoryId and walletId from the entity's display
+     * fields, adding unseen names to the lookup tables. Call outside any transaction
+     * that may roll back, or the cache could keep an id that was never committed.
+     */
+    public synchronized void resolve(TransactionEntity entity) {
+        ensureLoaded();
+        entity.amountMinor = Money.toMinor(entity.amount);
+        entity.typeCode = TransactionEntity.typeCode(entity.type);
+        entity.categoryId = categoryId(entity.category);
+        entity.walletId = walletId(entity.wallet);
+    }
+
+    /**
+     * Fill the display fields of a row read from the database
+     */
+    public synchronized void hydrate(TransactionEntity entity) {
+        ensureLoaded();
+        entity.amount = Money.toMajor(entity.amountMinor);
+        entity.type = TransactionEntity.typeName(entity.typeCode);
+        entity.category = name(categoryNames, entity.categoryId);
+        entity.wallet = name(walletNames, entity.walletId);
+    }
+
+    public synchronized void hydrateAll(List<TransactionEntity> entities) {
+        for (TransactionEntity entity : entities) {
+            hydrate(entity);
+        }
+    }
+
+    public synchronized String categoryName(Integer id) {
+        ensureLoaded();
+        return name(categoryNames, id);
+    }
+
+    public synchronized String walletName(Integer id) {
+        ensureLoaded();
+        return name(walletNames, id);
+    }
+
+    /**
+     * Id of an existing category, or null if no transaction has used the name yet
+     */
+    public synchronized Integer findCategoryId(String name) {
+        ensureLoaded();
+        return categoryIds.get(name);
+    }
+
+    private Integer categoryId(String name) {
+        if (name == null) return null;
+        Integer id = categoryIds.get(name);
+        if (id != null) return id;
+
+        CategoryEntity category = new CategoryEntity();
+        category.name = name;
+        long rowId = dictionaryDao.insertCategory(category);
+        // -1 means another writer added the name since the cache was loaded
+        id = rowId != -1 ? (int) rowId : dictionaryDao.getCategoryId(name);
+        categoryIds.put(name, id);
+        categoryNames.put(id, name);
+        return id;
+    }
+
+    private Integer walletId(String name) {
+        if (name == null) return null;
+        Integer id = walletIds.get(name);
+        if (id != null) return id;
+
+        WalletEntity wallet = new WalletEntity();
+        wallet.name = name;
+        long rowId = dictionaryDao.insertWallet(wallet);
+        id = rowId != -1 ? (int) rowId : dictionaryDao.getWalletId(name);
+        walletIds.put(name, id);
+        walletNames.put(id, name);
+        return id;
+    }
+
+    private String name(Map<Integer, String> names, Integer id) {
+        if (id == null) return null;
+        String name = names.get(id);
+        if (name == null) {
+            // Added through another path since the last load
+            reload();
+            name = names.get(id);
+        }
+        return name;
+    }
+
+    private void ensureLoaded() {
+        if (!loaded) {
+            reload();
+        }
+    }
+
+    private void reload() {
+        for (CategoryEntity category : dictionaryDao.getAllCategories()) {
+            categoryIds.put(category.name, category.id);
+            categoryNames.put(category.id, category.name);
+        }
+        for (WalletEntity wallet : dictionaryDao.getAllWallets()) {
+            walletIds.put(wallet.name, wallet.id);
+            walletNames.put(wallet.id, wallet.name);
+        }
+        loaded = true;
+    }
+}
@@ -0,0 +1,394 @@
+package com.example.expensemanager.data;
+
+import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MutableLiveData;
+
+import com.example.expensemanager.data.local.AppDatabase;
+import com.example.expensemanager.data.local.ArchiveDao;
+import com.example.expensemanager.data.local.TransactionDao;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.data.local.TransactionFtsEntity;
+import com.example.expensemanager.data.local.TransactionRow;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+
+/**
+ * Loads a user's transactions page by page using keyset pagination over
+ * (dateTimestamp, id). Pages are only fetched when loadMore() is called. Writes
+ * arrive from TransactionChangeFeed and are spliced into the rows already on screen
+ * without a query; bulk imports, searches and writes that race a load reload instead.
+ * Writes that are still queued are laid over the loaded rows as soon as they are
+ * announced, and dropped again when they commit or fail.
+ * While a search is set the list is instead the best SEARCH_LIMIT note matches,
+ * in rank order, loaded in one go.
+ * <p>
+ * Pages come from the hot transactions table alone until they reach back past the
+ * archive cutoff; only then is transactions_archive read as well. Search covers the
+ * hot table only.
+ */
+public class TransactionPager {
+
+    public static final int DEFAULT_PAGE_SIZE = 50;
+    public static final int SEARCH_LIMIT = 200;
+
+    private final TransactionDao transactionDao;
+    private final ArchiveDao archiveDao;
+    private final TransactionDictionary dictionary;
+    private final Executor executor;
+    private final String userId;
+    private final int pageSize;
+    private final MutableLiveData<Snapshot> snapshot = new MutableLiveData<>();
+    private final TransactionRepository.OnTransactionChangeListener changeListener = this::onTransactionChanged;
+
+    // Guarded by "this"
+    private long startMillis = Long.MIN_VALUE;
+    private long endMillis = Long.MAX_VALUE;
+    private String category;
+    private String searchMatch;
+    private List<TransactionRow> loaded = new ArrayList<>();
+    // Optimistic writes by token, in the order they were queued
+    private final Map<Long, PendingEdit> pendingEdits = new LinkedHashMap<>();
+    private long version;
+    private int generation;      // load requests; a newer one discards older results
+    private int bindGeneration;  // snapshots; see Snapshot
+    private boolean loading;
+    private boolean endReached;
+
+    TransactionPager(AppDatabase db, TransactionDictionary dictionary, Executor executor, String userId, int pageSize) {
+        this.transactionDao = db.transactionDao();
+        this.archiveDao = db.archiveDao();
+        this.dictionary = dictionary;
+        this.executor = executor;
+        this.userId = userId;
+        this.pageSize = pageSize;
+        TransactionChangeFeed.getInstance().addListener(changeListener);
+    }
+
+    public LiveData<Snapshot> getSnapshot() {
+        return snapshot;
+    }
+
+    /**
+     * Restrict the list to a date range and optional category, then load from the top
+     * @param startMillis Inclusive lower bound, or Long.MIN_VALUE
+     * @param endMillis Exclusive upper bound, or Long.MAX_VALUE
+     * @param category Category name, or null for all categories
+     */
+    public void setFilter(long startMillis, long endMillis, String category) {
+        synchronized (this) {
+            this.startMillis = startMillis;
+            this.endMillis = endMillis;
+            this.category = category;
+            loaded = new ArrayList<>();
+        }
+        refresh();
+    }
+
+    /**
+     * Show only transactions whose note matches the text, within the current filter
+     * @param text Words to look for as prefixes, or null/blank to list everything
+     */
+    public void setSearchQuery(String text) {
+        synchronized (this) {
+            searchMatch = TransactionFtsEntity.toMatchQuery(text);
+            loaded = new ArrayList<>();
+        }
+        refresh();
+    }
+
+    /**
+     * Fetch the next page if one is not already in flight
+     */
+    public void loadMore() {
+        final int requestGeneration;
+        final long beforeTimestamp;
+        final long beforeId;
+        synchronized (this) {
+            if (loading || endReached) return;
+            loading = true;
+            requestGeneration = generation;
+            if (loaded.isEmpty()) {
+                beforeTimestamp = Long.MAX_VALUE;
+                beforeId = Long.MAX_VALUE;
+            } else {
+                TransactionRow last = loaded.get(loaded.size() - 1);
+                beforeTimestamp = last.dateTimestamp;
+                beforeId = last.id;
+            }
+        }
+        executor.execute(() -> load(requestGeneration, beforeTimestamp, beforeId, pageSize, false));
+    }
+
+    /**
+     * Reload from the top, keeping at least as many rows as were already loaded
+     * so the scroll position survives edits
+     */
+    public void refresh() {
+        final int requestGeneration;
+        final int limit;
+        synchronized (this) {
+            requestGeneration = ++generation;
+            loading = true;
+            endReached = false;
+            limit = searchMatch != null ? SEARCH_LIMIT : Math.max(pageSize, loaded.size());
+        }
+        executor.execute(() -> load(requestGeneration, Long.MAX_VALUE, Long.MAX_VALUE, limit, true));
+    }
+
+    /**
+     * Stop listening for changes
+     */
+    public void close() {
+        TransactionChangeFeed.getInstance().removeListener(changeListener);
+    }
+
+    private void load(int requestGeneration, long beforeTimestamp, long beforeId, int limit, boolean replace) {
+        long start;
+        long end;
+        String filterCategory;
+        String match;
+        long readVersion;
+        synchronized (this) {
+            if (requestGeneration != generation) return;
+            // Read before querying, so the rows reflect at least this version
+            readVersion = TransactionChangeFeed.getInstance().getVersion();
+            start = startMillis;
+            end = endMillis;
+            filterCategory = category;
+            match = searchMatch;
+        }
+
+        List<TransactionRow> page;
+        if (match != null) {
+            page = search(match, start, end, filterCategory, limit);
+        } else if (filterCategory == null) {
+            page = transactionDao.getPageBefore(userId, start, end, beforeTimestamp, beforeId, limit);
+            if (mayNeedArchive(page, start, limit)) {
+                page = archiveDao.getPageBefore(userId, start, end, beforeTimestamp, beforeId, limit);
+            }
+        } else {
+            Integer categoryId = dictionary.findCategoryId(filterCategory);
+            // A name no transaction has used yet cannot match anything
+            if (categoryId == null) {
+                page = Collections.emptyList();
+            } else {
+                page = transactionDao.getPageBeforeInCategory(
+                        userId, categoryId, start, end, beforeTimestamp, beforeId, limit);
+                if (mayNeedArchive(page, start, limit)) {
+                    page = archiveDao.getPageBeforeInCategory(
+                            userId, categoryId, start, end, beforeTimestamp, beforeId, limit);
+                }
+            }
+        }
+
+        synchronized (this) {
+            // A refresh or filter change superseded this load
+            if (requestGeneration != generation) return;
+            List<TransactionRow> next = replace ? new ArrayList<>(page.size()) : new ArrayList<>(loaded);
+            next.addAll(page);
+            loaded = next;
+            version = Math.max(version, readVersion);
+            loading = false;
+            // Search results are ranked, not keyed, so there is no next page
+            endReached = match != null || page.size() < limit;
+            if (replace) {
+                // Committed writes kept on screen while this reload ran are in the rows now
+                Iterator<PendingEdit> edits = pendingEdits.values().iterator();
+                while (edits.hasNext()) {
+                    PendingEdit edit = edits.next();
+                    if (edit.settledBefore != 0 && edit.settledBefore <= requestGeneration) {
+                        edits.remove();
+                    }
+                }
+            }
+            postSnapshot(!replace);
+        }
+    }
+
+    private void onTransactionChanged(TransactionChange change) {
+        synchronized (this) {
+            if (change.pending) {
+                // Deletes by id come without a user; hiding an id that is not ours is harmless
+                if (change.userId != null && !userId.equals(change.userId)) return;
+                pendingEdits.put(change.token, new PendingEdit(change.id, rowOf(change.id, change.after)));
+                version = change.version;
+                postSnapshot(false);
+                return;
+            }
+            PendingEdit edit = change.token != 0 ? pendingEdits.remove(change.token) : null;
+            if (change.kind == TransactionChange.Kind.REVERTED) {
+                version = change.version;
+                if (edit != null) {
+                    postSnapshot(false);
+                }
+                return;
+            }
+            if (!userId.equals(change.userId)) return;
+
+            // A load in flight may have read before this commit, and search results
+            // are ranked by the note text, so both are simpler to read again
+            boolean reload = change.kind == TransactionChange.Kind.RELOAD || loading || searchMatch != null;
+            if (!reload) {
+                List<TransactionRow> next = new ArrayList<>(loaded);
+                boolean changed = change.before != null && removeById(next, change.id);
+                if (change.after != null) {
+                    TransactionRow row = TransactionRow.of(change.after);
+                    changed |= matchesFilter(row) && insertInOrder(next, row);
+                }
+                version = change.version;
+                if (changed || edit != null) {
+                    loaded = next;
+                    postSnapshot(false);
+                }
+                return;
+            }
+            if (edit != null) {
+                // Keep showing the committed row until the reload below has read it
+                pendingEdits.put(change.token, new PendingEdit(change.id,
+                        rowOf(change.id, change.after), generation + 1));
+            }
+        }
+        refresh();
+    }
+
+    /**
+     * Post the loaded rows with any pending writes laid over them
+     * @param appended True when the rows only grew at the end since the last snapshot
+     */
+    // Guarded by "this"
+    private void postSnapshot(boolean appended) {
+        List<TransactionRow> items = loaded;
+        if (!pendingEdits.isEmpty() && searchMatch == null) {
+            items = new ArrayList<>(loaded);
+            for (PendingEdit edit : pendingEdits.values()) {
+                removeById(items, edit.id);
+                if (edit.row != null && matchesFilter(edit.row)) {
+                    insertInOrder(items, edit.row);
+                }
+            }
+            // Pending rows can land anywhere, so never treat an overlay as an append
+            appended = false;
+        }
+        if (!appended) {
+            bindGeneration++;
+        }
+        snapshot.postValue(new Snapshot(bindGeneration, version, Collections.unmodifiableList(items), endReached));
+    }
+
+    private static TransactionRow rowOf(long id, TransactionEntity entity) {
+        if (entity == null) return null;
+        TransactionRow row = TransactionRow.of(entity);
+        // A pending insert has no id yet; use the placeholder
+        row.id = id;
+        return row;
+    }
+
+    private boolean matchesFilter(TransactionRow row) {
+        return row.dateTimestamp >= startMillis && row.dateTimestamp < endMillis
+                && (category == null || category.equals(row.category));
+    }
+
+    private static boolean removeById(List<TransactionRow> rows, long id) {
+        for (int i = 0; i < rows.size(); i++) {
+            if (rows.get(i).id == id) {
+                rows.remove(i);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Binary search for the row's place in (dateTimestamp, id) descending order.
+     * A row past the end of an unfinished list is left for a later page.
+     */
+    private boolean insertInOrder(List<TransactionRow> rows, TransactionRow row) {
+        int low = 0;
+        int high = rows.size();
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            TransactionRow other = rows.get(mid);
+            boolean before = row.dateTimestamp > other.dateTimestamp
+                    || (row.dateTimestamp == other.dateTimestamp && row.id > other.id);
+            if (before) {
+                high = mid;
+            } else {
+                low = mid + 1;
+            }
+        }
+        if (low == rows.size() && !endReached) return false;
+        rows.add(low, row);
+        return true;
+    }
+
+    /**
+     * Whether archived rows could belong on a page read from the hot table: the range
+     * reaches below the archive cutoff and the page either ran short or went past it
+     */
+    private boolean mayNeedArchive(List<TransactionRow> hotPage, long start, int limit) {
+        Long cutoff = archiveDao.getArchivedBefore(userId);
+        if (cutoff == null || start >= cutoff) return false;
+        return hotPage.size() < limit || hotPage.get(limit - 1).dateTimestamp < cutoff;
+    }
+
+    private List<TransactionRow> search(String match, long start, long end, String filterCategory, int limit) {
+        // Results are ranked rather than paged, so the range alone decides whether
+        // archived notes could match
+        Long cutoff = archiveDao.getArchivedBefore(userId);
+        boolean withArchive = cutoff != null && start < cutoff;
+        if (filterCategory == null) {
+            return withArchive ? archiveDao.search(userId, match, start, end, limit)
+                    : transactionDao.search(userId, match, start, end, limit);
+        }
+        Integer categoryId = dictionary.findCategoryId(filterCategory);
+        if (categoryId == null) return Collections.emptyList();
+        return withArchive ? archiveDao.searchInCategory(userId, match, categoryId, start, end, limit)
+                : transactionDao.searchInCategory(userId, match, categoryId, start, end, limit);
+    }
+
+    /**
+     * An optimistic write: the row with this id is hidden, and the new row, if any,
+     * shown in its place
+     */
+    private static class PendingEdit {
+        final long id;
+        final TransactionRow row;
+        // Set once committed: the load generation whose reload makes this redundant
+        final int settledBefore;
+
+        PendingEdit(long id, TransactionRow row) {
+            this(id, row, 0);
+        }
+
+        PendingEdit(long id, TransactionRow row, int settledBefore) {
+            this.id = id;
+            this.row = row;
+            this.settledBefore = settledBefore;
+        }
+    }
+
+    /**
+     * Rows loaded so far, with pending writes applied. Within one generation later
+     * snapshots only ever append, so observers can bind just the new tail.
+     */
+    public static class Snapshot {
+        public final int generation;
+        /** TransactionChangeFeed version the rows reflect */
+        public final long version;
+        public final List<TransactionRow> items;
+        public final boolean endReached;
+
+        Snapshot(int generation, long version, List<TransactionRow> items, boolean endReached) {
+            this.generation = generation;
+            this.version = version;
+            this.items = items;
+            this.endReached = endReached;
+        }
+    }
+}
@@ -3,24 +3,61 @@ package com.example.expensemanager.data;
 import android.content.Context;
 
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 
 import com.example.expensemanager.data.local.AppDatabase;
+import com.example.expensemanager.data.local.ArchiveDao;
+import com.example.expensemanager.data.local.CategorySketchEntity;
+import com.example.expensemanager.data.local.CategorySketches;
+import com.example.expensemanager.data.local.CategoryTotal;
+import com.example.expensemanager.data.local.ContentHash;
+import com.example.expensemanager.data.local.QuantileSketch;
+import com.example.expensemanager.data.local.RollupDao;
+import com.example.expensemanager.data.local.SketchDao;
 import com.example.expensemanager.data.local.TransactionDao;
 import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.data.local.TransactionRow;
+import com.example.expensemanager.data.local.TypeTotal;
+import com.example.expensemanager.utils.DateBuckets;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.BiConsumer;
 
 public class TransactionRepository {
 
+    public static final int DEFAULT_CHUNK_SIZE = 500;
+    // More than the widest gap between time zones, so a row keyed by yearMonth in
+    // another zone still falls inside the month's timestamp range
+    private static final long ZONE_MARGIN_MS = 27L * 60 * 60 * 1000;
+
+    private final AppDatabase db;
     private final TransactionDao transactionDao;
-    private final ExecutorService executor = Executors.newSingleThreadExecutor();
+    private final RollupDao rollupDao;
+    private final ArchiveDao archiveDao;
+    private final SketchDao sketchDao;
+    private final TransactionDictionary dictionary;
+    private final DataScheduler scheduler;
+    private final TransactionChangeFeed feed = TransactionChangeFeed.getInstance();
+    private final TransactionCache cache = TransactionCache.getInstance();
     private OnTransactionChangeListener changeListener;
 
     public TransactionRepository(Context context) {
-        AppDatabase db = AppDatabase.getInstance(context);
+        this.db = AppDatabase.getInstance(context);
         this.transactionDao = db.transactionDao();
+        this.rollupDao = db.rollupDao();
+        this.archiveDao = db.archiveDao();
+        this.sketchDao = db.sketchDao();
+        this.dictionary = TransactionDictionary.getInstance(db);
+        this.scheduler = DataScheduler.getInstance(db);
     }
 
     public void setTransactionChangeListener(OnTransactionChangeListener listener) {
@@ -28,70 +65,570 @@ public class TransactionRepository {
     }
 
     public LiveData<List<TransactionEntity>> getAllTransactions() {
-        return transactionDao.getAll();
+        return hydrated(transactionDao.getAll());
     }
 
     public LiveData<List<TransactionEntity>> getTransactionsByUser(String userId) {
-        return transactionDao.getAllByUser(userId);
+        return hydrated(transactionDao.getAllByUser(userId));
     }
 
-    public void insert(TransactionEntity entity) {
-        executor.execute(() -> {
-            transactionDao.insert(entity);
-            notifyTransactionChange();
-        });
+    /**
+     * Create a pager for the transaction list. Callers must close() it when done.
+     */
+    public TransactionPager createPager(String userId) {
+        return new TransactionPager(db, dictionary, scheduler.getReadExecutor(), userId, TransactionPager.DEFAULT_PAGE_SIZE);
     }
 
-    public void update(TransactionEntity entity) {
-        executor.execute(() -> {
-            transactionDao.update(entity);
-            notifyTransactionChange();
-        });
+    /**
+     * The in-memory column store of the user's transactions for range aggregations,
+     * shared with every other caller. Callers must close() it when done.
+     */
+    public TransactionColumnStore openColumnStore(String userId) {
+        return TransactionColumnStore.open(db.archiveDao(), dictionary, scheduler.getReadExecutor(), userId);
     }
 
-    public void delete(TransactionEntity entity) {
-        executor.execute(() -> {
-            transactionDao.delete(entity);
-            notifyTransactionChange();
-        });
+    /**
+     * The shared reader pool, for work that only reads in-memory data
+     */
+    public Executor getReadExecutor() {
+        return scheduler.getReadExecutor();
+    }
+
+    /**
+     * Fill in the category and wallet names of every emitted list on the reader pool.
+     * Entities only store the ids, and a dictionary miss needs a database read.
+     */
+    private LiveData<List<TransactionEntity>> hydrated(LiveData<List<TransactionEntity>> source) {
+        MediatorLiveData<List<TransactionEntity>> result = new MediatorLiveData<>();
+        result.addSource(source, rows -> scheduler.read(() -> {
+            dictionary.hydrateAll(rows);
+            result.postValue(rows);
+        }));
+        return result;
+    }
+
+    /**
+     * Queue an insert. Observers of the change feed see it straight away as a pending
+     * insert with a placeholder id, then again with the real id once it commits.
+     * @return Completes with the new id after commit
+     */
+    public CompletableFuture<Long> insert(TransactionEntity entity) {
+        long token = feed.nextToken();
+        previewForWrite(entity);
+        feed.publish(TransactionChange.Kind.INSERTED, true, token, entity.userId, -token, null, entity);
+        return scheduler.write(new DataScheduler.Write<Long>() {
+            @Override
+            protected void prepare() {
+                prepareForWrite(entity);
+            }
+
+            @Override
+            protected Long apply() {
+                long id = transactionDao.insert(entity);
+                addToSketches(Collections.singletonList(entity));
+                return id;
+            }
+
+            @Override
+            protected void committed(Long id) {
+                entity.id = id;
+                notifyTransactionChange(TransactionChange.Kind.INSERTED, token, entity.userId, id, null, entity);
+            }
+        }).whenComplete(revertOnFailure(token, entity.userId));
+    }
+
+    /**
+     * Update a transaction. An archived one is moved back to the hot table first;
+     * if it is still old enough, the next archive pass moves it out again.
+     * @return Completes with false if the row no longer existed
+     */
+    public CompletableFuture<Boolean> update(TransactionEntity entity) {
+        long token = feed.nextToken();
+        previewForWrite(entity);
+        feed.publish(TransactionChange.Kind.UPDATED, true, token, entity.userId, entity.id, null, entity);
+        return scheduler.write(new DataScheduler.Write<TransactionEntity>() {
+            @Override
+            protected void prepare() {
+                prepareForWrite(entity);
+            }
+
+            @Override
+            protected TransactionEntity apply() {
+                TransactionEntity before = findById(entity.id);
+                if (transactionDao.update(entity) == 0) {
+                    archiveDao.copyToHot(entity.id);
+                    if (archiveDao.deleteById(entity.id) > 0) {
+                        transactionDao.update(entity);
+                    }
+                }
+                if (before != null) {
+                    rebuildSketch(before);
+                    if (entity.typeCode != before.typeCode || !sameSketch(before, entity)) {
+                        rebuildSketch(entity);
+                    }
+                }
+                return before;
+            }
+
+            @Override
+            protected void committed(TransactionEntity before) {
+                if (before != null) {
+                    notifyTransactionChange(TransactionChange.Kind.UPDATED, token, entity.userId, entity.id,
+                            before, entity);
+                } else {
+                    // The row was already gone
+                    revert(token, entity.userId);
+                }
+            }
+        }).whenComplete(revertOnFailure(token, entity.userId))
+                .thenApply(before -> before != null);
     }
 
-    private void notifyTransactionChange() {
+    /**
+     * @return Completes with false if the row no longer existed
+     */
+    public CompletableFuture<Boolean> delete(TransactionEntity entity) {
+        return deleteById(entity.userId, entity.id);
+    }
+
+    /**
+     * Queue a delete by id. The pending change carries no user, so every consumer
+     * hides the row until the outcome arrives.
+     * @return Completes with false if the row no longer existed
+     */
+    public CompletableFuture<Boolean> deleteById(long id) {
+        return deleteById(null, id);
+    }
+
+    private CompletableFuture<Boolean> deleteById(String userId, long id) {
+        long token = feed.nextToken();
+        feed.publish(TransactionChange.Kind.DELETED, true, token, userId, id, null, null);
+        return scheduler.write(new DataScheduler.Write<TransactionEntity>() {
+            @Override
+            protected TransactionEntity apply() {
+                TransactionEntity before = findById(id);
+                if (transactionDao.deleteById(id) == 0) {
+                    archiveDao.deleteById(id);
+                }
+                if (before != null) {
+                    rebuildSketch(before);
+                }
+                return before;
+            }
+
+            @Override
+            protected void committed(TransactionEntity before) {
+                if (before != null) {
+                    notifyTransactionChange(TransactionChange.Kind.DELETED, token, before.userId, id, before, null);
+                } else {
+                    revert(token, userId);
+                }
+            }
+        }).whenComplete(revertOnFailure(token, userId))
+                .thenApply(before -> before != null);
+    }
+
+    /**
+     * Withdraw a pending change whose write failed or found nothing to change
+     */
+    private void revert(long token, String userId) {
+        feed.publish(TransactionChange.Kind.REVERTED, false, token, userId, 0, null, null);
+    }
+
+    private <T> BiConsumer<T, Throwable> revertOnFailure(long token, String userId) {
+        return (result, error) -> {
+            if (error != null) {
+                revert(token, userId);
+            }
+        };
+    }
+
+    /**
+     * The columns a list row shows, computed on the caller's thread so a pending
+     * change can be displayed before the writer gets to it. prepareForWrite sets
+     * the same values again.
+     */
+    private void previewForWrite(TransactionEntity entity) {
+        entity.amountMinor = Money.toMinor(entity.amount);
+        entity.typeCode = TransactionEntity.typeCode(entity.type);
+        entity.dayKey = DateBuckets.current().dayKey(entity.dateTimestamp);
+        entity.yearMonth = entity.dayKey / 100;
+    }
+
+    /**
+     * Fill in the derived columns so grouping never needs SQLite date functions,
+     * and swap the names for dictionary ids. Runs on the writer thread, outside the
+     * group transaction.
+     */
+    private void prepareForWrite(TransactionEntity entity) {
+        prepareForWrite(entity, DateBuckets.current());
+    }
+
+    /**
+     * @param buckets Day tables looked up once for a whole batch
+     */
+    private void prepareForWrite(TransactionEntity entity, DateBuckets buckets) {
+        dictionary.resolve(entity);
+        entity.dayKey = buckets.dayKey(entity.dateTimestamp);
+        entity.yearMonth = entity.dayKey / 100;
+        entity.contentHash = ContentHash.of(entity);
+    }
+
+    /**
+     * Publish a committed write on the app-wide feed, then to this repository's listener
+     */
+    private void notifyTransactionChange(TransactionChange.Kind kind, long token, String userId, long id,
+                                         TransactionEntity before, TransactionEntity after) {
+        TransactionChange change = feed.publish(kind, false, token, userId, id, before, after);
         if (changeListener != null) {
-            changeListener.onTransactionChanged();
+            changeListener.onTransactionChanged(change);
+        }
+    }
+
+    /**
+     * Look up one transaction, archived ones included. Rows the user has just seen in
+     * the list or written are usually cached, and then no database work is done.
+     * @return Completes with the transaction, or null if there is none
+     */
+    public CompletableFuture<TransactionEntity> getById(long id) {
+        TransactionEntity cached = cache.get(id);
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached);
+        }
+        return CompletableFuture.supplyAsync(() -> {
+            TransactionEntity entity = findById(id);
+            if (entity != null) {
+                cache.put(entity);
+            }
+            return entity;
+        }, scheduler.getReadExecutor());
+    }
+
+    /**
+     * Remember a list row so opening it for editing needs no read
+     */
+    public void rememberRow(TransactionRow row, String userId) {
+        cache.putRow(row, userId);
+    }
+
+    /**
+     * The row with this id from the hot table or the archive, with names filled in
+     */
+    private TransactionEntity findById(long id) {
+        TransactionEntity entity = transactionDao.getById(id);
+        if (entity == null) {
+            entity = archiveDao.getById(id);
+        }
+        if (entity != null) {
+            dictionary.hydrate(entity);
         }
+        return entity;
+    }
+
+    /**
+     * Transactions of one calendar month in the device time zone
+     * @param month Calendar.MONTH value (0-11)
+     */
+    public LiveData<List<TransactionEntity>> getTransactionsByUserAndMonth(String userId, int year, int month) {
+        return hydrated(transactionDao.getByUserInRange(userId,
+                DateKeys.monthStart(year, month), DateKeys.monthEnd(year, month)));
+    }
+
+    public LiveData<List<TransactionEntity>> getTransactionsByUserInRange(String userId, long startMillis, long endMillis) {
+        return hydrated(transactionDao.getByUserInRange(userId, startMillis, endMillis));
+    }
+
+    /**
+     * All-time totals per type, read from monthly_rollup
+     */
+    public LiveData<List<TypeTotal>> getTotalsByType(String userId) {
+        return rollupDao.getTotalsByType(userId);
+    }
+
+    /**
+     * Total in paisa for one type over an inclusive range of yyyyMM keys, read from monthly_rollup
+     * @param typeCode TransactionEntity.TYPE_EXPENSE or TYPE_INCOME
+     */
+    public LiveData<Long> getTypeTotalForMonths(String userId, int typeCode, int fromYearMonth, int toYearMonth) {
+        return rollupDao.getTypeTotalForMonths(userId, typeCode, fromYearMonth, toYearMonth);
+    }
+
+    /**
+     * Per-category totals over an inclusive range of yyyyMM keys, read from monthly_rollup
+     */
+    public LiveData<List<CategoryTotal>> getCategoryTotalsForMonths(String userId, int typeCode, int fromYearMonth, int toYearMonth) {
+        return rollupDao.getCategoryTotalsForMonths(userId, typeCode, fromYearMonth, toYearMonth);
     }
 
-    public TransactionEntity getById(long id) {
-        return transactionDao.getById(id);
+    public LiveData<Long> getTypeTotalInRange(String userId, int typeCode, long startMillis, long endMillis) {
+        return transactionDao.getTypeTotalInRange(userId, typeCode, startMillis, endMillis);
     }
 
-    public LiveData<List<TransactionEntity>> getTransactionsByUserAndMonth(String userId, String year, String month) {
-        return transactionDao.getTransactionsByUserAndMonth(userId, year, month);
+    public LiveData<List<CategoryTotal>> getCategoryTotalsInRange(String userId, int typeCode, long startMillis, long endMillis) {
+        return transactionDao.getCategoryTotalsInRange(userId, typeCode, startMillis, endMillis);
+    }
+
+    public CompletableFuture<List<Long>> insertAll(List<TransactionEntity> entities, OnCompleteListener listener) {
+        return insertAll(entities, DEFAULT_CHUNK_SIZE, new OnBulkInsertListener() {
+            @Override
+            public void onProgress(int inserted, int total) {
+            }
+
+            @Override
+            public void onComplete(boolean success, List<Long> ids, int skipped) {
+                if (listener != null) {
+                    listener.onComplete(success, ids.size());
+                }
+            }
+        });
     }
 
-    public void insertAll(List<TransactionEntity> entities, OnCompleteListener listener) {
-        executor.execute(() -> {
-            try {
+    /**
+     * Insert many rows in one SQLite transaction on the writer thread, using batched
+     * inserts of chunkSize rows.
+     * Observers see a single invalidation once everything has committed; if any chunk
+     * fails nothing is inserted. Rows whose content already exists for the user are
+     * skipped by the unique (userId, contentHash) index, one index probe per row, plus
+     * one probe of the same index on transactions_archive.
+     * @param chunkSize Rows per batched insert statement loop
+     * @param listener Gets progress after each chunk, then the ids of the inserted rows
+     *                 and the number of duplicates skipped, or null
+     * @return Completes with the ids of the inserted rows
+     */
+    public CompletableFuture<List<Long>> insertAll(List<TransactionEntity> entities, int chunkSize,
+                                                   OnBulkInsertListener listener) {
+        List<Long> ids = new ArrayList<>(entities.size());
+        int[] skipped = {0};
+        return scheduler.write(new DataScheduler.Write<List<Long>>() {
+            @Override
+            protected void prepare() {
+                // New names go into the lookup tables before the transaction starts,
+                // so a rollback cannot leave uncommitted ids in the dictionary cache
+                DateBuckets buckets = DateBuckets.current();
                 for (TransactionEntity entity : entities) {
                     // Reset ID to let database auto-generate new IDs
                     entity.id = 0;
-                    transactionDao.insert(entity);
+                    prepareForWrite(entity, buckets);
                 }
-                if (listener != null) {
-                    listener.onComplete(true, entities.size());
+            }
+
+            @Override
+            protected List<Long> apply() {
+                // May run twice if the group it shared is retried
+                ids.clear();
+                skipped[0] = 0;
+                int total = entities.size();
+                for (int start = 0; start < total; start += chunkSize) {
+                    int end = Math.min(start + chunkSize, total);
+                    // The unique index only covers the hot table; archived copies are probed here
+                    List<TransactionEntity> chunk = new ArrayList<>(end - start);
+                    for (TransactionEntity entity : entities.subList(start, end)) {
+                        if (archiveDao.countByContentHash(entity.userId, entity.contentHash) > 0) {
+                            skipped[0]++;
+                        } else {
+                            chunk.add(entity);
+                        }
+                    }
+                    List<Long> chunkIds = transactionDao.insertAllIgnoringDuplicates(chunk);
+                    List<TransactionEntity> inserted = new ArrayList<>(chunk.size());
+                    for (int i = 0; i < chunkIds.size(); i++) {
+                        long id = chunkIds.get(i);
+                        if (id == -1) {
+                            skipped[0]++;
+                        } else {
+                            ids.add(id);
+                            inserted.add(chunk.get(i));
+                        }
+                    }
+                    addToSketches(inserted);
+                    if (listener != null) {
+                        listener.onProgress(end, total);
+                    }
+                }
+                return ids;
+            }
+
+            @Override
+            protected void committed(List<Long> result) {
+                if (!ids.isEmpty()) {
+                    notifyTransactionChange(TransactionChange.Kind.RELOAD, 0, entities.get(0).userId, 0, null, null);
                 }
-            } catch (Exception e) {
                 if (listener != null) {
-                    listener.onComplete(false, 0);
+                    listener.onComplete(true, ids, skipped[0]);
                 }
             }
+        }).whenComplete((result, error) -> {
+            if (error != null && listener != null) {
+                listener.onComplete(false, new ArrayList<>(), 0);
+            }
         });
     }
 
-    public void getAllTransactionsSync(String userId, OnTransactionsFetchedListener listener) {
-        executor.execute(() -> {
+    /**
+     * Move a user's transactions dated before the cutoff into transactions_archive.
+     * Totals are unaffected; the list and exports still reach archived rows, so no
+     * change is published.
+     * @param cutoffMillis Rows with an earlier dateTimestamp are moved
+     * @param listener Gets the number of rows moved, or null
+     * @return Completes with the number of rows moved
+     */
+    public CompletableFuture<Integer> archiveOlderThan(String userId, long cutoffMillis, OnCompleteListener listener) {
+        return scheduler.write(new DataScheduler.Write<Integer>() {
+            @Override
+            protected Integer apply() {
+                archiveDao.copyOlderThan(userId, cutoffMillis);
+                return archiveDao.deleteHotOlderThan(userId, cutoffMillis);
+            }
+        }).whenComplete((moved, error) -> {
+            if (listener != null) {
+                listener.onComplete(error == null, error == null ? moved : 0);
+            }
+        });
+    }
+
+    /**
+     * Recompute monthly_rollup and category_sketches from the raw transactions,
+     * archived ones included. Both are kept current on every write, so this is only
+     * needed to repair them.
+     */
+    public CompletableFuture<Void> rebuildRollups(OnCompleteListener listener) {
+        return scheduler.write(new DataScheduler.Write<Void>() {
+            @Override
+            protected Void apply() {
+                rollupDao.deleteAll();
+                rollupDao.insertFromTransactions();
+                CategorySketches.rebuildAll(db.getOpenHelper().getWritableDatabase());
+                return null;
+            }
+        }).whenComplete((result, error) -> {
+            if (listener != null) {
+                listener.onComplete(error == null, 0);
+            }
+        });
+    }
+
+    /**
+     * Spread of expense amounts per category over a range of months, merged from the
+     * monthly sketches, so the cost does not grow with the number of transactions.
+     * @param fromYearMonth First month, yyyyMM
+     * @param toYearMonth Last month, yyyyMM, inclusive
+     * @return Completes with one entry per category, most expenses first
+     */
+    public CompletableFuture<List<CategoryDistribution>> getCategoryDistributions(String userId, int fromYearMonth,
+                                                                                  int toYearMonth) {
+        return CompletableFuture.supplyAsync(() -> {
+            Map<String, QuantileSketch> byCategory = new HashMap<>();
+            for (CategorySketchEntity row : sketchDao.getForMonths(userId, fromYearMonth, toYearMonth)) {
+                String category = row.categoryId != 0 ? dictionary.categoryName(row.categoryId) : null;
+                QuantileSketch sketch = byCategory.get(category);
+                if (sketch == null) {
+                    byCategory.put(category, QuantileSketch.fromBytes(row.sketch));
+                } else {
+                    sketch.merge(QuantileSketch.fromBytes(row.sketch));
+                }
+            }
+            List<CategoryDistribution> distributions = new ArrayList<>(byCategory.size());
+            for (Map.Entry<String, QuantileSketch> entry : byCategory.entrySet()) {
+                distributions.add(new CategoryDistribution(entry.getKey(), entry.getValue()));
+            }
+            Collections.sort(distributions, (a, b) -> Long.compare(b.count(), a.count()));
+            return distributions;
+        }, scheduler.getReadExecutor());
+    }
+
+    /**
+     * Fold newly inserted expenses into their monthly sketches, loading and saving
+     * each sketch once. Runs inside the write transaction.
+     */
+    private void addToSketches(List<TransactionEntity> inserted) {
+        Map<String, CategorySketchEntity> rows = new HashMap<>();
+        Map<String, QuantileSketch> sketches = new HashMap<>();
+        for (TransactionEntity entity : inserted) {
+            if (entity.typeCode != TransactionEntity.TYPE_EXPENSE) continue;
+            CategorySketchEntity row = sketchKey(entity);
+            String key = row.userId + ":" + row.yearMonth + ":" + row.categoryId;
+            QuantileSketch sketch = sketches.get(key);
+            if (sketch == null) {
+                CategorySketchEntity stored = sketchDao.get(row.userId, row.yearMonth, row.categoryId);
+                sketch = stored != null ? QuantileSketch.fromBytes(stored.sketch) : new QuantileSketch();
+                rows.put(key, row);
+                sketches.put(key, sketch);
+            }
+            sketch.update(entity.amountMinor);
+        }
+        for (Map.Entry<String, CategorySketchEntity> entry : rows.entrySet()) {
+            QuantileSketch sketch = sketches.get(entry.getKey());
+            CategorySketchEntity row = entry.getValue();
+            row.count = sketch.count();
+            row.sketch = sketch.toBytes();
+            sketchDao.upsert(row);
+        }
+    }
+
+    /**
+     * Recompute the sketch a transaction belongs to from the rows left in it. A sketch
+     * cannot forget a value, so updates and deletes pay one index range read of that
+     * category's expenses for the month.
+     */
+    private void rebuildSketch(TransactionEntity entity) {
+        if (entity.typeCode != TransactionEntity.TYPE_EXPENSE) return;
+        CategorySketchEntity row = sketchKey(entity);
+        DateBuckets buckets = DateBuckets.current();
+        int year = entity.yearMonth / 100;
+        int month = entity.yearMonth % 100 - 1;
+        long fromMillis = buckets.monthStart(year, month) - ZONE_MARGIN_MS;
+        long toMillis = buckets.monthEnd(year, month) + ZONE_MARGIN_MS;
+        QuantileSketch sketch = new QuantileSketch();
+        for (long amount : sketchDao.getExpenseAmounts(entity.userId, entity.yearMonth, entity.categoryId,
+                fromMillis, toMillis)) {
+            sketch.update(amount);
+        }
+        if (sketch.isEmpty()) {
+            sketchDao.delete(row.userId, row.yearMonth, row.categoryId);
+        } else {
+            row.count = sketch.count();
+            row.sketch = sketch.toBytes();
+            sketchDao.upsert(row);
+        }
+    }
+
+    private static boolean sameSketch(TransactionEntity a, TransactionEntity b) {
+        return Objects.equals(a.userId, b.userId) && a.yearMonth == b.yearMonth
+                && Objects.equals(a.categoryId, b.categoryId);
+    }
+
+    /**
+     * The sketch row a transaction belongs to, keys only
+     */
+    private static CategorySketchEntity sketchKey(TransactionEntity entity) {
+        CategorySketchEntity row = new CategorySketchEntity();
+        row.userId = entity.userId != null ? entity.userId : "";
+        row.yearMonth = entity.yearMonth;
+        row.categoryId = entity.categoryId != null ? entity.categoryId : 0;
+        return row;
+    }
+
+    /**
+     * Every transaction of the user, archived ones included, newest first. Used for exports.
+     */
+    public CompletableFuture<List<TransactionEntity>> fetchAllTransactions(String userId) {
+        return CompletableFuture.supplyAsync(() -> {
             List<TransactionEntity> transactions = transactionDao.getAllByUserSync(userId);
+            List<? extends TransactionEntity> archived = archiveDao.getAllByUserSync(userId);
+            if (!archived.isEmpty()) {
+                transactions.addAll(archived);
+                Collections.sort(transactions, (a, b) -> Long.compare(b.dateTimestamp, a.dateTimestamp));
+            }
+            dictionary.hydrateAll(transactions);
+            return transactions;
+        }, scheduler.getReadExecutor());
+    }
+
+    /**
+     * Listener form of fetchAllTransactions; the listener runs on a reader thread
+     */
+    public void getAllTransactionsSync(String userId, OnTransactionsFetchedListener listener) {
+        fetchAllTransactions(userId).thenAccept(transactions -> {
             if (listener != null) {
                 listener.onTransactionsFetched(transactions);
             }
@@ -102,11 +639,19 @@ public class TransactionRepository {
         void onComplete(boolean success, int count);
     }
 
+    public interface OnBulkInsertListener {
+        void onProgress(int inserted, int total);
+        void onComplete(boolean success, List<Long> ids, int skipped);
+    }
+
     public interface OnTransactionsFetchedListener {
         void onTransactionsFetched(List<TransactionEntity> transactions);
     }
 
     public interface OnTransactionChangeListener {
-        void onTransactionChanged();
+        /**
+         * Called after a write has committed, on the thread that made it
+         */
+        void onTransactionChanged(TransactionChange change);
     }
 }
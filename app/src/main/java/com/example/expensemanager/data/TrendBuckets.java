@@ -0,0 +1,228 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.TrendSeries.Resolution;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateKeys;
+
+/**
+ * Daily, weekly and monthly totals per type, kept for all rows, per category and per
+ * wallet, over a fixed span of days. A transaction touches nine buckets in O(1); a
+ * series is read straight from the buckets at the asked resolution, so zooming out
+ * costs less rather than more.
+ * <p>
+ * Days are epoch days (see DateKeys.epochDay) and weeks start on Monday. As with
+ * DayRangeTotals, add() reports a day outside the span so the owner can build a wider
+ * one. Not thread-safe.
+ */
+final class TrendBuckets {
+
+    private final int firstDay;
+    private final int days;
+    private final int firstWeek;
+    private final int weeks;
+    private final int firstMonth;  // year * 12 + month - 1
+    private final int months;
+    private final Buckets[] total = new Buckets[2];
+    private final Buckets[][] byCategory = {new Buckets[0], new Buckets[0]};  // [type][category], allocated on first use
+    private final Buckets[][] byWallet = {new Buckets[0], new Buckets[0]};
+
+    /**
+     * @param firstDay Epoch day of the first day in the span
+     * @param days Length of the span
+     */
+    TrendBuckets(int firstDay, int days) {
+        this.firstDay = firstDay;
+        this.days = days;
+        this.firstWeek = weekOf(firstDay);
+        this.weeks = weekOf(firstDay + days - 1) - firstWeek + 1;
+        this.firstMonth = monthOf(firstDay);
+        this.months = monthOf(firstDay + days - 1) - firstMonth + 1;
+        total[0] = new Buckets();
+        total[1] = new Buckets();
+    }
+
+    /**
+     * Buckets for every row in columns, over the same span DayRangeTotals.build picks
+     * @param epochDays Epoch day of each row, parallel to the columns
+     * @param today Epoch day of today; the span always reaches it
+     */
+    static TrendBuckets build(Columns columns, int[] epochDays, int today) {
+        int min = today;
+        int max = today;
+        for (int i = 0; i < columns.size; i++) {
+            min = Math.min(min, epochDays[i]);
+            max = Math.max(max, epochDays[i]);
+        }
+        TrendBuckets trends = new TrendBuckets(min - DayRangeTotals.HEADROOM_DAYS,
+                max - min + 2 * DayRangeTotals.HEADROOM_DAYS + 1);
+        for (int i = 0; i < columns.size; i++) {
+            trends.add(epochDays[i], columns.typeAt(i), columns.categoryAt(i), columns.walletAt(i),
+                    columns.amountAt(i));
+        }
+        return trends;
+    }
+
+    /**
+     * Add amount (negative to take away) to a day
+     * @param categoryId Category id or Columns.NONE
+     * @param walletId Wallet id or Columns.NONE
+     * @return False if the day is outside the span; nothing is changed
+     */
+    boolean add(int epochDay, int typeCode, int categoryId, int walletId, long amount) {
+        long offset = (long) epochDay - firstDay;
+        if (offset < 0 || offset >= days) return false;
+        int day = (int) offset;
+        int week = weekOf(epochDay) - firstWeek;
+        int month = monthOf(epochDay) - firstMonth;
+        int type = typeIndex(typeCode);
+        total[type].add(day, week, month, amount);
+        byCategory[type] = slot(byCategory[type], categoryId);
+        byCategory[type][categoryId].add(day, week, month, amount);
+        byWallet[type] = slot(byWallet[type], walletId);
+        byWallet[type][walletId].add(day, week, month, amount);
+        return true;
+    }
+
+    /**
+     * Income and expense per bucket from one day to another, both inclusive. Filter by
+     * category or by wallet, not both.
+     * @param categoryId Category id, Columns.NONE or Columns.ANY
+     * @param walletId Wallet id, Columns.NONE or Columns.ANY
+     */
+    TrendSeries series(Resolution resolution, int categoryId, int walletId, int fromEpochDay, int toEpochDay) {
+        if (categoryId != Columns.ANY && walletId != Columns.ANY) {
+            throw new IllegalArgumentException("Filter by category or by wallet, not both");
+        }
+        Buckets expense = find(TransactionEntity.TYPE_EXPENSE, categoryId, walletId);
+        Buckets income = find(TransactionEntity.TYPE_INCOME, categoryId, walletId);
+
+        int first;
+        int last;
+        switch (resolution) {
+            case WEEK:
+                first = weekOf(fromEpochDay);
+                last = weekOf(toEpochDay);
+                break;
+            case MONTH:
+                first = monthOf(fromEpochDay);
+                last = monthOf(toEpochDay);
+                break;
+            default:
+                first = fromEpochDay;
+                last = toEpochDay;
+                break;
+        }
+        int size = Math.max(last - first + 1, 0);
+        int[] startDayKeys = new int[size];
+        long[] expenseTotals = new long[size];
+        long[] incomeTotals = new long[size];
+        for (int i = 0; i < size; i++) {
+            int bucket = first + i;
+            int start = bucketStart(resolution, bucket);
+            int end = bucketStart(resolution, bucket + 1) - 1;
+            startDayKeys[i] = DateKeys.fromEpochDay(start);
+            if (start >= fromEpochDay && end <= toEpochDay) {
+                expenseTotals[i] = whole(expense, resolution, bucket);
+                incomeTotals[i] = whole(income, resolution, bucket);
+            } else {
+                // An edge bucket sticking out of the window; add up its days inside
+                int from = Math.max(start, fromEpochDay);
+                int to = Math.min(end, toEpochDay);
+                expenseTotals[i] = days(expense, from, to);
+                incomeTotals[i] = days(income, from, to);
+            }
+        }
+        return new TrendSeries(resolution, startDayKeys, expenseTotals, incomeTotals);
+    }
+
+    private Buckets find(int typeCode, int categoryId, int walletId) {
+        int type = typeIndex(typeCode);
+        if (categoryId != Columns.ANY) {
+            return categoryId >= 0 && categoryId < byCategory[type].length ? byCategory[type][categoryId] : null;
+        }
+        if (walletId != Columns.ANY) {
+            return walletId >= 0 && walletId < byWallet[type].length ? byWallet[type][walletId] : null;
+        }
+        return total[type];
+    }
+
+    private long whole(Buckets buckets, Resolution resolution, int bucket) {
+        if (buckets == null) return 0;
+        switch (resolution) {
+            case WEEK:
+                int week = bucket - firstWeek;
+                return week >= 0 && week < weeks ? buckets.perWeek[week] : 0;
+            case MONTH:
+                int month = bucket - firstMonth;
+                return month >= 0 && month < months ? buckets.perMonth[month] : 0;
+            default:
+                return days(buckets, bucket, bucket);
+        }
+    }
+
+    private long days(Buckets buckets, int fromEpochDay, int toEpochDay) {
+        if (buckets == null) return 0;
+        long sum = 0;
+        int from = (int) Math.max((long) fromEpochDay - firstDay, 0);
+        int to = (int) Math.min((long) toEpochDay - firstDay, days - 1);
+        for (int day = from; day <= to; day++) {
+            sum += buckets.perDay[day];
+        }
+        return sum;
+    }
+
+    private Buckets[] slot(Buckets[] slots, int id) {
+        if (id >= slots.length) {
+            Buckets[] grown = new Buckets[Math.max(id + 1, slots.length * 2)];
+            System.arraycopy(slots, 0, grown, 0, slots.length);
+            slots = grown;
+        }
+        if (slots[id] == null) {
+            slots[id] = new Buckets();
+        }
+        return slots;
+    }
+
+    private static int typeIndex(int typeCode) {
+        return typeCode == TransactionEntity.TYPE_INCOME ? 1 : 0;
+    }
+
+    /**
+     * Weeks counted from the one starting Monday 1969-12-29; epoch day 0 was a Thursday
+     */
+    static int weekOf(int epochDay) {
+        return Math.floorDiv(epochDay + 3, 7);
+    }
+
+    static int monthOf(int epochDay) {
+        int dayKey = DateKeys.fromEpochDay(epochDay);
+        return dayKey / 10000 * 12 + dayKey / 100 % 100 - 1;
+    }
+
+    /**
+     * Epoch day a bucket starts on; bucket is an epoch day, weekOf() or monthOf() value
+     */
+    private static int bucketStart(Resolution resolution, int bucket) {
+        switch (resolution) {
+            case WEEK:
+                return bucket * 7 - 3;
+            case MONTH:
+                return DateKeys.epochDay(bucket / 12 * 10000 + (bucket % 12 + 1) * 100 + 1);
+            default:
+                return bucket;
+        }
+    }
+
+    private final class Buckets {
+        final long[] perDay = new long[days];
+        final long[] perWeek = new long[weeks];
+        final long[] perMonth = new long[months];
+
+        void add(int day, int week, int month, long amount) {
+            perDay[day] += amount;
+            perWeek[week] += amount;
+            perMonth[month] += amount;
+        }
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.expensemanager.data;
+
+/**
+ * Income and expense per day, week or month over a window, ready to plot. Buckets are
+ * consecutive, empty ones included; amounts are paisa.
+ */
+public final class TrendSeries {
+
+    public enum Resolution {
+        DAY,
+        WEEK,   // Monday to Sunday
+        MONTH
+    }
+
+    public final Resolution resolution;
+    private final int[] startDayKeys;
+    private final long[] expense;
+    private final long[] income;
+
+    TrendSeries(Resolution resolution, int[] startDayKeys, long[] expense, long[] income) {
+        this.resolution = resolution;
+        this.startDayKeys = startDayKeys;
+        this.expense = expense;
+        this.income = income;
+    }
+
+    public int size() {
+        return startDayKeys.length;
+    }
+
+    /**
+     * First day of the bucket, e.g. 20241014 for the week of 14 October. The first and
+     * last buckets may start or end outside the window; only days inside it are counted.
+     */
+    public int startDayKey(int index) {
+        return startDayKeys[index];
+    }
+
+    public long expenseAt(int index) {
+        return expense[index];
+    }
+
+    public long incomeAt(int index) {
+        return income[index];
+    }
+}
@@ -2,17 +2,44 @@ package com.example.expensemanager.data.local;
 
 import android.content.Context;
 
+import androidx.annotation.NonNull;
 import androidx.room.Database;
 import androidx.room.Room;
 import androidx.room.RoomDatabase;
+import androidx.sqlite.db.SupportSQLiteDatabase;
 
-@Database(entities = {TransactionEntity.class}, version = 2, exportSchema = false)
+@Database(entities = {TransactionEntity.class, MonthlyRollupEntity.class, CategoryEntity.class, WalletEntity.class,
+        TransactionFtsEntity.class, TransactionArchiveEntity.class, CategorySketchEntity.class,
+        TransactionArchiveFtsEntity.class}, version = 11, exportSchema = false)
 public abstract class AppDatabase extends RoomDatabase {
 
     private static volatile AppDatabase INSTANCE;
 
+    /**
+     * Installs the triggers Room does not generate whenever the schema is created from scratch
+     */
+    public static final Callback CREATE_TRIGGERS = new Callback() {
+        @Override
+        public void onCreate(@NonNull SupportSQLiteDatabase db) {
+            DatabaseTriggers.createRollupTriggers(db);
+        }
+
+        @Override
+        public void onDestructiveMigration(@NonNull SupportSQLiteDatabase db) {
+            DatabaseTriggers.createRollupTriggers(db);
+        }
+    };
+
     public abstract TransactionDao transactionDao();
 
+    public abstract RollupDao rollupDao();
+
+    public abstract DictionaryDao dictionaryDao();
+
+    public abstract ArchiveDao archiveDao();
+
+    public abstract SketchDao sketchDao();
+
     public static AppDatabase getInstance(Context context) {
         if (INSTANCE == null) {
             synchronized (AppDatabase.class) {
@@ -21,7 +48,10 @@ public abstract class AppDatabase extends RoomDatabase {
                             context.getApplicationContext(),
                             AppDatabase.class,
                             "expense_manager.db"
-                    ).fallbackToDestructiveMigration()
+                    ).addMigrations(Migrations.ALL)
+                     // No migration path was ever written for the v1 schema
+                     .fallbackToDestructiveMigrationFrom(1)
+                     .addCallback(CREATE_TRIGGERS)
                      .build();
                 }
             }
@@ -29,4 +59,3 @@ public abstract class AppDatabase extends RoomDatabase {
         return INSTANCE;
     }
 }
-
@@ -0,0 +1,147 @@
+package com.example.expensemanager.data.local;
+
+import android.database.Cursor;
+
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+import static com.example.expensemanager.data.local.TransactionDao.ROW_JOINS;
+import static com.example.expensemanager.data.local.TransactionDao.ROW_SELECT;
+
+/**
+ * Moves rows between transactions and transactions_archive, and reads the archive
+ * for the screens that reach into old history. Ids are never reused (transactions
+ * is AUTOINCREMENT), so a row keeps its id in either table.
+ */
+@Dao
+public interface ArchiveDao {
+
+    String COLUMNS = "id, userId, amountMinor, typeCode, categoryId, walletId, dateTimestamp, note,"
+            + " yearMonth, dayKey, contentHash";
+
+    // Moves: copy first, then delete, inside one transaction. The rollup triggers on
+    // both tables cancel out, and copying first keeps the rollup rows alive throughout.
+
+    @Query("INSERT INTO transactions_archive (" + COLUMNS + ") SELECT " + COLUMNS + " FROM transactions"
+            + " WHERE userId = :userId AND dateTimestamp < :cutoffMillis")
+    void copyOlderThan(String userId, long cutoffMillis);
+
+    @Query("DELETE FROM transactions WHERE userId = :userId AND dateTimestamp < :cutoffMillis")
+    int deleteHotOlderThan(String userId, long cutoffMillis);
+
+    @Query("INSERT INTO transactions (" + COLUMNS + ") SELECT " + COLUMNS + " FROM transactions_archive"
+            + " WHERE id = :id")
+    void copyToHot(long id);
+
+    @Query("DELETE FROM transactions_archive WHERE id = :id")
+    int deleteById(long id);
+
+    @Query("SELECT * FROM transactions_archive WHERE id = :id LIMIT 1")
+    TransactionArchiveEntity getById(long id);
+
+    /**
+     * Archived rows for the user are all older than this: one past the newest archived
+     * timestamp, or null when the archive holds nothing for them
+     */
+    @Query("SELECT MAX(dateTimestamp) + 1 FROM transactions_archive WHERE userId = :userId")
+    Long getArchivedBefore(String userId);
+
+    @Query("SELECT * FROM transactions_archive WHERE userId = :userId ORDER BY dateTimestamp DESC")
+    List<TransactionArchiveEntity> getAllByUserSync(String userId);
+
+    @Query("SELECT COUNT(*) FROM transactions_archive WHERE userId = :userId AND contentHash = :contentHash")
+    int countByContentHash(String userId, long contentHash);
+
+    String LEDGER_COLUMNS = "id, dateTimestamp, amountMinor, typeCode, categoryId, walletId";
+
+    /**
+     * The numeric columns of every transaction of the user, hot and archived, oldest
+     * first. Returned as a cursor so TransactionColumnStore can fill its arrays without
+     * an object per row; the caller closes it.
+     */
+    @Query("SELECT " + LEDGER_COLUMNS + " FROM transactions WHERE userId = :userId"
+            + " UNION ALL SELECT " + LEDGER_COLUMNS + " FROM transactions_archive WHERE userId = :userId"
+            + " ORDER BY dateTimestamp, id")
+    Cursor getLedgerColumns(String userId);
+
+    // Pages across both tables, for when the list scrolls past the archive cutoff.
+    // Each side seeks on its own index and contributes at most :limit rows.
+
+    String PAGE_COLUMNS = "id, amountMinor, typeCode, categoryId, walletId, note, dateTimestamp, dayKey";
+    String PAGE_WHERE = " WHERE userId = :userId"
+            + " AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis"
+            + " AND dateTimestamp <= :beforeTimestamp"
+            + " AND (dateTimestamp < :beforeTimestamp OR id < :beforeId)";
+    String PAGE_WHERE_CATEGORY = PAGE_WHERE + " AND categoryId = :categoryId";
+    String PAGE_ORDER = " ORDER BY dateTimestamp DESC, id DESC LIMIT :limit";
+
+    /**
+     * Same contract as TransactionDao.getPageBefore, over transactions and
+     * transactions_archive together
+     */
+    @Query(ROW_SELECT + "("
+            + "SELECT * FROM (SELECT " + PAGE_COLUMNS + " FROM transactions" + PAGE_WHERE + PAGE_ORDER + ")"
+            + " UNION ALL"
+            + " SELECT * FROM (SELECT " + PAGE_COLUMNS + " FROM transactions_archive" + PAGE_WHERE + PAGE_ORDER + ")"
+            + PAGE_ORDER + ") t" + ROW_JOINS
+            + " ORDER BY t.dateTimestamp DESC, t.id DESC")
+    List<TransactionRow> getPageBefore(String userId, long startMillis, long endMillis,
+                                       long beforeTimestamp, long beforeId, int limit);
+
+    @Query(ROW_SELECT + "("
+            + "SELECT * FROM (SELECT " + PAGE_COLUMNS + " FROM transactions" + PAGE_WHERE_CATEGORY + PAGE_ORDER + ")"
+            + " UNION ALL"
+            + " SELECT * FROM (SELECT " + PAGE_COLUMNS + " FROM transactions_archive" + PAGE_WHERE_CATEGORY
+            + PAGE_ORDER + ")"
+            + PAGE_ORDER + ") t" + ROW_JOINS
+            + " ORDER BY t.dateTimestamp DESC, t.id DESC")
+    List<TransactionRow> getPageBeforeInCategory(String userId, int categoryId, long startMillis, long endMillis,
+                                                 long beforeTimestamp, long beforeId, int limit);
+
+    // Full-text search across both tables, for ranges that reach below the archive
+    // cutoff. Each side matches on its own index and contributes at most :limit rows,
+    // ranked as TransactionDao.SEARCH_ORDER ranks them.
+
+    String SEARCH_COLUMNS = "t.id, t.amountMinor, t.typeCode, t.categoryId, t.walletId, t.note,"
+            + " t.dateTimestamp, t.dayKey";
+    String HOT_MATCHES = "(length(offsets(transactions_fts))"
+            + " - length(replace(offsets(transactions_fts), ' ', '')) + 1) / 4 AS matches";
+    String ARCHIVE_MATCHES = "(length(offsets(transactions_archive_fts))"
+            + " - length(replace(offsets(transactions_archive_fts), ' ', '')) + 1) / 4 AS matches";
+    String HOT_SEARCH_FROM = " FROM transactions_fts JOIN transactions t ON t.id = transactions_fts.docid"
+            + " WHERE transactions_fts MATCH :match";
+    String ARCHIVE_SEARCH_FROM = " FROM transactions_archive_fts"
+            + " JOIN transactions_archive t ON t.id = transactions_archive_fts.docid"
+            + " WHERE transactions_archive_fts MATCH :match";
+    String SEARCH_WHERE = " AND t.userId = :userId"
+            + " AND t.dateTimestamp >= :startMillis AND t.dateTimestamp < :endMillis";
+    String SEARCH_WHERE_CATEGORY = SEARCH_WHERE + " AND t.categoryId = :categoryId";
+    String SEARCH_ORDER = " ORDER BY matches DESC, dateTimestamp DESC, id DESC LIMIT :limit";
+
+    /**
+     * Same contract as TransactionDao.search, over transactions and
+     * transactions_archive together
+     */
+    @Query(ROW_SELECT + "("
+            + "SELECT * FROM (SELECT " + SEARCH_COLUMNS + ", " + HOT_MATCHES + HOT_SEARCH_FROM + SEARCH_WHERE
+            + SEARCH_ORDER + ")"
+            + " UNION ALL"
+            + " SELECT * FROM (SELECT " + SEARCH_COLUMNS + ", " + ARCHIVE_MATCHES + ARCHIVE_SEARCH_FROM
+            + SEARCH_WHERE + SEARCH_ORDER + ")"
+            + ") t" + ROW_JOINS
+            + " ORDER BY t.matches DESC, t.dateTimestamp DESC, t.id DESC LIMIT :limit")
+    List<TransactionRow> search(String userId, String match, long startMillis, long endMillis, int limit);
+
+    @Query(ROW_SELECT + "("
+            + "SELECT * FROM (SELECT " + SEARCH_COLUMNS + ", " + HOT_MATCHES + HOT_SEARCH_FROM
+            + SEARCH_WHERE_CATEGORY + SEARCH_ORDER + ")"
+            + " UNION ALL"
+            + " SELECT * FROM (SELECT " + SEARCH_COLUMNS + ", " + ARCHIVE_MATCHES + ARCHIVE_SEARCH_FROM
+            + SEARCH_WHERE_CATEGORY + SEARCH_ORDER + ")"
+            + ") t" + ROW_JOINS
+            + " ORDER BY t.matches DESC, t.dateTimestamp DESC, t.id DESC LIMIT :limit")
+    List<TransactionRow> searchInCategory(String userId, String match, int categoryId,
+                                          long startMillis, long endMillis, int limit);
+}
@@ -0,0 +1,20 @@
+package com.example.expensemanager.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Lookup table for category names; transactions store the id
+ */
+@Entity(tableName = "categories",
+        indices = {@Index(value = {"name"}, unique = true)})
+public class CategoryEntity {
+
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    @NonNull
+    public String name = "";
+}
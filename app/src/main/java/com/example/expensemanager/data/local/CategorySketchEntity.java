@@ -0,0 +1,23 @@
+package com.example.expensemanager.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * A QuantileSketch of expense amounts per user, month and category, kept next to
+ * monthly_rollup. Sketches merge, so any range of months is answered from one row
+ * per month and category. Written by the repository inside each write transaction;
+ * CategorySketches rebuilds the whole table.
+ */
+@Entity(tableName = "category_sketches",
+        primaryKeys = {"userId", "yearMonth", "categoryId"})
+public class CategorySketchEntity {
+
+    @NonNull
+    public String userId = "";
+    public int yearMonth;     // yyyyMM, same key as TransactionEntity.yearMonth
+    public int categoryId;    // 0 when the transaction has no category
+    public long count;
+    @NonNull
+    public byte[] sketch = new byte[0];  // QuantileSketch.toBytes()
+}
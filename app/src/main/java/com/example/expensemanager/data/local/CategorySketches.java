@@ -0,0 +1,64 @@
+package com.example.expensemanager.data.local;
+
+import android.database.Cursor;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+/**
+ * Rebuilds category_sketches from the raw rows in transactions and
+ * transactions_archive: one pass over the expenses in key order, so only one
+ * sketch is in memory at a time. Used by the v10 migration and to repair the
+ * table; run it inside a transaction.
+ */
+public final class CategorySketches {
+
+    private CategorySketches() {
+    }
+
+    public static void rebuildAll(SupportSQLiteDatabase db) {
+        db.execSQL("DELETE FROM `category_sketches`");
+        SupportSQLiteStatement insert = db.compileStatement("INSERT INTO `category_sketches` "
+                + "(`userId`, `yearMonth`, `categoryId`, `count`, `sketch`) VALUES (?, ?, ?, ?, ?)");
+        String expenses = " WHERE `typeCode` = " + TransactionEntity.TYPE_EXPENSE;
+        String columns = "SELECT IFNULL(`userId`, '') AS u, `yearMonth` AS m, IFNULL(`categoryId`, 0) AS c, "
+                + "`id`, `amountMinor` FROM ";
+        try (Cursor cursor = db.query(columns + "`transactions`" + expenses
+                + " UNION ALL " + columns + "`transactions_archive`" + expenses
+                + " ORDER BY u, m, c, `id`")) {
+            String userId = null;
+            int yearMonth = 0;
+            int categoryId = 0;
+            QuantileSketch sketch = null;
+            while (cursor.moveToNext()) {
+                String rowUserId = cursor.getString(0);
+                int rowYearMonth = cursor.getInt(1);
+                int rowCategoryId = cursor.getInt(2);
+                if (sketch == null || !rowUserId.equals(userId) || rowYearMonth != yearMonth
+                        || rowCategoryId != categoryId) {
+                    if (sketch != null) {
+                        write(insert, userId, yearMonth, categoryId, sketch);
+                    }
+                    userId = rowUserId;
+                    yearMonth = rowYearMonth;
+                    categoryId = rowCategoryId;
+                    sketch = new QuantileSketch();
+                }
+                sketch.update(cursor.getLong(4));
+            }
+            if (sketch != null) {
+                write(insert, userId, yearMonth, categoryId, sketch);
+            }
+        }
+    }
+
+    private static void write(SupportSQLiteStatement insert, String userId, int yearMonth, int categoryId,
+                              QuantileSketch sketch) {
+        insert.bindString(1, userId);
+        insert.bindLong(2, yearMonth);
+        insert.bindLong(3, categoryId);
+        insert.bindLong(4, sketch.count());
+        insert.bindBlob(5, sketch.toBytes());
+        insert.executeInsert();
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.expensemanager.data.local;
+
+/**
+ * Aggregate projection: sum and row count for one category
+ */
+public class CategoryTotal {
+    public String category;   // null categories are reported as "Others"
+    public long total;        // paisa
+    public int count;
+}
@@ -0,0 +1,54 @@
+package com.example.expensemanager.data.local;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Stable 64-bit fingerprint of what a transaction says, used to recognise rows that
+ * were already imported. The id and userId are left out on purpose: imports reset the
+ * id and reassign the user, and the unique index is (userId, contentHash) anyway.
+ */
+public final class ContentHash {
+
+    private ContentHash() {
+    }
+
+    public static long of(TransactionEntity entity) {
+        // Amounts are compared in minor units so 12.3 and 12.30000001 hash the same
+        String canonical = nullToEmpty(entity.type)
+                + '\u0000' + nullToEmpty(entity.category)
+                + '\u0000' + nullToEmpty(entity.wallet)
+                + '\u0000' + entity.amountMinor
+                + '\u0000' + entity.dateTimestamp
+                + '\u0000' + nullToEmpty(entity.note);
+        return digest(canonical);
+    }
+
+    /**
+     * Derive a distinct hash for a row whose content collides with another one,
+     * e.g. duplicates created by re-imports before this column existed
+     */
+    public static long salted(long hash, long id) {
+        return digest(hash + "#" + id);
+    }
+
+    private static long digest(String value) {
+        try {
+            byte[] bytes = MessageDigest.getInstance("SHA-256")
+                    .digest(value.getBytes(StandardCharsets.UTF_8));
+            long hash = 0;
+            for (int i = 0; i < 8; i++) {
+                hash = (hash << 8) | (bytes[i] & 0xFF);
+            }
+            return hash;
+        } catch (NoSuchAlgorithmException e) {
+            // Every Android runtime ships SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String nullToEmpty(String value) {
+        return value != null ? value : "";
+    }
+}
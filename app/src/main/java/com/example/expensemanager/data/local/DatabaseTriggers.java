@@ -0,0 +1,145 @@
+package com.example.expensemanager.data.local;
+
+import androidx.sqlite.db.SupportSQLiteDatabase;
+
+/**
+ * Triggers Room does not know about. Created for fresh installs from the
+ * AppDatabase callback, and by the migrations that introduce or reshape them.
+ */
+public final class DatabaseTriggers {
+
+    private DatabaseTriggers() {
+    }
+
+    // Current monthly_rollup key. "{row}" stands for NEW or OLD.
+    private static final String[] ROLLUP_KEY_COLUMNS = {
+            "userId", "yearMonth", "typeCode", "categoryId", "walletId"
+    };
+    private static final String[] ROLLUP_KEY_VALUES = {
+            "IFNULL({row}.`userId`, '')",
+            "{row}.`yearMonth`",
+            "{row}.`typeCode`",
+            "IFNULL({row}.`categoryId`, 0)",
+            "IFNULL({row}.`walletId`, 0)"
+    };
+    private static final String ROLLUP_AMOUNT = "{row}.`amountMinor`";
+    private static final String[] ROLLUP_WATCHED_COLUMNS = {
+            "userId", "amountMinor", "typeCode", "categoryId", "walletId", "yearMonth"
+    };
+
+    /**
+     * Create the monthly_rollup triggers on transactions and on transactions_archive,
+     * so the rollup always covers both tables
+     */
+    public static void createRollupTriggers(SupportSQLiteDatabase db) {
+        createRollupTriggers(db, ROLLUP_KEY_COLUMNS, ROLLUP_KEY_VALUES, ROLLUP_AMOUNT, ROLLUP_WATCHED_COLUMNS);
+        createArchiveRollupTriggers(db, ROLLUP_KEY_COLUMNS, ROLLUP_KEY_VALUES, ROLLUP_AMOUNT, ROLLUP_WATCHED_COLUMNS);
+    }
+
+    /**
+     * Create the three monthly_rollup triggers on transactions for a given key layout.
+     * Migrations pass the layout of their own schema version so they stay valid as
+     * this class evolves.
+     * @param keyColumns monthly_rollup key columns
+     * @param keyValues Expression for each key column in terms of "{row}"
+     * @param amount Expression added to `sum`, in terms of "{row}"
+     * @param watchedColumns transactions columns whose update moves a row between keys
+     */
+    static void createRollupTriggers(SupportSQLiteDatabase db, String[] keyColumns, String[] keyValues,
+                                     String amount, String[] watchedColumns) {
+        createRollupTriggers(db, "transactions", "rollup_", keyColumns, keyValues, amount, watchedColumns);
+    }
+
+    /**
+     * Same triggers on transactions_archive. Moving a row between the tables inserts
+     * on one side and deletes on the other, which leaves the rollup unchanged.
+     */
+    static void createArchiveRollupTriggers(SupportSQLiteDatabase db, String[] keyColumns, String[] keyValues,
+                                            String amount, String[] watchedColumns) {
+        createRollupTriggers(db, "transactions_archive", "archive_rollup_",
+                keyColumns, keyValues, amount, watchedColumns);
+    }
+
+    private static void createRollupTriggers(SupportSQLiteDatabase db, String table, String namePrefix,
+                                             String[] keyColumns, String[] keyValues,
+                                             String amount, String[] watchedColumns) {
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + namePrefix + "after_insert` AFTER INSERT ON `" + table + "` "
+                + "BEGIN " + addRow("NEW", keyColumns, keyValues, amount) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + namePrefix + "after_delete` AFTER DELETE ON `" + table + "` "
+                + "BEGIN " + removeRow("OLD", keyColumns, keyValues, amount) + "END");
+        db.execSQL("CREATE TRIGGER IF NOT EXISTS `" + namePrefix + "after_update` AFTER UPDATE OF "
+                + quoted(watchedColumns) + " ON `" + table + "` "
+                + "BEGIN " + removeRow("OLD", keyColumns, keyValues, amount)
+                + addRow("NEW", keyColumns, keyValues, amount) + "END");
+    }
+
+    public static void dropRollupTriggers(SupportSQLiteDatabase db) {
+        for (String prefix : new String[]{"rollup_", "archive_rollup_"}) {
+            db.execSQL("DROP TRIGGER IF EXISTS `" + prefix + "after_insert`");
+            db.execSQL("DROP TRIGGER IF EXISTS `" + prefix + "after_delete`");
+            db.execSQL("DROP TRIGGER IF EXISTS `" + prefix + "after_update`");
+        }
+    }
+
+    /**
+     * The content sync triggers Room generates for transactions_fts. Room installs
+     * them itself on fresh installs; migrations that add the index, or that rebuild
+     * the transactions table (which drops its triggers), must create them by hand.
+     */
+    public static void createSearchSyncTriggers(SupportSQLiteDatabase db) {
+        createSearchSyncTriggers(db, "transactions", "transactions_fts");
+    }
+
+    /**
+     * The same for transactions_archive_fts, for the migration that adds it
+     */
+    public static void createArchiveSearchSyncTriggers(SupportSQLiteDatabase db) {
+        createSearchSyncTriggers(db, "transactions_archive", "transactions_archive_fts");
+    }
+
+    private static void createSearchSyncTriggers(SupportSQLiteDatabase db, String table, String ftsTable) {
+        String prefix = "CREATE TRIGGER IF NOT EXISTS room_fts_content_sync_" + ftsTable + "_";
+        String remove = "BEGIN DELETE FROM `" + ftsTable + "` WHERE `docid`=OLD.`rowid`; END";
+        String add = "BEGIN INSERT INTO `" + ftsTable + "`(`docid`, `note`) VALUES (NEW.`rowid`, NEW.`note`); END";
+        db.execSQL(prefix + "BEFORE_UPDATE BEFORE UPDATE ON `" + table + "` " + remove);
+        db.execSQL(prefix + "BEFORE_DELETE BEFORE DELETE ON `" + table + "` " + remove);
+        db.execSQL(prefix + "AFTER_UPDATE AFTER UPDATE ON `" + table + "` " + add);
+        db.execSQL(prefix + "AFTER_INSERT AFTER INSERT ON `" + table + "` " + add);
+    }
+
+    private static String addRow(String row, String[] keyColumns, String[] keyValues, String amount) {
+        StringBuilder values = new StringBuilder();
+        for (String value : keyValues) {
+            values.append(value.replace("{row}", row)).append(", ");
+        }
+        return "INSERT OR IGNORE INTO `monthly_rollup` (" + quoted(keyColumns) + ", `sum`, `count`) "
+                + "VALUES (" + values + "0, 0); "
+                + "UPDATE `monthly_rollup` SET `sum` = `sum` + " + amount.replace("{row}", row)
+                + ", `count` = `count` + 1 WHERE " + keyMatch(row, keyColumns, keyValues) + "; ";
+    }
+
+    private static String removeRow(String row, String[] keyColumns, String[] keyValues, String amount) {
+        String match = keyMatch(row, keyColumns, keyValues);
+        return "UPDATE `monthly_rollup` SET `sum` = `sum` - " + amount.replace("{row}", row)
+                + ", `count` = `count` - 1 WHERE " + match + "; "
+                + "DELETE FROM `monthly_rollup` WHERE " + match + " AND `count` <= 0; ";
+    }
+
+    private static String keyMatch(String row, String[] keyColumns, String[] keyValues) {
+        StringBuilder match = new StringBuilder();
+        for (int i = 0; i < keyColumns.length; i++) {
+            if (i > 0) match.append(" AND ");
+            match.append('`').append(keyColumns[i]).append("` = ").append(keyValues[i].replace("{row}", row));
+        }
+        return match.toString();
+    }
+
+    private static String quoted(String[] columns) {
+        StringBuilder joined = new StringBuilder();
+        for (int i = 0; i < columns.length; i++) {
+            if (i > 0) joined.append(", ");
+            joined.append('`').append(columns[i]).append('`');
+        }
+        return joined.toString();
+    }
+}
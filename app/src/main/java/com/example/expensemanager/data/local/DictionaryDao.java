@@ -0,0 +1,30 @@
+package com.example.expensemanager.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface DictionaryDao {
+
+    @Query("SELECT * FROM categories")
+    List<CategoryEntity> getAllCategories();
+
+    @Query("SELECT * FROM wallets")
+    List<WalletEntity> getAllWallets();
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertCategory(CategoryEntity category);
+
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    long insertWallet(WalletEntity wallet);
+
+    @Query("SELECT id FROM categories WHERE name = :name")
+    Integer getCategoryId(String name);
+
+    @Query("SELECT id FROM wallets WHERE name = :name")
+    Integer getWalletId(String name);
+}
@@ -0,0 +1,339 @@
+package com.example.expensemanager.data.local;
+
+import android.database.Cursor;
+
+import androidx.annotation.NonNull;
+import androidx.room.migration.Migration;
+import androidx.sqlite.db.SupportSQLiteDatabase;
+import androidx.sqlite.db.SupportSQLiteStatement;
+
+import com.example.expensemanager.utils.DateBuckets;
+import com.example.expensemanager.utils.Money;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Schema migrations for AppDatabase. Each step must leave the schema exactly as Room
+ * generates it from the entities, so column defaults and index names are spelled out.
+ */
+public final class Migrations {
+
+    private Migrations() {
+    }
+
+    // monthly_rollup trigger layout from v7 on
+    private static final String[] V7_ROLLUP_KEY_COLUMNS = {
+            "userId", "yearMonth", "typeCode", "categoryId", "walletId"
+    };
+    private static final String[] V7_ROLLUP_KEY_VALUES = {
+            "IFNULL({row}.`userId`, '')", "{row}.`yearMonth`", "{row}.`typeCode`",
+            "IFNULL({row}.`categoryId`, 0)", "IFNULL({row}.`walletId`, 0)"
+    };
+    private static final String V7_ROLLUP_AMOUNT = "{row}.`amountMinor`";
+    private static final String[] V7_ROLLUP_WATCHED_COLUMNS = {
+            "userId", "amountMinor", "typeCode", "categoryId", "walletId", "yearMonth"
+    };
+
+    /**
+     * v3: calendar key columns and the (userId, dateTimestamp) index
+     */
+    public static final Migration MIGRATION_2_3 = new Migration(2, 3) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `transactions` ADD COLUMN `yearMonth` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("ALTER TABLE `transactions` ADD COLUMN `dayKey` INTEGER NOT NULL DEFAULT 0");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_dateTimestamp` "
+                    + "ON `transactions` (`userId`, `dateTimestamp`)");
+            backfillDateKeys(db);
+        }
+    };
+
+    /**
+     * v4: monthly_rollup table kept in step with transactions by triggers
+     */
+    public static final Migration MIGRATION_3_4 = new Migration(3, 4) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `monthly_rollup` ("
+                    + "`userId` TEXT NOT NULL, `yearMonth` INTEGER NOT NULL, `type` TEXT NOT NULL, "
+                    + "`category` TEXT NOT NULL, `wallet` TEXT NOT NULL, `sum` REAL NOT NULL, "
+                    + "`count` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`userId`, `yearMonth`, `type`, `category`, `wallet`))");
+            db.execSQL("INSERT INTO `monthly_rollup` "
+                    + "(`userId`, `yearMonth`, `type`, `category`, `wallet`, `sum`, `count`) "
+                    + "SELECT IFNULL(`userId`, ''), `yearMonth`, IFNULL(`type`, ''), "
+                    + "IFNULL(`category`, 'Others'), IFNULL(`wallet`, ''), SUM(`amount`), COUNT(*) "
+                    + "FROM `transactions` GROUP BY IFNULL(`userId`, ''), `yearMonth`, IFNULL(`type`, ''), "
+                    + "IFNULL(`category`, 'Others'), IFNULL(`wallet`, '')");
+            // v4 trigger layout, frozen here; DatabaseTriggers.createRollupTriggers(db) tracks the latest
+            DatabaseTriggers.createRollupTriggers(db,
+                    new String[]{"userId", "yearMonth", "type", "category", "wallet"},
+                    new String[]{"IFNULL({row}.`userId`, '')", "{row}.`yearMonth`", "IFNULL({row}.`type`, '')",
+                            "IFNULL({row}.`category`, 'Others')", "IFNULL({row}.`wallet`, '')"},
+                    "{row}.`amount`",
+                    new String[]{"userId", "amount", "type", "category", "wallet", "yearMonth"});
+        }
+    };
+
+    /**
+     * v5: content hash with a unique (userId, contentHash) index for import deduplication
+     */
+    public static final Migration MIGRATION_4_5 = new Migration(4, 5) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("ALTER TABLE `transactions` ADD COLUMN `contentHash` INTEGER NOT NULL DEFAULT 0");
+            backfillContentHashes(db);
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_transactions_userId_contentHash` "
+                    + "ON `transactions` (`userId`, `contentHash`)");
+        }
+    };
+
+    /**
+     * v6: category and wallet names move to lookup tables and type becomes an int code.
+     * SQLite cannot change column types in place, so transactions is rebuilt and
+     * monthly_rollup is recreated on the new keys.
+     */
+    public static final Migration MIGRATION_5_6 = new Migration(5, 6) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `categories` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_categories_name` ON `categories` (`name`)");
+            db.execSQL("CREATE TABLE IF NOT EXISTS `wallets` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `name` TEXT NOT NULL)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_wallets_name` ON `wallets` (`name`)");
+            db.execSQL("INSERT OR IGNORE INTO `categories` (`name`) SELECT DISTINCT `category` "
+                    + "FROM `transactions` WHERE `category` IS NOT NULL");
+            db.execSQL("INSERT OR IGNORE INTO `wallets` (`name`) SELECT DISTINCT `wallet` "
+                    + "FROM `transactions` WHERE `wallet` IS NOT NULL");
+
+            DatabaseTriggers.dropRollupTriggers(db);
+            db.execSQL("DROP TABLE IF EXISTS `monthly_rollup`");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `transactions_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `userId` TEXT, `amount` REAL NOT NULL, "
+                    + "`typeCode` INTEGER NOT NULL, `categoryId` INTEGER, `walletId` INTEGER, "
+                    + "`dateTimestamp` INTEGER NOT NULL, `note` TEXT, "
+                    + "`yearMonth` INTEGER NOT NULL DEFAULT 0, `dayKey` INTEGER NOT NULL DEFAULT 0, "
+                    + "`contentHash` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO `transactions_new` (`id`, `userId`, `amount`, `typeCode`, `categoryId`, "
+                    + "`walletId`, `dateTimestamp`, `note`, `yearMonth`, `dayKey`, `contentHash`) "
+                    + "SELECT t.`id`, t.`userId`, t.`amount`, "
+                    + "CASE WHEN t.`type` = 'income' THEN " + TransactionEntity.TYPE_INCOME
+                    + " ELSE " + TransactionEntity.TYPE_EXPENSE + " END, "
+                    + "c.`id`, w.`id`, t.`dateTimestamp`, t.`note`, t.`yearMonth`, t.`dayKey`, t.`contentHash` "
+                    + "FROM `transactions` t "
+                    + "LEFT JOIN `categories` c ON c.`name` = t.`category` "
+                    + "LEFT JOIN `wallets` w ON w.`name` = t.`wallet`");
+            db.execSQL("DROP TABLE `transactions`");
+            db.execSQL("ALTER TABLE `transactions_new` RENAME TO `transactions`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_dateTimestamp` "
+                    + "ON `transactions` (`userId`, `dateTimestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_categoryId_dateTimestamp` "
+                    + "ON `transactions` (`userId`, `categoryId`, `dateTimestamp`)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_transactions_userId_contentHash` "
+                    + "ON `transactions` (`userId`, `contentHash`)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `monthly_rollup` ("
+                    + "`userId` TEXT NOT NULL, `yearMonth` INTEGER NOT NULL, `typeCode` INTEGER NOT NULL, "
+                    + "`categoryId` INTEGER NOT NULL, `walletId` INTEGER NOT NULL, `sum` REAL NOT NULL, "
+                    + "`count` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`userId`, `yearMonth`, `typeCode`, `categoryId`, `walletId`))");
+            db.execSQL("INSERT INTO `monthly_rollup` "
+                    + "(`userId`, `yearMonth`, `typeCode`, `categoryId`, `walletId`, `sum`, `count`) "
+                    + "SELECT IFNULL(`userId`, ''), `yearMonth`, `typeCode`, IFNULL(`categoryId`, 0), "
+                    + "IFNULL(`walletId`, 0), SUM(`amount`), COUNT(*) FROM `transactions` "
+                    + "GROUP BY IFNULL(`userId`, ''), `yearMonth`, `typeCode`, IFNULL(`categoryId`, 0), "
+                    + "IFNULL(`walletId`, 0)");
+            // v6 trigger layout, frozen here
+            DatabaseTriggers.createRollupTriggers(db,
+                    new String[]{"userId", "yearMonth", "typeCode", "categoryId", "walletId"},
+                    new String[]{"IFNULL({row}.`userId`, '')", "{row}.`yearMonth`", "{row}.`typeCode`",
+                            "IFNULL({row}.`categoryId`, 0)", "IFNULL({row}.`walletId`, 0)"},
+                    "{row}.`amount`",
+                    new String[]{"userId", "amount", "typeCode", "categoryId", "walletId", "yearMonth"});
+        }
+    };
+
+    /**
+     * v7: amounts stored as integer paisa in amountMinor instead of REAL taka, so SUM()
+     * is exact. Both tables holding money are rebuilt; existing amounts are rounded
+     * to the nearest paisa.
+     */
+    public static final Migration MIGRATION_6_7 = new Migration(6, 7) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            DatabaseTriggers.dropRollupTriggers(db);
+            db.execSQL("DROP TABLE IF EXISTS `monthly_rollup`");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `transactions_new` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `userId` TEXT, "
+                    + "`amountMinor` INTEGER NOT NULL, `typeCode` INTEGER NOT NULL, "
+                    + "`categoryId` INTEGER, `walletId` INTEGER, `dateTimestamp` INTEGER NOT NULL, `note` TEXT, "
+                    + "`yearMonth` INTEGER NOT NULL DEFAULT 0, `dayKey` INTEGER NOT NULL DEFAULT 0, "
+                    + "`contentHash` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("INSERT INTO `transactions_new` (`id`, `userId`, `amountMinor`, `typeCode`, `categoryId`, "
+                    + "`walletId`, `dateTimestamp`, `note`, `yearMonth`, `dayKey`, `contentHash`) "
+                    + "SELECT `id`, `userId`, CAST(ROUND(`amount` * " + Money.MINOR_PER_MAJOR + ") AS INTEGER), "
+                    + "`typeCode`, `categoryId`, `walletId`, `dateTimestamp`, `note`, `yearMonth`, `dayKey`, "
+                    + "`contentHash` FROM `transactions`");
+            db.execSQL("DROP TABLE `transactions`");
+            db.execSQL("ALTER TABLE `transactions_new` RENAME TO `transactions`");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_dateTimestamp` "
+                    + "ON `transactions` (`userId`, `dateTimestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_userId_categoryId_dateTimestamp` "
+                    + "ON `transactions` (`userId`, `categoryId`, `dateTimestamp`)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_transactions_userId_contentHash` "
+                    + "ON `transactions` (`userId`, `contentHash`)");
+
+            db.execSQL("CREATE TABLE IF NOT EXISTS `monthly_rollup` ("
+                    + "`userId` TEXT NOT NULL, `yearMonth` INTEGER NOT NULL, `typeCode` INTEGER NOT NULL, "
+                    + "`categoryId` INTEGER NOT NULL, `walletId` INTEGER NOT NULL, `sum` INTEGER NOT NULL, "
+                    + "`count` INTEGER NOT NULL, "
+                    + "PRIMARY KEY(`userId`, `yearMonth`, `typeCode`, `categoryId`, `walletId`))");
+            db.execSQL("INSERT INTO `monthly_rollup` "
+                    + "(`userId`, `yearMonth`, `typeCode`, `categoryId`, `walletId`, `sum`, `count`) "
+                    + "SELECT IFNULL(`userId`, ''), `yearMonth`, `typeCode`, IFNULL(`categoryId`, 0), "
+                    + "IFNULL(`walletId`, 0), SUM(`amountMinor`), COUNT(*) FROM `transactions` "
+                    + "GROUP BY IFNULL(`userId`, ''), `yearMonth`, `typeCode`, IFNULL(`categoryId`, 0), "
+                    + "IFNULL(`walletId`, 0)");
+            // v7 trigger layout, frozen here
+            DatabaseTriggers.createRollupTriggers(db, V7_ROLLUP_KEY_COLUMNS, V7_ROLLUP_KEY_VALUES,
+                    V7_ROLLUP_AMOUNT, V7_ROLLUP_WATCHED_COLUMNS);
+        }
+    };
+
+    /**
+     * v8: transactions_fts, a full-text index over notes backed by the transactions table
+     */
+    public static final Migration MIGRATION_7_8 = new Migration(7, 8) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `transactions_fts` "
+                    + "USING FTS4(`note` TEXT, tokenize=unicode61, content=`transactions`)");
+            // Index the notes already in the content table
+            db.execSQL("INSERT INTO `transactions_fts`(`transactions_fts`) VALUES ('rebuild')");
+            DatabaseTriggers.createSearchSyncTriggers(db);
+        }
+    };
+
+    /**
+     * v9: transactions_archive, a copy of the transactions schema that old rows are
+     * moved into. It gets the same rollup triggers, so monthly_rollup keeps covering
+     * archived rows.
+     */
+    public static final Migration MIGRATION_8_9 = new Migration(8, 9) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `transactions_archive` ("
+                    + "`id` INTEGER PRIMARY KEY AUTOINCREMENT NOT NULL, `userId` TEXT, "
+                    + "`amountMinor` INTEGER NOT NULL, `typeCode` INTEGER NOT NULL, "
+                    + "`categoryId` INTEGER, `walletId` INTEGER, `dateTimestamp` INTEGER NOT NULL, `note` TEXT, "
+                    + "`yearMonth` INTEGER NOT NULL DEFAULT 0, `dayKey` INTEGER NOT NULL DEFAULT 0, "
+                    + "`contentHash` INTEGER NOT NULL DEFAULT 0)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_archive_userId_dateTimestamp` "
+                    + "ON `transactions_archive` (`userId`, `dateTimestamp`)");
+            db.execSQL("CREATE INDEX IF NOT EXISTS `index_transactions_archive_userId_categoryId_dateTimestamp` "
+                    + "ON `transactions_archive` (`userId`, `categoryId`, `dateTimestamp`)");
+            db.execSQL("CREATE UNIQUE INDEX IF NOT EXISTS `index_transactions_archive_userId_contentHash` "
+                    + "ON `transactions_archive` (`userId`, `contentHash`)");
+            // The rollup layout is unchanged since v7
+            DatabaseTriggers.createArchiveRollupTriggers(db, V7_ROLLUP_KEY_COLUMNS, V7_ROLLUP_KEY_VALUES,
+                    V7_ROLLUP_AMOUNT, V7_ROLLUP_WATCHED_COLUMNS);
+        }
+    };
+
+    /**
+     * v10: category_sketches, a quantile sketch of expense amounts per user, month
+     * and category, filled from both transaction tables
+     */
+    public static final Migration MIGRATION_9_10 = new Migration(9, 10) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE TABLE IF NOT EXISTS `category_sketches` ("
+                    + "`userId` TEXT NOT NULL, `yearMonth` INTEGER NOT NULL, `categoryId` INTEGER NOT NULL, "
+                    + "`count` INTEGER NOT NULL, `sketch` BLOB NOT NULL, "
+                    + "PRIMARY KEY(`userId`, `yearMonth`, `categoryId`))");
+            CategorySketches.rebuildAll(db);
+        }
+    };
+
+    /**
+     * v11: transactions_archive_fts, so notes stay searchable once their rows are archived
+     */
+    public static final Migration MIGRATION_10_11 = new Migration(10, 11) {
+        @Override
+        public void migrate(@NonNull SupportSQLiteDatabase db) {
+            db.execSQL("CREATE VIRTUAL TABLE IF NOT EXISTS `transactions_archive_fts` "
+                    + "USING FTS4(`note` TEXT, tokenize=unicode61, content=`transactions_archive`)");
+            // Index the notes already archived
+            db.execSQL("INSERT INTO `transactions_archive_fts`(`transactions_archive_fts`) VALUES ('rebuild')");
+            DatabaseTriggers.createArchiveSearchSyncTriggers(db);
+        }
+    };
+
+    public static final Migration[] ALL = {
+            MIGRATION_2_3,
+            MIGRATION_3_4,
+            MIGRATION_4_5,
+            MIGRATION_5_6,
+            MIGRATION_6_7,
+            MIGRATION_7_8,
+            MIGRATION_8_9,
+            MIGRATION_9_10,
+            MIGRATION_10_11
+    };
+
+    /**
+     * Hash existing rows. Duplicates left behind by earlier re-imports are kept, not
+     * deleted, but get a salted hash so the unique index can be built; the first copy
+     * keeps the plain hash so importing the same file again is still recognised.
+     */
+    private static void backfillContentHashes(SupportSQLiteDatabase db) {
+        SupportSQLiteStatement update = db.compileStatement(
+                "UPDATE `transactions` SET `contentHash` = ? WHERE `id` = ?");
+        Set<String> seen = new HashSet<>();
+        try (Cursor cursor = db.query("SELECT `id`, `userId`, `type`, `category`, `wallet`, `amount`, "
+                + "`dateTimestamp`, `note` FROM `transactions` ORDER BY `id`")) {
+            TransactionEntity row = new TransactionEntity();
+            while (cursor.moveToNext()) {
+                long id = cursor.getLong(0);
+                row.type = cursor.getString(2);
+                row.category = cursor.getString(3);
+                row.wallet = cursor.getString(4);
+                row.amountMinor = Money.toMinor(cursor.getDouble(5));
+                row.dateTimestamp = cursor.getLong(6);
+                row.note = cursor.getString(7);
+                long hash = ContentHash.of(row);
+                String userId = cursor.getString(1);
+                while (!seen.add(userId + ":" + hash)) {
+                    hash = ContentHash.salted(hash, id);
+                }
+                update.bindLong(1, hash);
+                update.bindLong(2, id);
+                update.executeUpdateDelete();
+            }
+        }
+    }
+
+    /**
+     * Fill yearMonth/dayKey for existing rows. Done in Java rather than with strftime()
+     * so the keys use the device time zone, same as the repository does at write time.
+     */
+    private static void backfillDateKeys(SupportSQLiteDatabase db) {
+        SupportSQLiteStatement update = db.compileStatement(
+                "UPDATE `transactions` SET `yearMonth` = ?, `dayKey` = ? WHERE `id` = ?");
+        DateBuckets buckets = DateBuckets.current();
+        try (Cursor cursor = db.query("SELECT `id`, `dateTimestamp` FROM `transactions`")) {
+            while (cursor.moveToNext()) {
+                long timestamp = cursor.getLong(1);
+                int dayKey = buckets.dayKey(timestamp);
+                update.bindLong(1, dayKey / 100);
+                update.bindLong(2, dayKey);
+                update.bindLong(3, cursor.getLong(0));
+                update.executeUpdateDelete();
+            }
+        }
+    }
+}
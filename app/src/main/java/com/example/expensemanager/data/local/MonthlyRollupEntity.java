@@ -0,0 +1,23 @@
+package com.example.expensemanager.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+
+/**
+ * Running sum and count of transactions per user, month, type, category and wallet.
+ * Maintained by the triggers in DatabaseTriggers inside the same SQLite transaction
+ * as every write to the transactions table, so reads cost O(months x categories).
+ */
+@Entity(tableName = "monthly_rollup",
+        primaryKeys = {"userId", "yearMonth", "typeCode", "categoryId", "walletId"})
+public class MonthlyRollupEntity {
+
+    @NonNull
+    public String userId = "";
+    public int yearMonth;     // yyyyMM, same key as TransactionEntity.yearMonth
+    public int typeCode;
+    public int categoryId;    // 0 when the transaction has no category
+    public int walletId;      // 0 when the transaction has no wallet
+    public long sum;          // paisa
+    public int count;
+}
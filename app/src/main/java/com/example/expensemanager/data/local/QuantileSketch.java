@@ -0,0 +1,253 @@
+package com.example.expensemanager.data.local;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * KLL quantile sketch of amounts: approximate percentiles in a few KB, whatever the
+ * number of values. Level h holds values standing for 2^h originals each; when the
+ * sketch is over capacity the lowest full level is sorted and every other value,
+ * starting at a coin flip, moves up a level. Rank error is around 1.7/k.
+ * <p>
+ * Sketches merge, so a month's sketch per category can be combined into any range
+ * of months. The coin flips come from a seeded generator, so the same values in the
+ * same order always give the same bytes. Not thread-safe.
+ */
+public final class QuantileSketch {
+
+    public static final int DEFAULT_K = 200;
+    // Each level down holds this fraction of the one above
+    private static final double CAPACITY_RATIO = 2.0 / 3;
+    private static final int MIN_CAPACITY = 2;
+    private static final byte FORMAT = 1;
+
+    private final int k;
+    private long count;
+    private long min = Long.MAX_VALUE;
+    private long max = Long.MIN_VALUE;
+    private long seed = 0x9E3779B97F4A7C15L;
+    private long[][] levels = {new long[MIN_CAPACITY]};
+    private int[] sizes = {0};
+
+    public QuantileSketch() {
+        this(DEFAULT_K);
+    }
+
+    public QuantileSketch(int k) {
+        this.k = k;
+    }
+
+    public long count() {
+        return count;
+    }
+
+    public boolean isEmpty() {
+        return count == 0;
+    }
+
+    public void update(long value) {
+        append(0, value);
+        count++;
+        min = Math.min(min, value);
+        max = Math.max(max, value);
+        compress();
+    }
+
+    /**
+     * Add another sketch's values to this one; other is left unchanged
+     */
+    public void merge(QuantileSketch other) {
+        if (other.isEmpty()) return;
+        for (int h = 0; h < other.levels.length; h++) {
+            for (int i = 0; i < other.sizes[h]; i++) {
+                append(h, other.levels[h][i]);
+            }
+        }
+        count += other.count;
+        min = Math.min(min, other.min);
+        max = Math.max(max, other.max);
+        compress();
+    }
+
+    /**
+     * @param fraction 0 for the minimum, 0.5 for the median, 1 for the maximum
+     * @return The approximate value at that rank, or 0 if empty
+     */
+    public long quantile(double fraction) {
+        if (isEmpty()) return 0;
+        if (fraction <= 0) return min;
+        if (fraction >= 1) return max;
+        long[] values = new long[retained()];
+        long[] weights = new long[values.length];
+        sorted(values, weights);
+        double target = fraction * totalWeight();
+        long cumulative = 0;
+        for (int i = 0; i < values.length; i++) {
+            cumulative += weights[i];
+            if (cumulative >= target) {
+                return values[i];
+            }
+        }
+        return max;
+    }
+
+    /**
+     * Approximate fraction of values at or below value
+     */
+    public double rank(long value) {
+        if (isEmpty()) return 0;
+        if (value < min) return 0;
+        if (value >= max) return 1;
+        long below = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                if (levels[h][i] <= value) {
+                    below += 1L << h;
+                }
+            }
+        }
+        return below / (double) totalWeight();
+    }
+
+    public byte[] toBytes() {
+        ByteBuffer buffer = ByteBuffer.allocate(1 + 4 + 8 * 4 + 4 + 4 * levels.length + 8 * retained());
+        buffer.put(FORMAT).putInt(k).putLong(count).putLong(min).putLong(max).putLong(seed);
+        buffer.putInt(levels.length);
+        for (int h = 0; h < levels.length; h++) {
+            buffer.putInt(sizes[h]);
+            for (int i = 0; i < sizes[h]; i++) {
+                buffer.putLong(levels[h][i]);
+            }
+        }
+        return buffer.array();
+    }
+
+    /**
+     * @throws IllegalArgumentException If the bytes are not a sketch this version wrote
+     */
+    public static QuantileSketch fromBytes(byte[] bytes) {
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        if (bytes.length == 0 || buffer.get() != FORMAT) {
+            throw new IllegalArgumentException("Unknown sketch format");
+        }
+        QuantileSketch sketch = new QuantileSketch(buffer.getInt());
+        sketch.count = buffer.getLong();
+        sketch.min = buffer.getLong();
+        sketch.max = buffer.getLong();
+        sketch.seed = buffer.getLong();
+        int levelCount = buffer.getInt();
+        sketch.levels = new long[levelCount][];
+        sketch.sizes = new int[levelCount];
+        for (int h = 0; h < levelCount; h++) {
+            int size = buffer.getInt();
+            sketch.levels[h] = new long[Math.max(size, MIN_CAPACITY)];
+            sketch.sizes[h] = size;
+            for (int i = 0; i < size; i++) {
+                sketch.levels[h][i] = buffer.getLong();
+            }
+        }
+        return sketch;
+    }
+
+    private void append(int level, long value) {
+        if (level >= levels.length) {
+            levels = Arrays.copyOf(levels, level + 1);
+            sizes = Arrays.copyOf(sizes, level + 1);
+            for (int h = 0; h <= level; h++) {
+                if (levels[h] == null) levels[h] = new long[MIN_CAPACITY];
+            }
+        }
+        if (sizes[level] == levels[level].length) {
+            levels[level] = Arrays.copyOf(levels[level], levels[level].length * 2);
+        }
+        levels[level][sizes[level]++] = value;
+    }
+
+    /**
+     * Compact levels until the sketch is within capacity again
+     */
+    private void compress() {
+        while (retained() > totalCapacity()) {
+            for (int h = 0; h < levels.length; h++) {
+                if (sizes[h] >= capacity(h)) {
+                    compact(h);
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Sort a level and move every other value up one, where it weighs double. An odd
+     * value out stays behind, so the total weight is unchanged.
+     */
+    private void compact(int level) {
+        long[] values = levels[level];
+        int size = sizes[level];
+        Arrays.sort(values, 0, size);
+        int kept = size % 2;
+        int offset = nextBit();
+        for (int i = kept + offset; i < size; i += 2) {
+            append(level + 1, values[i]);
+        }
+        // The odd value out, if any, is values[0] and stays where it is
+        sizes[level] = kept;
+    }
+
+    private int capacity(int level) {
+        int depth = levels.length - level - 1;
+        return Math.max(MIN_CAPACITY, (int) Math.ceil(k * Math.pow(CAPACITY_RATIO, depth)));
+    }
+
+    private int totalCapacity() {
+        int total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += capacity(h);
+        }
+        return total;
+    }
+
+    private int retained() {
+        int total = 0;
+        for (int size : sizes) {
+            total += size;
+        }
+        return total;
+    }
+
+    private long totalWeight() {
+        long total = 0;
+        for (int h = 0; h < levels.length; h++) {
+            total += (long) sizes[h] << h;
+        }
+        return total;
+    }
+
+    /**
+     * Retained values sorted, with the weight of each
+     */
+    private void sorted(long[] values, long[] weights) {
+        long[][] pairs = new long[values.length][];
+        int n = 0;
+        for (int h = 0; h < levels.length; h++) {
+            for (int i = 0; i < sizes[h]; i++) {
+                pairs[n++] = new long[]{levels[h][i], 1L << h};
+            }
+        }
+        Arrays.sort(pairs, (a, b) -> Long.compare(a[0], b[0]));
+        for (int i = 0; i < n; i++) {
+            values[i] = pairs[i][0];
+            weights[i] = pairs[i][1];
+        }
+    }
+
+    /**
+     * xorshift64 coin flip
+     */
+    private int nextBit() {
+        seed ^= seed << 13;
+        seed ^= seed >>> 7;
+        seed ^= seed << 17;
+        return (int) (seed >>> 63);
+    }
+}
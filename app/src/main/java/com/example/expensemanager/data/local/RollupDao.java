@@ -0,0 +1,57 @@
+package com.example.expensemanager.data.local;
+
+import androidx.lifecycle.LiveData;
+import androidx.room.Dao;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface RollupDao {
+
+    @Query("SELECT CASE typeCode WHEN 1 THEN 'income' ELSE 'expense' END AS type,"
+            + " SUM(`sum`) AS total, SUM(`count`) AS count FROM monthly_rollup"
+            + " WHERE userId = :userId GROUP BY typeCode")
+    LiveData<List<TypeTotal>> getTotalsByType(String userId);
+
+    @Query("SELECT CASE typeCode WHEN 1 THEN 'income' ELSE 'expense' END AS type,"
+            + " SUM(`sum`) AS total, SUM(`count`) AS count FROM monthly_rollup"
+            + " WHERE userId = :userId GROUP BY typeCode")
+    List<TypeTotal> getTotalsByTypeSync(String userId);
+
+    // Month ranges are inclusive yyyyMM keys
+    @Query("SELECT IFNULL(SUM(`sum`), 0) FROM monthly_rollup WHERE userId = :userId AND typeCode = :typeCode"
+            + " AND yearMonth BETWEEN :fromYearMonth AND :toYearMonth")
+    LiveData<Long> getTypeTotalForMonths(String userId, int typeCode, int fromYearMonth, int toYearMonth);
+
+    @Query("SELECT IFNULL(c.name, 'Others') AS category, SUM(g.total) AS total, SUM(g.count) AS count"
+            + " FROM (SELECT categoryId, SUM(`sum`) AS total, SUM(`count`) AS count FROM monthly_rollup"
+            + " WHERE userId = :userId AND typeCode = :typeCode AND yearMonth BETWEEN :fromYearMonth AND :toYearMonth"
+            + " GROUP BY categoryId) g"
+            + " LEFT JOIN categories c ON c.id = g.categoryId"
+            + " GROUP BY IFNULL(c.name, 'Others') ORDER BY total DESC")
+    LiveData<List<CategoryTotal>> getCategoryTotalsForMonths(String userId, int typeCode, int fromYearMonth, int toYearMonth);
+
+    @Query("SELECT IFNULL(c.name, 'Others') AS category, SUM(g.total) AS total, SUM(g.count) AS count"
+            + " FROM (SELECT categoryId, SUM(`sum`) AS total, SUM(`count`) AS count FROM monthly_rollup"
+            + " WHERE userId = :userId AND typeCode = :typeCode AND yearMonth BETWEEN :fromYearMonth AND :toYearMonth"
+            + " GROUP BY categoryId) g"
+            + " LEFT JOIN categories c ON c.id = g.categoryId"
+            + " GROUP BY IFNULL(c.name, 'Others') ORDER BY total DESC")
+    List<CategoryTotal> getCategoryTotalsForMonthsSync(String userId, int typeCode, int fromYearMonth, int toYearMonth);
+
+    // Rebuild from raw rows in both transactions and transactions_archive;
+    // run both inside one transaction
+
+    @Query("DELETE FROM monthly_rollup")
+    void deleteAll();
+
+    @Query("INSERT INTO monthly_rollup (userId, yearMonth, typeCode, categoryId, walletId, `sum`, `count`)"
+            + " SELECT IFNULL(userId, ''), yearMonth, typeCode, IFNULL(categoryId, 0), IFNULL(walletId, 0),"
+            + " SUM(amountMinor), COUNT(*) FROM"
+            + " (SELECT userId, yearMonth, typeCode, categoryId, walletId, amountMinor FROM transactions"
+            + " UNION ALL SELECT userId, yearMonth, typeCode, categoryId, walletId, amountMinor"
+            + " FROM transactions_archive)"
+            + " GROUP BY IFNULL(userId, ''), yearMonth, typeCode, IFNULL(categoryId, 0), IFNULL(walletId, 0)")
+    void insertFromTransactions();
+}
@@ -0,0 +1,39 @@
+package com.example.expensemanager.data.local;
+
+import androidx.room.Dao;
+import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
+import androidx.room.Query;
+
+import java.util.List;
+
+@Dao
+public interface SketchDao {
+
+    @Query("SELECT * FROM category_sketches WHERE userId = :userId AND yearMonth = :yearMonth"
+            + " AND categoryId = :categoryId")
+    CategorySketchEntity get(String userId, int yearMonth, int categoryId);
+
+    // Month ranges are inclusive yyyyMM keys
+    @Query("SELECT * FROM category_sketches WHERE userId = :userId"
+            + " AND yearMonth BETWEEN :fromYearMonth AND :toYearMonth")
+    List<CategorySketchEntity> getForMonths(String userId, int fromYearMonth, int toYearMonth);
+
+    @Insert(onConflict = OnConflictStrategy.REPLACE)
+    void upsert(CategorySketchEntity sketch);
+
+    @Query("DELETE FROM category_sketches WHERE userId = :userId AND yearMonth = :yearMonth"
+            + " AND categoryId = :categoryId")
+    void delete(String userId, int yearMonth, int categoryId);
+
+    // Rebuild one sketch after an update or delete. IS matches a null userId or
+    // categoryId too; the timestamp range keeps the (userId, categoryId, dateTimestamp)
+    // indexes to about one month of the category rather than all of it.
+    @Query("SELECT amountMinor FROM transactions WHERE userId IS :userId AND categoryId IS :categoryId"
+            + " AND dateTimestamp >= :fromMillis AND dateTimestamp < :toMillis"
+            + " AND yearMonth = :yearMonth AND typeCode = " + TransactionEntity.TYPE_EXPENSE
+            + " UNION ALL SELECT amountMinor FROM transactions_archive WHERE userId IS :userId"
+            + " AND categoryId IS :categoryId AND dateTimestamp >= :fromMillis AND dateTimestamp < :toMillis"
+            + " AND yearMonth = :yearMonth AND typeCode = " + TransactionEntity.TYPE_EXPENSE)
+    List<Long> getExpenseAmounts(String userId, int yearMonth, Integer categoryId, long fromMillis, long toMillis);
+}
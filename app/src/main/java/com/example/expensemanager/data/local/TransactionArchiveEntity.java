@@ -0,0 +1,18 @@
+package com.example.expensemanager.data.local;
+
+import androidx.room.Entity;
+import androidx.room.Index;
+
+/**
+ * Transactions older than the archive horizon, moved out of the hot table so its
+ * indexes only cover recent history. Rows keep their id and every column; their
+ * amounts stay in monthly_rollup through the archive triggers in DatabaseTriggers.
+ */
+@Entity(tableName = "transactions_archive",
+        indices = {
+                @Index(value = {"userId", "dateTimestamp"}),
+                @Index(value = {"userId", "categoryId", "dateTimestamp"}),
+                @Index(value = {"userId", "contentHash"}, unique = true)
+        })
+public class TransactionArchiveEntity extends TransactionEntity {
+}
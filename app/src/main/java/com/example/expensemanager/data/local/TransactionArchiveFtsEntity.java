@@ -0,0 +1,17 @@
+package com.example.expensemanager.data.local;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+/**
+ * Full-text index over archived notes, kept the same way as transactions_fts: the
+ * text lives only in transactions_archive, and Room's sync triggers follow the moves
+ * in and out. Rows share their docid with transactions_archive.id.
+ */
+@Fts4(contentEntity = TransactionArchiveEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "transactions_archive_fts")
+public class TransactionArchiveFtsEntity {
+
+    public String note;
+}
@@ -4,6 +4,7 @@ import androidx.lifecycle.LiveData;
 import androidx.room.Dao;
 import androidx.room.Delete;
 import androidx.room.Insert;
+import androidx.room.OnConflictStrategy;
 import androidx.room.Query;
 import androidx.room.Update;
 
@@ -15,11 +16,24 @@ public interface TransactionDao {
     @Insert
     long insert(TransactionEntity entity);
 
+    /**
+     * Insert rows, skipping any whose (userId, contentHash) already exists.
+     * Skipped rows come back as -1.
+     */
+    @Insert(onConflict = OnConflictStrategy.IGNORE)
+    List<Long> insertAllIgnoringDuplicates(List<TransactionEntity> entities);
+
+    // Update and delete return the number of rows touched; 0 means the row was
+    // not found here, and may be in transactions_archive
+
     @Update
-    void update(TransactionEntity entity);
+    int update(TransactionEntity entity);
 
     @Delete
-    void delete(TransactionEntity entity);
+    int delete(TransactionEntity entity);
+
+    @Query("DELETE FROM transactions WHERE id = :id")
+    int deleteById(long id);
 
     @Query("SELECT * FROM transactions WHERE id = :id LIMIT 1")
     TransactionEntity getById(long id);
@@ -33,6 +47,116 @@ public interface TransactionDao {
     @Query("SELECT * FROM transactions ORDER BY dateTimestamp DESC")
     LiveData<List<TransactionEntity>> getAll();
 
-    @Query("SELECT * FROM transactions WHERE userId = :userId AND strftime('%Y', datetime(dateTimestamp/1000, 'unixepoch')) = :year AND strftime('%m', datetime(dateTimestamp/1000, 'unixepoch')) = :month ORDER BY dateTimestamp DESC")
-    LiveData<List<TransactionEntity>> getTransactionsByUserAndMonth(String userId, String year, String month);
+    // Range queries seek on index_transactions_userId_dateTimestamp; end is exclusive
+    @Query("SELECT * FROM transactions WHERE userId = :userId AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis ORDER BY dateTimestamp DESC")
+    LiveData<List<TransactionEntity>> getByUserInRange(String userId, long startMillis, long endMillis);
+
+    @Query("SELECT * FROM transactions WHERE userId = :userId AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis ORDER BY dateTimestamp DESC")
+    List<TransactionEntity> getByUserInRangeSync(String userId, long startMillis, long endMillis);
+
+    // List rows: TransactionRow columns with the names joined in. Columns are
+    // qualified with t. because the lookup tables also have an id.
+
+    String ROW_SELECT = "SELECT t.id, t.amountMinor, t.typeCode, c.name AS category, w.name AS wallet,"
+            + " t.note, t.dateTimestamp, t.dayKey FROM ";
+    String ROW_JOINS = " LEFT JOIN categories c ON c.id = t.categoryId LEFT JOIN wallets w ON w.id = t.walletId";
+
+    /**
+     * Keyset page over (dateTimestamp, id), newest first. The first page passes
+     * Long.MAX_VALUE for both cursor values; later pages pass the last row seen.
+     * The leading dateTimestamp bound keeps this an index seek rather than an OFFSET skip.
+     */
+    @Query(ROW_SELECT + "transactions t" + ROW_JOINS
+            + " WHERE t.userId = :userId"
+            + " AND t.dateTimestamp >= :startMillis AND t.dateTimestamp < :endMillis"
+            + " AND t.dateTimestamp <= :beforeTimestamp"
+            + " AND (t.dateTimestamp < :beforeTimestamp OR t.id < :beforeId)"
+            + " ORDER BY t.dateTimestamp DESC, t.id DESC LIMIT :limit")
+    List<TransactionRow> getPageBefore(String userId, long startMillis, long endMillis,
+                                       long beforeTimestamp, long beforeId, int limit);
+
+    /**
+     * Same as getPageBefore, restricted to one category. Seeks on
+     * index_transactions_userId_categoryId_dateTimestamp.
+     */
+    @Query(ROW_SELECT + "transactions t" + ROW_JOINS
+            + " WHERE t.userId = :userId AND t.categoryId = :categoryId"
+            + " AND t.dateTimestamp >= :startMillis AND t.dateTimestamp < :endMillis"
+            + " AND t.dateTimestamp <= :beforeTimestamp"
+            + " AND (t.dateTimestamp < :beforeTimestamp OR t.id < :beforeId)"
+            + " ORDER BY t.dateTimestamp DESC, t.id DESC LIMIT :limit")
+    List<TransactionRow> getPageBeforeInCategory(String userId, int categoryId, long startMillis, long endMillis,
+                                                 long beforeTimestamp, long beforeId, int limit);
+
+    // Full-text search over notes. The MATCH runs on the transactions_fts index and
+    // only the hits are joined back to transactions for the user and range filters.
+    // :match is built with TransactionFtsEntity.toMatchQuery.
+
+    /**
+     * Rank: number of matched terms in the note (offsets() returns four numbers per
+     * match), newest first among equal ranks
+     */
+    String SEARCH_ORDER = " ORDER BY (length(offsets(transactions_fts))"
+            + " - length(replace(offsets(transactions_fts), ' ', '')) + 1) / 4 DESC,"
+            + " t.dateTimestamp DESC, t.id DESC";
+
+    default List<TransactionRow> search(String userId, String match, int limit) {
+        return search(userId, match, Long.MIN_VALUE, Long.MAX_VALUE, limit);
+    }
+
+    @Query(ROW_SELECT + "transactions_fts JOIN transactions t ON t.id = transactions_fts.docid" + ROW_JOINS
+            + " WHERE transactions_fts MATCH :match AND t.userId = :userId"
+            + " AND t.dateTimestamp >= :startMillis AND t.dateTimestamp < :endMillis"
+            + SEARCH_ORDER + " LIMIT :limit")
+    List<TransactionRow> search(String userId, String match, long startMillis, long endMillis, int limit);
+
+    @Query(ROW_SELECT + "transactions_fts JOIN transactions t ON t.id = transactions_fts.docid" + ROW_JOINS
+            + " WHERE transactions_fts MATCH :match AND t.userId = :userId AND t.categoryId = :categoryId"
+            + " AND t.dateTimestamp >= :startMillis AND t.dateTimestamp < :endMillis"
+            + SEARCH_ORDER + " LIMIT :limit")
+    List<TransactionRow> searchInCategory(String userId, String match, int categoryId,
+                                          long startMillis, long endMillis, int limit);
+
+    // Aggregates: the database does the summing so only a few rows cross the cursor.
+    // Grouping runs on the integer columns; names are joined onto the handful of groups.
+    // Totals are paisa, summed as SQLite integers so they are exact.
+
+    @Query("SELECT CASE typeCode WHEN 1 THEN 'income' ELSE 'expense' END AS type,"
+            + " SUM(amountMinor) AS total, COUNT(*) AS count FROM transactions"
+            + " WHERE userId = :userId GROUP BY typeCode")
+    LiveData<List<TypeTotal>> getTotalsByType(String userId);
+
+    @Query("SELECT CASE typeCode WHEN 1 THEN 'income' ELSE 'expense' END AS type,"
+            + " SUM(amountMinor) AS total, COUNT(*) AS count FROM transactions"
+            + " WHERE userId = :userId GROUP BY typeCode")
+    List<TypeTotal> getTotalsByTypeSync(String userId);
+
+    @Query("SELECT IFNULL(SUM(amountMinor), 0) FROM transactions WHERE userId = :userId AND typeCode = :typeCode"
+            + " AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis")
+    LiveData<Long> getTypeTotalInRange(String userId, int typeCode, long startMillis, long endMillis);
+
+    @Query("SELECT IFNULL(SUM(amountMinor), 0) FROM transactions WHERE userId = :userId AND typeCode = :typeCode"
+            + " AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis")
+    long getTypeTotalInRangeSync(String userId, int typeCode, long startMillis, long endMillis);
+
+    @Query("SELECT IFNULL(c.name, 'Others') AS category, SUM(g.total) AS total, SUM(g.count) AS count"
+            + " FROM (SELECT categoryId, SUM(amountMinor) AS total, COUNT(*) AS count FROM transactions"
+            + " WHERE userId = :userId AND typeCode = :typeCode"
+            + " AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis"
+            + " GROUP BY categoryId) g"
+            + " LEFT JOIN categories c ON c.id = g.categoryId"
+            + " GROUP BY IFNULL(c.name, 'Others') ORDER BY total DESC")
+    LiveData<List<CategoryTotal>> getCategoryTotalsInRange(String userId, int typeCode, long startMillis, long endMillis);
+
+    @Query("SELECT IFNULL(c.name, 'Others') AS category, SUM(g.total) AS total, SUM(g.count) AS count"
+            + " FROM (SELECT categoryId, SUM(amountMinor) AS total, COUNT(*) AS count FROM transactions"
+            + " WHERE userId = :userId AND typeCode = :typeCode"
+            + " AND dateTimestamp >= :startMillis AND dateTimestamp < :endMillis"
+            + " GROUP BY categoryId) g"
+            + " LEFT JOIN categories c ON c.id = g.categoryId"
+            + " GROUP BY IFNULL(c.name, 'Others') ORDER BY total DESC")
+    List<CategoryTotal> getCategoryTotalsInRangeSync(String userId, int typeCode, long startMillis, long endMillis);
+
+    @Query("SELECT COUNT(*) FROM transactions WHERE userId = :userId")
+    int countByUser(String userId);
 }
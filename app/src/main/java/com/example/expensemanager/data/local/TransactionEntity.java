@@ -1,20 +1,82 @@
 package com.example.expensemanager.data.local;
 
+import androidx.room.ColumnInfo;
 import androidx.room.Entity;
+import androidx.room.Ignore;
+import androidx.room.Index;
 import androidx.room.PrimaryKey;
 
-@Entity(tableName = "transactions")
+@Entity(tableName = "transactions",
+        indices = {
+                @Index(value = {"userId", "dateTimestamp"}),
+                @Index(value = {"userId", "categoryId", "dateTimestamp"}),
+                @Index(value = {"userId", "contentHash"}, unique = true)
+        })
 public class TransactionEntity {
 
+    public static final int TYPE_EXPENSE = 0;
+    public static final int TYPE_INCOME = 1;
+
     @PrimaryKey(autoGenerate = true)
     public long id;
 
     public String userId;      // User ID from Firebase Auth
-    public double amount;
+    public long amountMinor;   // paisa; see utils.Money
+    public int typeCode;       // TYPE_EXPENSE or TYPE_INCOME
+    public Integer categoryId; // categories.id, null when uncategorised
+    public Integer walletId;   // wallets.id
+    public long dateTimestamp;
+    public String note;
+
+    // Calendar keys in the device time zone, filled in by the repository at write time
+    @ColumnInfo(defaultValue = "0")
+    public int yearMonth;     // yyyyMM, e.g. 202410
+    @ColumnInfo(defaultValue = "0")
+    public int dayKey;        // yyyyMMdd, e.g. 20241018
+
+    // See ContentHash; unique per user so re-importing a backup cannot create duplicates
+    @ColumnInfo(defaultValue = "0")
+    public long contentHash;
+
+    // Display values for the UI and backups. Not stored; the repository converts them
+    // to and from the columns above through TransactionDictionary.
+    @Ignore
+    public double amount;     // taka
+    @Ignore
     public String type;       // "expense" or "income"
+    @Ignore
     public String category;
+    @Ignore
     public String wallet;
-    public long dateTimestamp;
-    public String note;
-}
 
+    public static int typeCode(String type) {
+        return "income".equals(type) ? TYPE_INCOME : TYPE_EXPENSE;
+    }
+
+    public static String typeName(int typeCode) {
+        return typeCode == TYPE_INCOME ? "income" : "expense";
+    }
+
+    /**
+     * A field-by-field copy, stored columns and display names alike
+     */
+    public TransactionEntity copy() {
+        TransactionEntity entity = new TransactionEntity();
+        entity.id = id;
+        entity.userId = userId;
+        entity.amountMinor = amountMinor;
+        entity.typeCode = typeCode;
+        entity.categoryId = categoryId;
+        entity.walletId = walletId;
+        entity.dateTimestamp = dateTimestamp;
+        entity.note = note;
+        entity.yearMonth = yearMonth;
+        entity.dayKey = dayKey;
+        entity.contentHash = contentHash;
+        entity.amount = amount;
+        entity.type = type;
+        entity.category = category;
+        entity.wallet = wallet;
+        return entity;
+    }
+}
@@ -0,0 +1,39 @@
+package com.example.expensemanager.data.local;
+
+import androidx.room.Entity;
+import androidx.room.Fts4;
+import androidx.room.FtsOptions;
+
+import java.util.regex.Pattern;
+
+/**
+ * Full-text index over transaction notes. External content table: the text lives
+ * only in transactions, and Room's sync triggers keep the index up to date.
+ * Rows share their docid with transactions.id.
+ */
+@Fts4(contentEntity = TransactionEntity.class, tokenizer = FtsOptions.TOKENIZER_UNICODE61)
+@Entity(tableName = "transactions_fts")
+public class TransactionFtsEntity {
+
+    public String note;
+
+    // unicode61 splits on spaces, punctuation and symbols; do the same to the user's text
+    private static final Pattern SEPARATORS = Pattern.compile("[\\p{Z}\\p{P}\\p{S}\\p{Cc}]+");
+
+    /**
+     * Turn free text into a MATCH expression where every word must appear as a word
+     * prefix, so "gro sup" finds "Groceries from the supermarket". Each term is quoted,
+     * which keeps FTS operators such as OR, NOT or a leading "-" from being parsed.
+     * @return The expression, or null if the text has no searchable words
+     */
+    public static String toMatchQuery(String text) {
+        if (text == null) return null;
+        StringBuilder match = new StringBuilder();
+        for (String term : SEPARATORS.split(text)) {
+            if (term.isEmpty()) continue;
+            if (match.length() > 0) match.append(' ');
+            match.append('"').append(term).append("*\"");
+        }
+        return match.length() > 0 ? match.toString() : null;
+    }
+}
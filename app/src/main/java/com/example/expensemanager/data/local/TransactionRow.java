@@ -0,0 +1,44 @@
+package com.example.expensemanager.data.local;
+
+/**
+ * Row projection for the transaction list: only the columns a list row shows,
+ * with the category and wallet names joined in from the lookup tables. The list
+ * binds these directly, so no entity or view model object is built per row.
+ */
+public class TransactionRow {
+    public long id;
+    public long amountMinor;   // paisa
+    public int typeCode;
+    public String category;
+    public String wallet;
+    public String note;
+    public long dateTimestamp; // keyset cursor, with id
+    public int dayKey;         // yyyyMMdd, shown as the row's date
+
+    /**
+     * Build the list row for an entity whose display names are filled in
+     */
+    public static TransactionRow of(TransactionEntity entity) {
+        TransactionRow row = new TransactionRow();
+        row.id = entity.id;
+        row.amountMinor = entity.amountMinor;
+        row.typeCode = entity.typeCode;
+        row.category = entity.category;
+        row.wallet = entity.wallet;
+        row.note = entity.note;
+        row.dateTimestamp = entity.dateTimestamp;
+        row.dayKey = entity.dayKey;
+        return row;
+    }
+
+    public boolean isExpense() {
+        return typeCode != TransactionEntity.TYPE_INCOME;
+    }
+
+    /**
+     * The note, or the category name when there is no note
+     */
+    public String title() {
+        return note != null && !note.isEmpty() ? note : category;
+    }
+}
@@ -0,0 +1,10 @@
+package com.example.expensemanager.data.local;
+
+/**
+ * Aggregate projection: sum and row count for one transaction type
+ */
+public class TypeTotal {
+    public String type;       // "expense" or "income"
+    public long total;        // paisa
+    public int count;
+}
@@ -0,0 +1,20 @@
+package com.example.expensemanager.data.local;
+
+import androidx.annotation.NonNull;
+import androidx.room.Entity;
+import androidx.room.Index;
+import androidx.room.PrimaryKey;
+
+/**
+ * Lookup table for wallet names; transactions store the id
+ */
+@Entity(tableName = "wallets",
+        indices = {@Index(value = {"name"}, unique = true)})
+public class WalletEntity {
+
+    @PrimaryKey(autoGenerate = true)
+    public int id;
+
+    @NonNull
+    public String name = "";
+}
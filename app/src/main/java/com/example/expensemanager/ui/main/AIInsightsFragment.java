@@ -12,23 +12,36 @@ import androidx.annotation.Nullable;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.example.expensemanager.analytics.LedgerSummary;
+import com.example.expensemanager.data.CategoryDistribution;
+import com.example.expensemanager.data.SpendAnomaly;
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
 import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.data.local.CategoryTotal;
 import com.example.expensemanager.databinding.FragmentAiInsightsBinding;
 import com.example.expensemanager.ui.main.models.CategoryInsight;
 import com.example.expensemanager.utils.CategoryColors;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
 import com.example.expensemanager.utils.MotivationalQuotes;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Collections;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
+import java.util.Objects;
 
 public class AIInsightsFragment extends Fragment {
 
+    // Unusual spending is reported for this many days, today included
+    private static final int ANOMALY_DAYS = 7;
+    // Spending patterns cover this many months, this one included
+    private static final int PATTERN_MONTHS = 12;
+    private static final int PATTERN_CATEGORIES = 3;
+    // Fewer expenses than this say little about a category's spread
+    private static final int PATTERN_MIN_COUNT = 5;
+
     private FragmentAiInsightsBinding binding;
     private TransactionViewModel viewModel;
 
@@ -57,34 +70,97 @@ public class AIInsightsFragment extends Fragment {
     }
 
     private void observeTransactions() {
-        viewModel.getAllTransactions().observe(getViewLifecycleOwner(), transactions -> {
-            if (transactions != null) {
-                calculateAndDisplayInsights(transactions);
+        // Year to date and this month vs last month, from the shared summary
+        viewModel.getLedgerSummary().observe(getViewLifecycleOwner(), summary -> {
+            if (summary != null) {
+                calculateTop3CategoriesOfYear(summary.yearToDateByCategory);
+                calculateMonthlyComparison(summary);
             }
             binding.progressLoading.setVisibility(View.GONE);
         });
+
+        // Flagged as transactions arrive, off the main thread
+        viewModel.getRecentAnomalies(ANOMALY_DAYS).observe(getViewLifecycleOwner(), this::showAnomalies);
+
+        viewModel.getColumns().observe(getViewLifecycleOwner(), this::showSpendingPatterns);
     }
 
-    private void calculateAndDisplayInsights(List<TransactionEntity> allTransactions) {
-        // Filter only expense transactions
-        List<TransactionEntity> expenses = new ArrayList<>();
-        for (TransactionEntity t : allTransactions) {
-            if ("expense".equals(t.type)) {
-                expenses.add(t);
-            }
+    private void showAnomalies(List<SpendAnomaly> anomalies) {
+        if (anomalies.isEmpty()) {
+            binding.cardAnomalies.setVisibility(View.GONE);
+            return;
         }
 
-        if (expenses.isEmpty()) {
-            showNoDataState();
-            return;
+        StringBuilder text = new StringBuilder();
+        for (SpendAnomaly anomaly : anomalies) {
+            if (text.length() > 0) text.append('\n');
+            text.append(String.format(Locale.getDefault(), "%s on %s: ৳%.0f (usually ৳%.0f a day)",
+                    anomaly.category != null ? anomaly.category : "Others",
+                    DateKeys.formatDayKey(anomaly.dayKey),
+                    Money.toMajor(anomaly.amount), Money.toMajor(anomaly.expected)));
         }
+        binding.tvAnomalies.setText(text);
+        binding.cardAnomalies.setVisibility(View.VISIBLE);
+    }
 
-        // Calculate insights
-        calculateTop3CategoriesOfYear(expenses);
-        calculateMonthlyComparison(expenses);
+    /**
+     * Median and 90th percentile expense of the busiest categories, and where the
+     * latest expense falls in its category. Read from the monthly sketches, so the
+     * cost does not grow with the number of transactions.
+     */
+    private void showSpendingPatterns(Columns columns) {
+        // Columns are in date order, so the latest expense is near the end
+        int latest = -1;
+        for (int i = columns.size - 1; i >= 0; i--) {
+            if (columns.typeAt(i) == TransactionEntity.TYPE_EXPENSE) {
+                latest = i;
+                break;
+            }
+        }
+        String latestCategory = latest >= 0 ? columns.categoryName(columns.categoryAt(latest)) : null;
+        long latestAmount = latest >= 0 ? columns.amountAt(latest) : 0;
+        boolean hasLatest = latest >= 0;
+
+        viewModel.getCategoryDistributions(PATTERN_MONTHS).thenAccept(distributions -> {
+            if (getActivity() == null) return;
+            getActivity().runOnUiThread(() -> {
+                if (binding == null) return;
+                StringBuilder text = new StringBuilder();
+                int shown = 0;
+                for (CategoryDistribution distribution : distributions) {
+                    if (shown == PATTERN_CATEGORIES || distribution.count() < PATTERN_MIN_COUNT) break;
+                    if (text.length() > 0) text.append('\n');
+                    text.append(String.format(Locale.getDefault(), "%s: usually ৳%.0f, 9 in 10 under ৳%.0f",
+                            distribution.category != null ? distribution.category : "Others",
+                            Money.toMajor(distribution.median()),
+                            Money.toMajor(distribution.percentile(0.9))));
+                    shown++;
+                }
+                if (shown == 0) {
+                    binding.cardSpendingPatterns.setVisibility(View.GONE);
+                    return;
+                }
+                binding.tvSpendingPatterns.setText(text);
+
+                binding.tvLatestPercentile.setVisibility(View.GONE);
+                for (CategoryDistribution distribution : distributions) {
+                    if (hasLatest && Objects.equals(distribution.category, latestCategory)
+                            && distribution.count() >= PATTERN_MIN_COUNT) {
+                        String category = latestCategory != null ? latestCategory : "Others";
+                        binding.tvLatestPercentile.setText(String.format(Locale.getDefault(),
+                                "Your latest %s expense, ৳%.0f, is in the top %d%% for %s",
+                                category, Money.toMajor(latestAmount),
+                                distribution.topPercent(latestAmount), category));
+                        binding.tvLatestPercentile.setVisibility(View.VISIBLE);
+                        break;
+                    }
+                }
+                binding.cardSpendingPatterns.setVisibility(View.VISIBLE);
+            });
+        });
     }
 
-    private void calculateTop3CategoriesOfYear(List<TransactionEntity> expenses) {
+    private void calculateTop3CategoriesOfYear(List<CategoryTotal> categoryTotals) {
         Calendar calendar = Calendar.getInstance();
         int currentYear = calendar.get(Calendar.YEAR);
 
@@ -93,19 +169,6 @@ public class AIInsightsFragment extends Fragment {
         String currentMonth = monthFormat.format(calendar.getTime());
         binding.tvYearLabel.setText("January - " + currentMonth + " " + currentYear);
 
-        // Calculate category totals for current year
-        Map<String, Double> categoryTotals = new HashMap<>();
-
-        for (TransactionEntity expense : expenses) {
-            Calendar expenseCal = Calendar.getInstance();
-            expenseCal.setTimeInMillis(expense.dateTimestamp);
-
-            if (expenseCal.get(Calendar.YEAR) == currentYear) {
-                String category = expense.category != null ? expense.category : "Others";
-                categoryTotals.put(category, categoryTotals.getOrDefault(category, 0.0) + expense.amount);
-            }
-        }
-
         if (categoryTotals.isEmpty()) {
             binding.tvNoYearData.setVisibility(View.VISIBLE);
             binding.layoutCategory1.setVisibility(View.GONE);
@@ -114,20 +177,17 @@ public class AIInsightsFragment extends Fragment {
             return;
         }
 
-        // Convert to list and sort
+        // Rows arrive sorted by amount descending
         List<CategoryInsight> insights = new ArrayList<>();
-        for (Map.Entry<String, Double> entry : categoryTotals.entrySet()) {
+        for (CategoryTotal total : categoryTotals) {
             CategoryInsight insight = new CategoryInsight(
-                    entry.getKey(),
-                    entry.getValue(),
-                    CategoryColors.getColorForCategory(entry.getKey())
+                    total.category,
+                    Money.toMajor(total.total),
+                    CategoryColors.getColorForCategory(total.category)
             );
             insights.add(insight);
         }
 
-        // Sort by amount descending
-        Collections.sort(insights, (a, b) -> Double.compare(b.getTotalAmount(), a.getTotalAmount()));
-
         // Display top 3
         displayTop3Categories(insights);
     }
@@ -176,103 +236,33 @@ public class AIInsightsFragment extends Fragment {
         }
     }
 
-    private void calculateMonthlyComparison(List<TransactionEntity> expenses) {
-        Calendar calendar = Calendar.getInstance();
-        int currentYear = calendar.get(Calendar.YEAR);
-        int currentMonth = calendar.get(Calendar.MONTH);
-
-        // Calculate this month's category totals
-        Map<String, Double> thisMonthTotals = new HashMap<>();
-        for (TransactionEntity expense : expenses) {
-            Calendar expenseCal = Calendar.getInstance();
-            expenseCal.setTimeInMillis(expense.dateTimestamp);
-
-            if (expenseCal.get(Calendar.YEAR) == currentYear &&
-                expenseCal.get(Calendar.MONTH) == currentMonth) {
-                String category = expense.category != null ? expense.category : "Others";
-                thisMonthTotals.put(category, thisMonthTotals.getOrDefault(category, 0.0) + expense.amount);
-            }
-        }
-
-        // Calculate last month's category totals
-        calendar.add(Calendar.MONTH, -1);
-        int lastMonthYear = calendar.get(Calendar.YEAR);
-        int lastMonth = calendar.get(Calendar.MONTH);
-
-        Map<String, Double> lastMonthTotals = new HashMap<>();
-        for (TransactionEntity expense : expenses) {
-            Calendar expenseCal = Calendar.getInstance();
-            expenseCal.setTimeInMillis(expense.dateTimestamp);
-
-            if (expenseCal.get(Calendar.YEAR) == lastMonthYear &&
-                expenseCal.get(Calendar.MONTH) == lastMonth) {
-                String category = expense.category != null ? expense.category : "Others";
-                lastMonthTotals.put(category, lastMonthTotals.getOrDefault(category, 0.0) + expense.amount);
-            }
-        }
-
-        // Find highest increase and decrease
-        findAndDisplayChanges(thisMonthTotals, lastMonthTotals);
-    }
-
-    private void findAndDisplayChanges(Map<String, Double> thisMonth, Map<String, Double> lastMonth) {
-        String maxIncreaseCategory = null;
-        double maxIncreasePercent = 0;
-        double maxIncreaseThisAmount = 0;
-        double maxIncreaseLastAmount = 0;
-
-        String maxDecreaseCategory = null;
-        double maxDecreasePercent = 0;
-        double maxDecreaseThisAmount = 0;
-        double maxDecreaseLastAmount = 0;
-
-        // Check all categories
-        for (String category : thisMonth.keySet()) {
-            double thisAmount = thisMonth.get(category);
-            double lastAmount = lastMonth.getOrDefault(category, 0.0);
-
-            if (lastAmount > 0) {
-                double change = thisAmount - lastAmount;
-                double percentChange = (change / lastAmount) * 100;
-
-                if (percentChange > maxIncreasePercent) {
-                    maxIncreasePercent = percentChange;
-                    maxIncreaseCategory = category;
-                    maxIncreaseThisAmount = thisAmount;
-                    maxIncreaseLastAmount = lastAmount;
-                }
-
-                if (percentChange < maxDecreasePercent) {
-                    maxDecreasePercent = percentChange;
-                    maxDecreaseCategory = category;
-                    maxDecreaseThisAmount = thisAmount;
-                    maxDecreaseLastAmount = lastAmount;
-                }
-            }
-        }
+    private void calculateMonthlyComparison(LedgerSummary summary) {
+        // The largest increase and decrease come precomputed with the summary
+        LedgerSummary.CategoryChange increase = summary.largestIncrease;
+        LedgerSummary.CategoryChange decrease = summary.largestDecrease;
 
         // Display results
-        if (maxIncreaseCategory != null && maxIncreasePercent > 5) {
+        if (increase != null && increase.percentChange() > 5) {
             binding.cardIncrease.setVisibility(View.VISIBLE);
-            binding.tvIncreaseCategory.setText(maxIncreaseCategory);
+            binding.tvIncreaseCategory.setText(increase.category);
             binding.tvIncreasePercentage.setText(String.format(Locale.getDefault(),
-                    "%.0f%% more than last month", maxIncreasePercent));
+                    "%.0f%% more than last month", increase.percentChange()));
             binding.tvIncreaseDetails.setText(String.format(Locale.getDefault(),
                     "Last month: ৳%.0f → This month: ৳%.0f",
-                    maxIncreaseLastAmount, maxIncreaseThisAmount));
+                    Money.toMajor(increase.previous), Money.toMajor(increase.current)));
         } else {
             binding.cardIncrease.setVisibility(View.GONE);
         }
 
-        if (maxDecreaseCategory != null && maxDecreasePercent < -5) {
+        if (decrease != null && decrease.percentChange() < -5) {
             binding.cardDecrease.setVisibility(View.VISIBLE);
-            binding.tvDecreaseCategory.setText(maxDecreaseCategory);
+            binding.tvDecreaseCategory.setText(decrease.category);
             binding.tvDecreasePercentage.setText(String.format(Locale.getDefault(),
                     "You spent %.0f%% less on %s this month!",
-                    Math.abs(maxDecreasePercent), maxDecreaseCategory));
+                    Math.abs(decrease.percentChange()), decrease.category));
             binding.tvDecreaseDetails.setText(String.format(Locale.getDefault(),
                     "Last month: ৳%.0f → This month: ৳%.0f",
-                    maxDecreaseLastAmount, maxDecreaseThisAmount));
+                    Money.toMajor(decrease.previous), Money.toMajor(decrease.current)));
         } else {
             binding.cardDecrease.setVisibility(View.GONE);
         }
@@ -286,16 +276,6 @@ public class AIInsightsFragment extends Fragment {
         }
     }
 
-    private void showNoDataState() {
-        binding.tvNoYearData.setVisibility(View.VISIBLE);
-        binding.layoutCategory1.setVisibility(View.GONE);
-        binding.layoutCategory2.setVisibility(View.GONE);
-        binding.layoutCategory3.setVisibility(View.GONE);
-        binding.cardIncrease.setVisibility(View.GONE);
-        binding.cardDecrease.setVisibility(View.GONE);
-        binding.cardNoChange.setVisibility(View.VISIBLE);
-    }
-
     @Override
     public void onDestroyView() {
         super.onDestroyView();
@@ -19,6 +19,7 @@ import androidx.lifecycle.ViewModelProvider;
 
 import com.example.expensemanager.R;
 import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.Money;
 
 import java.text.SimpleDateFormat;
 import java.util.Calendar;
@@ -146,7 +147,8 @@ public class AddTransactionActivity extends AppCompatActivity {
         btnSave.setOnClickListener(v -> {
             if (!validate()) return;
 
-            double amount = Double.parseDouble(etAmount.getText().toString().trim());
+            // Rounded to whole paisa here so what is saved is exactly what was typed
+            double amount = Money.parse(etAmount.getText().toString()).toMajor();
 
             // Logic to determine Type and Category
             String type;
@@ -216,12 +218,11 @@ public class AddTransactionActivity extends AppCompatActivity {
             setTitle("Edit Transaction");
             transactionId = intent.getLongExtra("TRANSACTION_ID", -1);
 
-            new Thread(() -> {
-                existingEntity = viewModel.getById(transactionId);
-
-                if (existingEntity != null) {
+            viewModel.getById(transactionId).thenAccept(entity -> {
+                if (entity != null) {
                     runOnUiThread(() -> {
-                        etAmount.setText(String.valueOf(existingEntity.amount));
+                        existingEntity = entity;
+                        etAmount.setText(Money.ofMinor(existingEntity.amountMinor).toString());
 
                         if ("income".equals(existingEntity.type)) {
                             rbIncome.setChecked(true);
@@ -258,7 +259,7 @@ public class AddTransactionActivity extends AppCompatActivity {
                         btnSave.setText("Update");
                     });
                 }
-            }).start();
+            });
         }
     }
 
@@ -270,8 +271,7 @@ public class AddTransactionActivity extends AppCompatActivity {
             return false;
         }
         try {
-            double value = Double.parseDouble(amountStr);
-            if (value == 0d) {
+            if (Money.parse(amountStr).isZero()) {
                 etAmount.setError("Amount cannot be zero");
                 etAmount.requestFocus();
                 return false;
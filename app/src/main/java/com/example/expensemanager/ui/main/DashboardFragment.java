@@ -14,15 +14,24 @@ import androidx.activity.result.ActivityResultLauncher;
 import androidx.activity.result.contract.ActivityResultContracts;
 import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
+import androidx.core.util.Pair;
 import androidx.fragment.app.Fragment;
 import androidx.lifecycle.ViewModelProvider;
 
 import com.example.expensemanager.MainActivity;
+import com.example.expensemanager.analytics.LedgerSummary;
+import com.example.expensemanager.data.SpendForecast;
+import com.example.expensemanager.data.TransactionColumnStore;
+import com.example.expensemanager.data.TransactionRepository;
+import com.example.expensemanager.data.local.CategoryTotal;
 import com.example.expensemanager.data.local.TransactionEntity;
 import com.example.expensemanager.databinding.FragmentDashboardBinding;
 import com.example.expensemanager.ui.auth.LoginActivity;
+import com.example.expensemanager.utils.ArchivePreferences;
 import com.example.expensemanager.utils.BackupManager;
 import com.example.expensemanager.utils.BudgetPreferences;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
 //import com.example.expensemanager.utils.CloudBackupManager;  // HIDDEN - Work in Progress
 import com.github.mikephil.charting.charts.PieChart;
 import com.github.mikephil.charting.data.PieData;
@@ -30,6 +39,7 @@ import com.github.mikephil.charting.data.PieDataSet;
 import com.github.mikephil.charting.data.PieEntry;
 import com.github.mikephil.charting.formatter.PercentFormatter;
 import com.github.mikephil.charting.utils.ColorTemplate;
+import com.google.android.material.datepicker.MaterialDatePicker;
 import com.google.firebase.auth.FirebaseAuth;
 
 import java.text.SimpleDateFormat;
@@ -39,13 +49,16 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TimeZone;
 
 public class DashboardFragment extends Fragment {
 
     private FragmentDashboardBinding binding;
     private TransactionViewModel viewModel;
     private Calendar selectedMonth;
-    private List<TransactionEntity> allTransactions = new ArrayList<>();
+    // Custom range as inclusive day keys; 0 until the user picks one
+    private int customRangeStart;
+    private int customRangeEnd;
     private BackupManager backupManager;
 
     // Activity result launchers for file pickers
@@ -91,6 +104,7 @@ public class DashboardFragment extends Fragment {
 
         observeTransactions();
         setupMonthNavigation();
+        setupCustomRange();
 
         binding.fabAddTransaction.setOnClickListener(v -> {
             Intent intent = new Intent(requireContext(), AddTransactionActivity.class);
@@ -99,17 +113,18 @@ public class DashboardFragment extends Fragment {
 
         binding.btnViewMonthlyTransactions.setOnClickListener(v -> openMonthlyTransactions());
 
+        binding.btnViewTrends.setOnClickListener(v -> startActivity(new Intent(requireContext(), TrendActivity.class)));
+
         binding.btnExportData.setOnClickListener(v -> startExport());
 
         binding.btnImportData.setOnClickListener(v -> startImport());
 
+        binding.btnArchiveHistory.setOnClickListener(v -> showArchiveDialog());
+
         binding.btnLogout.setOnClickListener(v -> showLogoutConfirmation());
 
         binding.btnSetBudget.setOnClickListener(v -> showSetBudgetDialog());
 
-        // Initialize budget display
-        updateBudgetDisplay();
-
         // Cloud backup functionality (HIDDEN - Work in Progress)
         // TODO: Uncomment when ready to enable cloud backup
         /*
@@ -135,13 +150,21 @@ public class DashboardFragment extends Fragment {
     }
 
     private void observeTransactions() {
-        viewModel.getAllTransactions().observe(getViewLifecycleOwner(), entities -> {
-            if (entities != null) {
-                allTransactions = entities;
-                updateDashboard(entities);
-                updateMonthlyView();
+        // Totals, budget and the monthly breakdown all come from one summary
+        viewModel.getLedgerSummary().observe(getViewLifecycleOwner(), summary -> {
+            if (summary != null) {
+                updateDashboard(summary);
+                updateBudgetDisplay(summary);
+                if (summary.selectedYearMonth == DateKeys.yearMonth(selectedMonth.getTimeInMillis())) {
+                    showMonthlyBreakdown(summary.selectedMonthByCategory);
+                }
             }
         });
+
+        // Projected on a reader thread once the budget and spending are known
+        viewModel.getBudgetForecast().observe(getViewLifecycleOwner(), this::showBudgetForecast);
+
+        updateMonthlyView();
     }
 
     private void setupMonthNavigation() {
@@ -156,49 +179,57 @@ public class DashboardFragment extends Fragment {
         });
     }
 
-    private void updateDashboard(List<TransactionEntity> entities) {
-        double totalIncome = 0;
-        double totalExpense = 0;
-        int incomeCount = 0;
-        int expenseCount = 0;
-
-        // Calculate current month expense for budget comparison
-        Calendar currentMonth = Calendar.getInstance();
-        int currentYear = currentMonth.get(Calendar.YEAR);
-        int currentMonthValue = currentMonth.get(Calendar.MONTH);
-        double currentMonthExpense = 0;
-
-        for (TransactionEntity entity : entities) {
-            android.util.Log.d("DashboardFragment", "Transaction: id=" + entity.id + ", type=" + entity.type + ", amount=" + entity.amount);
-
-            if ("income".equals(entity.type)) {
-                totalIncome += entity.amount;
-                incomeCount++;
-            } else if ("expense".equals(entity.type)) {
-                totalExpense += entity.amount;
-                expenseCount++;
-
-                // Check if expense is from current month
-                Calendar expenseCal = Calendar.getInstance();
-                expenseCal.setTimeInMillis(entity.dateTimestamp);
-                if (expenseCal.get(Calendar.YEAR) == currentYear &&
-                    expenseCal.get(Calendar.MONTH) == currentMonthValue) {
-                    currentMonthExpense += entity.amount;
-                }
-            }
-        }
+    private void setupCustomRange() {
+        binding.btnCustomRange.setOnClickListener(v -> {
+            MaterialDatePicker<Pair<Long, Long>> picker = MaterialDatePicker.Builder.dateRangePicker()
+                    .setTitleText("Select date range")
+                    .build();
+            picker.addOnPositiveButtonClickListener(selection -> {
+                if (selection.first == null || selection.second == null) return;
+                // The picker returns UTC midnight of each chosen date
+                customRangeStart = utcDayKey(selection.first);
+                customRangeEnd = utcDayKey(selection.second);
+                SimpleDateFormat dateFormat = new SimpleDateFormat("dd MMM yyyy", Locale.getDefault());
+                dateFormat.setTimeZone(TimeZone.getTimeZone("UTC"));
+                binding.tvCustomRange.setText(dateFormat.format(selection.first) + " - "
+                        + dateFormat.format(selection.second));
+                showCustomRangeTotals();
+            });
+            picker.show(getChildFragmentManager(), "customRange");
+        });
+
+        // Range totals are tree lookups, cheap enough to redo on every change
+        viewModel.getColumns().observe(getViewLifecycleOwner(), columns -> showCustomRangeTotals());
+    }
 
-        double balance = totalIncome - totalExpense;
+    private void showCustomRangeTotals() {
+        TransactionColumnStore columnStore = viewModel.getColumnStore();
+        if (customRangeStart == 0 || columnStore == null) return;
+
+        int any = TransactionColumnStore.Columns.ANY;
+        long expense = columnStore.sumDays(TransactionEntity.TYPE_EXPENSE, any, customRangeStart, customRangeEnd);
+        long income = columnStore.sumDays(TransactionEntity.TYPE_INCOME, any, customRangeStart, customRangeEnd);
+        binding.tvCustomRangeTotals.setVisibility(View.VISIBLE);
+        binding.tvCustomRangeTotals.setText(String.format(Locale.getDefault(),
+                "Expense: ৳%.2f\nIncome: ৳%.2f\nNet: ৳%.2f",
+                Money.toMajor(expense), Money.toMajor(income), Money.toMajor(income - expense)));
+    }
 
-        android.util.Log.d("DashboardFragment", "Income Count: " + incomeCount + ", Expense Count: " + expenseCount);
-        android.util.Log.d("DashboardFragment", "Total Income: " + totalIncome + ", Total Expense: " + totalExpense);
+    private static int utcDayKey(long utcMillis) {
+        Calendar cal = Calendar.getInstance(TimeZone.getTimeZone("UTC"));
+        cal.setTimeInMillis(utcMillis);
+        return cal.get(Calendar.YEAR) * 10000 + (cal.get(Calendar.MONTH) + 1) * 100 + cal.get(Calendar.DAY_OF_MONTH);
+    }
 
-        String summary = String.format("Total Income: ৳%.2f\nTotal Expense: ৳%.2f\nBalance: ৳%.2f\n\nTotal Transactions: %d",
-                totalIncome, totalExpense, balance, entities.size());
-        binding.tvSummary.setText(summary);
+    private void updateDashboard(LedgerSummary summary) {
+        long totalIncome = summary.totalIncome;
+        long totalExpense = summary.totalExpense;
+        int transactionCount = summary.transactionCount();
+        long balance = summary.balance();
 
-        // Update budget display with current month expense
-        updateBudgetDisplay(currentMonthExpense);
+        String summaryText = String.format("Total Income: ৳%.2f\nTotal Expense: ৳%.2f\nBalance: ৳%.2f\n\nTotal Transactions: %d",
+                Money.toMajor(totalIncome), Money.toMajor(totalExpense), Money.toMajor(balance), transactionCount);
+        binding.tvSummary.setText(summaryText);
     }
 
     private void updateMonthlyView() {
@@ -206,23 +237,22 @@ public class DashboardFragment extends Fragment {
         SimpleDateFormat monthFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
         binding.tvCurrentMonth.setText(monthFormat.format(selectedMonth.getTime()));
 
-        // Filter transactions for selected month
-        List<TransactionEntity> monthTransactions = filterTransactionsByMonth(allTransactions);
+        // The next summary carries the selected month's category breakdown
+        viewModel.setSelectedYearMonth(DateKeys.yearMonth(selectedMonth.getTimeInMillis()));
+    }
 
-        // Calculate expenses by category
-        Map<String, Double> categoryExpenses = new HashMap<>();
-        double totalMonthExpense = 0;
+    private void showMonthlyBreakdown(List<CategoryTotal> totals) {
+        // Expenses by category
+        Map<String, Long> categoryExpenses = new HashMap<>();
+        long totalMonthExpense = 0;
 
-        for (TransactionEntity transaction : monthTransactions) {
-            if ("expense".equals(transaction.type)) {
-                String category = transaction.category != null ? transaction.category : "Others";
-                categoryExpenses.put(category, categoryExpenses.getOrDefault(category, 0.0) + transaction.amount);
-                totalMonthExpense += transaction.amount;
-            }
+        for (CategoryTotal total : totals) {
+            categoryExpenses.put(total.category, total.total);
+            totalMonthExpense += total.total;
         }
 
         // Update expense summary
-        binding.tvMonthExpenseSummary.setText(String.format("Total Expense: ৳%.2f", totalMonthExpense));
+        binding.tvMonthExpenseSummary.setText(String.format("Total Expense: ৳%.2f", Money.toMajor(totalMonthExpense)));
 
         // Update pie chart
         if (categoryExpenses.isEmpty()) {
@@ -235,31 +265,12 @@ public class DashboardFragment extends Fragment {
         }
     }
 
-    private List<TransactionEntity> filterTransactionsByMonth(List<TransactionEntity> transactions) {
-        List<TransactionEntity> filtered = new ArrayList<>();
-
-        Calendar transactionCal = Calendar.getInstance();
-        int selectedYear = selectedMonth.get(Calendar.YEAR);
-        int selectedMonthValue = selectedMonth.get(Calendar.MONTH);
-
-        for (TransactionEntity transaction : transactions) {
-            transactionCal.setTimeInMillis(transaction.dateTimestamp);
-
-            if (transactionCal.get(Calendar.YEAR) == selectedYear &&
-                transactionCal.get(Calendar.MONTH) == selectedMonthValue) {
-                filtered.add(transaction);
-            }
-        }
-
-        return filtered;
-    }
-
-    private void setupPieChart(Map<String, Double> categoryExpenses) {
+    private void setupPieChart(Map<String, Long> categoryExpenses) {
         PieChart pieChart = binding.pieChart;
 
         // Prepare data entries
         ArrayList<PieEntry> entries = new ArrayList<>();
-        for (Map.Entry<String, Double> entry : categoryExpenses.entrySet()) {
+        for (Map.Entry<String, Long> entry : categoryExpenses.entrySet()) {
             entries.add(new PieEntry(entry.getValue().floatValue(), entry.getKey()));
         }
 
@@ -355,15 +366,9 @@ public class DashboardFragment extends Fragment {
     @Override
     public void onResume() {
         super.onResume();
-        // Refresh data when returning to this fragment
-        if (viewModel != null) {
-            viewModel.getAllTransactions().observe(getViewLifecycleOwner(), entities -> {
-                if (entities != null) {
-                    allTransactions = entities;
-                    updateDashboard(entities);
-                    updateMonthlyView();
-                }
-            });
+        // Totals follow every write; only the budget may have changed elsewhere
+        if (binding != null) {
+            viewModel.refreshLedgerSummary();
         }
     }
 
@@ -484,22 +489,34 @@ public class DashboardFragment extends Fragment {
                     transaction.userId = userId;
                 }
 
-                // Insert all transactions
-                viewModel.getRepository().insertAll(transactions, (success, count) -> {
-                    requireActivity().runOnUiThread(() -> {
-                        progressDialog.dismiss();
+                // Insert all transactions in one database transaction
+                viewModel.getRepository().insertAll(transactions, TransactionRepository.DEFAULT_CHUNK_SIZE,
+                        new TransactionRepository.OnBulkInsertListener() {
+                    @Override
+                    public void onProgress(int inserted, int total) {
+                        requireActivity().runOnUiThread(() ->
+                            progressDialog.setMessage("Imported " + inserted + " of " + total + "...")
+                        );
+                    }
 
-                        if (success) {
-                            new AlertDialog.Builder(requireContext())
-                                .setTitle("Import Successful")
-                                .setMessage("Successfully imported " + count + " transactions.\n\n" +
-                                          "Your data has been restored.")
-                                .setPositiveButton("OK", null)
-                                .show();
-                        } else {
-                            Toast.makeText(requireContext(), "Failed to import transactions", Toast.LENGTH_SHORT).show();
-                        }
-                    });
+                    @Override
+                    public void onComplete(boolean success, List<Long> ids, int skipped) {
+                        requireActivity().runOnUiThread(() -> {
+                            progressDialog.dismiss();
+
+                            if (success) {
+                                new AlertDialog.Builder(requireContext())
+                                    .setTitle("Import Successful")
+                                    .setMessage("Successfully imported " + ids.size() + " transactions.\n" +
+                                              "Skipped " + skipped + " already in your data.\n\n" +
+                                              "Your data has been restored.")
+                                    .setPositiveButton("OK", null)
+                                    .show();
+                            } else {
+                                Toast.makeText(requireContext(), "Failed to import transactions", Toast.LENGTH_SHORT).show();
+                            }
+                        });
+                    }
                 });
             });
         }).start();
@@ -543,6 +560,40 @@ public class DashboardFragment extends Fragment {
         }
     }
 
+    /**
+     * Show dialog to choose how many months of history stay in the main table.
+     * Older transactions still count in every total and still show in the list.
+     */
+    private void showArchiveDialog() {
+        int[] horizons = {0, 3, 6, 12, 24};
+        String[] labels = {"Off", "Keep last 3 months", "Keep last 6 months",
+                "Keep last 12 months", "Keep last 24 months"};
+        int current = ArchivePreferences.getHorizonMonths(requireContext());
+        int checked = 0;
+        for (int i = 0; i < horizons.length; i++) {
+            if (horizons[i] == current) checked = i;
+        }
+
+        new AlertDialog.Builder(requireContext())
+            .setTitle("Archive Old History")
+            .setSingleChoiceItems(labels, checked, (dialog, which) -> {
+                ArchivePreferences.saveHorizonMonths(requireContext(), horizons[which]);
+                dialog.dismiss();
+                viewModel.archiveOldTransactions((success, count) -> {
+                    if (!isAdded()) return;
+                    requireActivity().runOnUiThread(() -> {
+                        if (!success) {
+                            Toast.makeText(requireContext(), "Archiving failed", Toast.LENGTH_SHORT).show();
+                        } else if (count > 0) {
+                            Toast.makeText(requireContext(), "Archived " + count + " transactions", Toast.LENGTH_SHORT).show();
+                        }
+                    });
+                });
+            })
+            .setNegativeButton("Cancel", null)
+            .show();
+    }
+
     /**
      * Show dialog to set monthly budget
      */
@@ -574,7 +625,7 @@ public class DashboardFragment extends Fragment {
                         double budget = Double.parseDouble(budgetStr);
                         if (budget > 0) {
                             BudgetPreferences.saveBudget(requireContext(), budget);
-                            updateBudgetDisplay();
+                            viewModel.refreshLedgerSummary();
                             Toast.makeText(requireContext(), "Budget set to ৳" + String.format(Locale.getDefault(), "%.0f", budget), Toast.LENGTH_SHORT).show();
                         } else {
                             Toast.makeText(requireContext(), "Please enter a valid amount", Toast.LENGTH_SHORT).show();
@@ -589,53 +640,29 @@ public class DashboardFragment extends Fragment {
             .setNegativeButton("Cancel", null)
             .setNeutralButton("Clear", (dialog, which) -> {
                 BudgetPreferences.clearBudget(requireContext());
-                updateBudgetDisplay();
+                viewModel.refreshLedgerSummary();
                 Toast.makeText(requireContext(), "Budget cleared", Toast.LENGTH_SHORT).show();
             })
             .show();
     }
 
     /**
-     * Update budget display (overload without parameter for initial call)
-     */
-    private void updateBudgetDisplay() {
-        // Calculate current month expense
-        Calendar currentMonth = Calendar.getInstance();
-        int currentYear = currentMonth.get(Calendar.YEAR);
-        int currentMonthValue = currentMonth.get(Calendar.MONTH);
-        double currentMonthExpense = 0;
-
-        for (TransactionEntity entity : allTransactions) {
-            if ("expense".equals(entity.type)) {
-                Calendar expenseCal = Calendar.getInstance();
-                expenseCal.setTimeInMillis(entity.dateTimestamp);
-                if (expenseCal.get(Calendar.YEAR) == currentYear &&
-                    expenseCal.get(Calendar.MONTH) == currentMonthValue) {
-                    currentMonthExpense += entity.amount;
-                }
-            }
-        }
-
-        updateBudgetDisplay(currentMonthExpense);
-    }
-
-    /**
-     * Update budget display with given current month expense
+     * Update budget display from this month's expense and the budget in the summary
      */
-    private void updateBudgetDisplay(double currentMonthExpense) {
-        double budget = BudgetPreferences.getBudget(requireContext());
-
-        if (budget <= 0) {
+    private void updateBudgetDisplay(LedgerSummary summary) {
+        if (!summary.hasBudget()) {
             // No budget set - hide the card
             binding.cardBudget.setVisibility(View.GONE);
             return;
         }
+        double budget = Money.toMajor(summary.budget);
+        double currentMonthExpense = Money.toMajor(summary.currentMonthExpense);
 
         // Show the card
         binding.cardBudget.setVisibility(View.VISIBLE);
 
         // Calculate percentage
-        double percentage = (currentMonthExpense / budget) * 100;
+        double percentage = summary.budgetUtilization() * 100;
         int progressValue = (int) Math.min(percentage, 100);
 
         // Update UI
@@ -682,6 +709,28 @@ public class DashboardFragment extends Fragment {
         }
     }
 
+    private void showBudgetForecast(SpendForecast forecast) {
+        if (forecast == null) {
+            binding.tvBudgetForecast.setVisibility(View.GONE);
+            return;
+        }
+        String text = String.format(Locale.getDefault(), "Projected: ৳%.0f by month end",
+                Money.toMajor(forecast.projectedTotal));
+        if (forecast.willOvershoot() && forecast.spentSoFar <= forecast.budget) {
+            Calendar overshoot = Calendar.getInstance();
+            overshoot.clear();
+            overshoot.set(forecast.overshootDayKey / 10000, forecast.overshootDayKey / 100 % 100 - 1,
+                    forecast.overshootDayKey % 100);
+            text += "\nLikely over budget from " + new SimpleDateFormat("d MMMM", Locale.getDefault())
+                    .format(overshoot.getTime());
+            if (forecast.topCategory != null) {
+                text += ", mostly " + forecast.topCategory;
+            }
+        }
+        binding.tvBudgetForecast.setText(text);
+        binding.tvBudgetForecast.setVisibility(View.VISIBLE);
+    }
+
     /* HIDDEN - Cloud Backup Methods (Work in Progress)
     // TODO: Uncomment when ready to enable cloud backup
 
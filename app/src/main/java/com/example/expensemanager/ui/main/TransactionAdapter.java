@@ -13,8 +13,12 @@ import androidx.core.content.ContextCompat;
 import androidx.recyclerview.widget.RecyclerView;
 
 import com.example.expensemanager.R;
+import com.example.expensemanager.data.local.TransactionRow;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
 
 import java.text.NumberFormat;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
@@ -25,32 +29,22 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         void onTransactionLongClick(long transactionId, int position);
     }
 
-    public static class TransactionItem {
-        public long id;
-        public String category;
-        public String title;
-        public double amount;
-        public String walletName;
-        public String dateText;
-        public boolean isExpense;
-
-        public TransactionItem(long id, String category, String title, double amount, String walletName, String dateText, boolean isExpense) {
-            this.id = id;
-            this.category = category;
-            this.title = title;
-            this.amount = amount;
-            this.walletName = walletName;
-            this.dateText = dateText;
-            this.isExpense = isExpense;
-        }
+    public interface OnLoadMoreListener {
+        void onLoadMore();
     }
 
+    // Request the next page once the user scrolls within this many rows of the end
+    private static final int PREFETCH_DISTANCE = 15;
+
     private final Context context;
-    private List<TransactionItem> items;
+    private List<TransactionRow> items;
     private final HashMap<String, Integer> categoryColorMap = new HashMap<>();
+    // Bangladeshi Taka formatting
+    private final NumberFormat amountFormat = NumberFormat.getNumberInstance(new Locale("bn", "BD"));
     private OnTransactionLongClickListener longClickListener;
+    private OnLoadMoreListener loadMoreListener;
 
-    public TransactionAdapter(Context context, List<TransactionItem> items) {
+    public TransactionAdapter(Context context, List<TransactionRow> items) {
         this.context = context;
         this.items = items;
         initCategoryColors();
@@ -60,6 +54,10 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         this.longClickListener = listener;
     }
 
+    public void setOnLoadMoreListener(OnLoadMoreListener listener) {
+        this.loadMoreListener = listener;
+    }
+
     private void initCategoryColors() {
         categoryColorMap.put("Food", 0xFF4CAF50);       // Green
         categoryColorMap.put("Transport", 0xFFFF9800);  // Orange
@@ -70,11 +68,22 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         categoryColorMap.put("Others", 0xFF9E9E9E);     // Grey
     }
 
-    public void updateItems(List<TransactionItem> newItems) {
-        this.items = newItems;
+    public void updateItems(List<TransactionRow> newItems) {
+        // Own copy: appendItems grows it, and pager snapshots are read-only
+        this.items = new ArrayList<>(newItems);
         notifyDataSetChanged();
     }
 
+    /**
+     * Add the next page to the end of the list
+     */
+    public void appendItems(List<TransactionRow> page) {
+        if (page.isEmpty()) return;
+        int start = items.size();
+        items.addAll(page);
+        notifyItemRangeInserted(start, page.size());
+    }
+
     @NonNull
     @Override
     public TransactionViewHolder onCreateViewHolder(@NonNull ViewGroup parent, int viewType) {
@@ -84,23 +93,19 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
 
     @Override
     public void onBindViewHolder(@NonNull TransactionViewHolder holder, int position) {
-        TransactionItem item = items.get(position);
+        TransactionRow item = items.get(position);
+        boolean isExpense = item.isExpense();
 
-        holder.tvTitle.setText(item.title);
-        holder.tvWallet.setText(item.walletName);
-        holder.tvDate.setText(item.dateText);
+        holder.tvTitle.setText(item.title());
+        holder.tvWallet.setText(item.wallet);
+        holder.tvDate.setText(DateKeys.formatDayKey(item.dayKey));
 
-        // Bangladeshi Taka formatting
-        NumberFormat format = NumberFormat.getNumberInstance(new Locale("bn", "BD"));
-        String amountFormatted = "\u09F3" + format.format(item.amount); // 	F3 = Taka sign
+        String amountFormatted = "\u09F3" + amountFormat.format(Money.toMajor(item.amountMinor)); // 	F3 = Taka sign
         holder.tvAmount.setText(amountFormatted);
 
         // Expense vs income color
-        String typeText = item.isExpense ? "EXPENSE" : "INCOME";
-        android.util.Log.d("TransactionAdapter", "Displaying transaction ID=" + item.id + ", Type=" + typeText + ", Amount=" + item.amount);
-
         int amountColor = ContextCompat.getColor(context,
-                item.isExpense ? R.color.expenseColor : R.color.incomeColor);
+                isExpense ? R.color.expenseColor : R.color.incomeColor);
         holder.tvAmount.setTextColor(amountColor);
 
         // Set category icon from PNG files
@@ -116,6 +121,11 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
             }
             return false;
         });
+
+        // Ask for the next page before the user reaches the end
+        if (loadMoreListener != null && position >= getItemCount() - PREFETCH_DISTANCE) {
+            loadMoreListener.onLoadMore();
+        }
     }
 
     /**
@@ -153,6 +163,10 @@ public class TransactionAdapter extends RecyclerView.Adapter<TransactionAdapter.
         }
     }
 
+    public TransactionRow getItem(int position) {
+        return items.get(position);
+    }
+
     @Override
     public int getItemCount() {
         return items != null ? items.size() : 0;
@@ -1,27 +1,67 @@
 package com.example.expensemanager.ui.main;
 
 import android.app.Application;
+import android.os.Handler;
+import android.os.Looper;
 
 import androidx.annotation.NonNull;
 import androidx.lifecycle.AndroidViewModel;
 import androidx.lifecycle.LiveData;
+import androidx.lifecycle.MediatorLiveData;
 import androidx.lifecycle.MutableLiveData;
 import androidx.lifecycle.Transformations;
 
+import com.example.expensemanager.analytics.LedgerAggregator;
+import com.example.expensemanager.analytics.LedgerSummary;
+import com.example.expensemanager.data.CategoryDistribution;
+import com.example.expensemanager.data.SpendAnomaly;
+import com.example.expensemanager.data.SpendForecast;
+import com.example.expensemanager.data.TransactionColumnStore;
+import com.example.expensemanager.data.TransactionPager;
 import com.example.expensemanager.data.TransactionRepository;
+import com.example.expensemanager.data.local.CategoryTotal;
 import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.data.local.TransactionRow;
+import com.example.expensemanager.data.local.TypeTotal;
+import com.example.expensemanager.utils.ArchivePreferences;
+import com.example.expensemanager.utils.BudgetPreferences;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
 //import com.example.expensemanager.utils.CloudBackupManager;  // HIDDEN - Work in Progress
 import com.google.firebase.auth.FirebaseAuth;
 import com.google.firebase.auth.FirebaseUser;
 
 import java.util.ArrayList;
+import java.util.Calendar;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class TransactionViewModel extends AndroidViewModel {
 
+    // Changes arriving closer together than this, e.g. during an import, are summarised once
+    private static final long SUMMARY_DEBOUNCE_MS = 100;
+
     private final TransactionRepository repository;
     private final MutableLiveData<String> currentUserId = new MutableLiveData<>();
     private final LiveData<List<TransactionEntity>> allTransactions;
+    private TransactionPager pager;
+    private TransactionColumnStore columnStore;
+    private final MutableLiveData<TransactionColumnStore> openStore = new MutableLiveData<>();
+    private final LiveData<TransactionColumnStore.Columns> columns;
+    private final MediatorLiveData<LedgerSummary> ledgerSummary = new MediatorLiveData<>();
+    private final MutableLiveData<Integer> selectedYearMonth =
+            new MutableLiveData<>(DateKeys.yearMonth(System.currentTimeMillis()));
+    private LiveData<TransactionColumnStore.Columns> summarySource;
+    private final MediatorLiveData<List<SpendAnomaly>> recentAnomalies = new MediatorLiveData<>();
+    private int anomalyDays;
+    private LiveData<TransactionColumnStore.Columns> anomalySource;
+    private final MediatorLiveData<SpendForecast> budgetForecast = new MediatorLiveData<>();
+    private LiveData<TransactionColumnStore.Columns> forecastSource;
+    // Newest summary request; older computations stop early and their results are dropped
+    private final AtomicInteger summaryRequest = new AtomicInteger();
+    private final Handler summaryHandler = new Handler(Looper.getMainLooper());
+    private final Runnable summaryRunnable = this::computeLedgerSummary;
     //private final CloudBackupManager cloudBackupManager;  // HIDDEN - Work in Progress
     private boolean autoBackupEnabled = false;  // Disabled for now
 
@@ -36,6 +76,15 @@ public class TransactionViewModel extends AndroidViewModel {
             currentUserId.setValue(user.getUid());
         }
 
+        // Follows whichever store is open, so observers survive a user switch
+        columns = Transformations.switchMap(openStore, store -> {
+            if (store != null) {
+                return store.getColumns();
+            } else {
+                return new MutableLiveData<>();
+            }
+        });
+
         // Switch LiveData based on current user
         allTransactions = Transformations.switchMap(currentUserId, userId -> {
             if (userId != null && !userId.isEmpty()) {
@@ -48,7 +97,7 @@ public class TransactionViewModel extends AndroidViewModel {
         // Setup auto-backup listener (HIDDEN - Work in Progress)
         // TODO: Uncomment when ready to enable cloud backup
         /*
-        repository.setTransactionChangeListener(() -> {
+        repository.setTransactionChangeListener(change -> {
             if (autoBackupEnabled) {
                 performAutoBackup();
             }
@@ -84,35 +133,278 @@ public class TransactionViewModel extends AndroidViewModel {
         return allTransactions;
     }
 
-    public void insert(TransactionEntity entity) {
+    /**
+     * Paged transaction list for the current user, or null when signed out
+     */
+    public TransactionPager getPager() {
+        String userId = currentUserId.getValue();
+        if (userId == null || userId.isEmpty()) {
+            return null;
+        }
+        if (pager == null) {
+            pager = repository.createPager(userId);
+        }
+        return pager;
+    }
+
+    /**
+     * Column store of the current user's transactions, or null when signed out. A user
+     * switch closes it, so fetch it each time rather than keeping it.
+     */
+    public TransactionColumnStore getColumnStore() {
+        String userId = currentUserId.getValue();
+        if (userId == null || userId.isEmpty()) {
+            return null;
+        }
+        if (columnStore == null) {
+            columnStore = repository.openColumnStore(userId);
+            openStore.setValue(columnStore);
+        }
+        return columnStore;
+    }
+
+    /**
+     * The current user's columns after the first load and after every change, moving
+     * to the new user's store when the user switches
+     */
+    public LiveData<TransactionColumnStore.Columns> getColumns() {
+        getColumnStore();
+        return columns;
+    }
+
+    /**
+     * Totals for the dashboard, budget card and insights, recomputed in one pass over
+     * the column store whenever a transaction, the selected month or the budget changes
+     */
+    public LiveData<LedgerSummary> getLedgerSummary() {
+        if (summarySource == null) {
+            ledgerSummary.addSource(selectedYearMonth, month -> refreshLedgerSummary());
+            attachSummarySource();
+        }
+        return ledgerSummary;
+    }
+
+    /**
+     * Month whose category breakdown the summary carries
+     * @param yearMonth yyyyMM
+     */
+    public void setSelectedYearMonth(int yearMonth) {
+        Integer current = selectedYearMonth.getValue();
+        if (current == null || current != yearMonth) {
+            selectedYearMonth.setValue(yearMonth);
+        }
+    }
+
+    /**
+     * Recompute the summary, e.g. after the budget was changed. Calls in quick
+     * succession are coalesced, and a computation already running is abandoned.
+     */
+    public void refreshLedgerSummary() {
+        summaryRequest.incrementAndGet();
+        summaryHandler.removeCallbacks(summaryRunnable);
+        summaryHandler.postDelayed(summaryRunnable, SUMMARY_DEBOUNCE_MS);
+    }
+
+    private void computeLedgerSummary() {
+        TransactionColumnStore store = columnStore;
+        if (store == null || summarySource == null || summarySource.getValue() == null) return;
+        TransactionColumnStore.Columns columns = store.snapshot();
+        Integer month = selectedYearMonth.getValue();
+        long budget = Money.toMinor(BudgetPreferences.getBudget(getApplication()));
+        int request = summaryRequest.get();
+        repository.getReadExecutor().execute(() -> {
+            LedgerSummary summary = LedgerAggregator.summarize(columns, System.currentTimeMillis(), month, budget,
+                    () -> request != summaryRequest.get());
+            if (summary != null && request == summaryRequest.get()) {
+                ledgerSummary.postValue(summary);
+            }
+        });
+    }
+
+    /**
+     * Feed the summary from the current user's column store
+     */
+    private void attachSummarySource() {
+        if (summarySource != null) {
+            ledgerSummary.removeSource(summarySource);
+        }
+        TransactionColumnStore store = getColumnStore();
+        summarySource = store != null ? store.getColumns() : new MutableLiveData<>();
+        ledgerSummary.addSource(summarySource, columns -> refreshLedgerSummary());
+    }
+
+    /**
+     * Unusual category spending over the last few days, today included, read on a
+     * reader thread whenever the column store's spending streams catch up
+     */
+    public LiveData<List<SpendAnomaly>> getRecentAnomalies(int days) {
+        anomalyDays = days;
+        if (anomalySource == null) {
+            attachAnomalySource();
+        } else {
+            refreshRecentAnomalies();
+        }
+        return recentAnomalies;
+    }
+
+    private void refreshRecentAnomalies() {
+        TransactionColumnStore store = columnStore;
+        if (store == null) return;
+        Calendar since = Calendar.getInstance();
+        since.add(Calendar.DAY_OF_MONTH, -(anomalyDays - 1));
+        int sinceDayKey = DateKeys.dayKey(since.getTimeInMillis());
+        repository.getReadExecutor().execute(() -> recentAnomalies.postValue(store.anomalies(sinceDayKey)));
+    }
+
+    private void attachAnomalySource() {
+        if (anomalySource != null) {
+            recentAnomalies.removeSource(anomalySource);
+        }
+        TransactionColumnStore store = getColumnStore();
+        anomalySource = store != null ? store.getSpendStreams() : new MutableLiveData<>();
+        recentAnomalies.addSource(anomalySource, columns -> refreshRecentAnomalies());
+    }
+
+    /**
+     * This month's projected spending against the budget, read on a reader thread
+     * whenever the spending streams catch up or the summary's budget changes
+     */
+    public LiveData<SpendForecast> getBudgetForecast() {
+        if (forecastSource == null) {
+            budgetForecast.addSource(getLedgerSummary(), summary -> refreshBudgetForecast());
+            attachForecastSource();
+        }
+        return budgetForecast;
+    }
+
+    private void refreshBudgetForecast() {
+        TransactionColumnStore store = columnStore;
+        LedgerSummary summary = ledgerSummary.getValue();
+        if (store == null || summary == null) return;
+        long budget = summary.budget;
+        repository.getReadExecutor().execute(() -> budgetForecast.postValue(store.forecast(budget)));
+    }
+
+    private void attachForecastSource() {
+        if (forecastSource != null) {
+            budgetForecast.removeSource(forecastSource);
+        }
+        TransactionColumnStore store = getColumnStore();
+        forecastSource = store != null ? store.getSpendStreams() : new MutableLiveData<>();
+        budgetForecast.addSource(forecastSource, columns -> refreshBudgetForecast());
+    }
+
+    /**
+     * @return Completes with the new id once the insert has committed
+     */
+    public CompletableFuture<Long> insert(TransactionEntity entity) {
         // Set userId before inserting
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user != null) {
             entity.userId = user.getUid();
         }
-        repository.insert(entity);
+        return repository.insert(entity);
+    }
+
+    public CompletableFuture<Boolean> update(TransactionEntity entity) {
+        return repository.update(entity);
     }
 
-    public void update(TransactionEntity entity) {
-        repository.update(entity);
+    public CompletableFuture<Boolean> delete(TransactionEntity entity) {
+        return repository.delete(entity);
     }
 
-    public void delete(TransactionEntity entity) {
-        repository.delete(entity);
+    public CompletableFuture<Boolean> deleteById(long id) {
+        return repository.deleteById(id);
     }
 
-    public TransactionEntity getById(long id) {
+    /**
+     * Completes off the main thread unless the transaction was cached
+     */
+    public CompletableFuture<TransactionEntity> getById(long id) {
         return repository.getById(id);
     }
 
+    /**
+     * Cache a list row the user is about to open, so the edit screen can show it
+     * without reading the database
+     */
+    public void rememberForEdit(TransactionRow row) {
+        String userId = currentUserId.getValue();
+        if (userId != null && !userId.isEmpty()) {
+            repository.rememberRow(row, userId);
+        }
+    }
+
     public void refreshUser() {
         FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
         if (user != null) {
             currentUserId.setValue(user.getUid());
         }
+        // The pager and column store are bound to a single user
+        if (pager != null) {
+            pager.close();
+            pager = null;
+        }
+        if (columnStore != null) {
+            columnStore.close();
+            columnStore = null;
+            openStore.setValue(null);
+            // Observers of getColumns() move over to the new user's store
+            getColumnStore();
+        }
+        if (summarySource != null) {
+            attachSummarySource();
+        }
+        if (anomalySource != null) {
+            attachAnomalySource();
+        }
+        if (forecastSource != null) {
+            attachForecastSource();
+        }
     }
 
-    public LiveData<List<TransactionEntity>> getTransactionsByMonth(String year, String month) {
+    /**
+     * Spread of the current user's expense amounts per category over the last few
+     * whole months, this one included
+     * @return Completes with an empty list when no one is signed in
+     */
+    public CompletableFuture<List<CategoryDistribution>> getCategoryDistributions(int months) {
+        String userId = currentUserId.getValue();
+        if (userId == null || userId.isEmpty()) {
+            return CompletableFuture.completedFuture(new ArrayList<>());
+        }
+        Calendar cal = Calendar.getInstance();
+        int toYearMonth = DateKeys.yearMonth(cal.getTimeInMillis());
+        cal.add(Calendar.MONTH, 1 - months);
+        return repository.getCategoryDistributions(userId, DateKeys.yearMonth(cal.getTimeInMillis()), toYearMonth);
+    }
+
+    /**
+     * Move the current user's transactions from before the archive horizon into the
+     * archive table. Does nothing when archiving is off.
+     * @param listener Gets the number of rows moved, or null
+     */
+    public void archiveOldTransactions(TransactionRepository.OnCompleteListener listener) {
+        String userId = currentUserId.getValue();
+        int months = ArchivePreferences.getHorizonMonths(getApplication());
+        if (userId == null || userId.isEmpty() || months <= 0) {
+            if (listener != null) {
+                listener.onComplete(true, 0);
+            }
+            return;
+        }
+        // Whole months, counting the current one
+        Calendar cal = Calendar.getInstance();
+        cal.add(Calendar.MONTH, 1 - months);
+        long cutoff = DateKeys.monthStart(cal.get(Calendar.YEAR), cal.get(Calendar.MONTH));
+        repository.archiveOlderThan(userId, cutoff, listener);
+    }
+
+    /**
+     * @param month Calendar.MONTH value (0-11)
+     */
+    public LiveData<List<TransactionEntity>> getTransactionsByMonth(int year, int month) {
         return Transformations.switchMap(currentUserId, userId -> {
             if (userId != null && !userId.isEmpty()) {
                 return repository.getTransactionsByUserAndMonth(userId, year, month);
@@ -122,6 +414,46 @@ public class TransactionViewModel extends AndroidViewModel {
         });
     }
 
+    /**
+     * All-time sum and count per transaction type for the current user
+     */
+    public LiveData<List<TypeTotal>> getTotalsByType() {
+        return Transformations.switchMap(currentUserId, userId -> {
+            if (userId != null && !userId.isEmpty()) {
+                return repository.getTotalsByType(userId);
+            } else {
+                return new MutableLiveData<>(new ArrayList<>());
+            }
+        });
+    }
+
+    /**
+     * Total in paisa for one type over an inclusive range of yyyyMM keys
+     * @param typeCode TransactionEntity.TYPE_EXPENSE or TYPE_INCOME
+     */
+    public LiveData<Long> getTypeTotalForMonths(int typeCode, int fromYearMonth, int toYearMonth) {
+        return Transformations.switchMap(currentUserId, userId -> {
+            if (userId != null && !userId.isEmpty()) {
+                return repository.getTypeTotalForMonths(userId, typeCode, fromYearMonth, toYearMonth);
+            } else {
+                return new MutableLiveData<>(0L);
+            }
+        });
+    }
+
+    /**
+     * Per-category totals over an inclusive range of yyyyMM keys
+     */
+    public LiveData<List<CategoryTotal>> getCategoryTotalsForMonths(int typeCode, int fromYearMonth, int toYearMonth) {
+        return Transformations.switchMap(currentUserId, userId -> {
+            if (userId != null && !userId.isEmpty()) {
+                return repository.getCategoryTotalsForMonths(userId, typeCode, fromYearMonth, toYearMonth);
+            } else {
+                return new MutableLiveData<>(new ArrayList<>());
+            }
+        });
+    }
+
     public TransactionRepository getRepository() {
         return repository;
     }
@@ -139,4 +471,17 @@ public class TransactionViewModel extends AndroidViewModel {
     public boolean isAutoBackupEnabled() {
         return autoBackupEnabled;
     }
+
+    @Override
+    protected void onCleared() {
+        super.onCleared();
+        summaryHandler.removeCallbacks(summaryRunnable);
+        summaryRequest.incrementAndGet();
+        if (pager != null) {
+            pager.close();
+        }
+        if (columnStore != null) {
+            columnStore.close();
+        }
+    }
 }
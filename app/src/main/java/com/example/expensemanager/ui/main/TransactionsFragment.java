@@ -2,6 +2,10 @@ package com.example.expensemanager.ui.main;
 
 import android.content.Intent;
 import android.os.Bundle;
+import android.os.Handler;
+import android.os.Looper;
+import android.text.Editable;
+import android.text.TextWatcher;
 import android.view.LayoutInflater;
 import android.view.View;
 import android.view.ViewGroup;
@@ -13,39 +17,46 @@ import androidx.annotation.NonNull;
 import androidx.annotation.Nullable;
 import androidx.appcompat.app.AlertDialog;
 import androidx.fragment.app.Fragment;
-import androidx.lifecycle.LiveData;
 import androidx.lifecycle.ViewModelProvider;
 
+import com.example.expensemanager.data.TransactionColumnStore;
+import com.example.expensemanager.data.TransactionPager;
 import com.example.expensemanager.data.local.TransactionEntity;
 import com.example.expensemanager.databinding.FragmentTransactionsBinding;
 import com.example.expensemanager.ui.main.adapters.CategorySpinnerAdapter;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
 
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Calendar;
-import java.util.Date;
-import java.util.HashMap;
 import java.util.List;
 import java.util.Locale;
-import java.util.Map;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 
 public class TransactionsFragment extends Fragment {
 
+    // Wait for a pause in typing before querying
+    private static final long SEARCH_DEBOUNCE_MS = 250;
+
     private FragmentTransactionsBinding binding;
     private TransactionAdapter adapter;
     private TransactionViewModel viewModel;
-    private Map<Long, TransactionEntity> transactionMap = new HashMap<>();
-    private ExecutorService executor = Executors.newSingleThreadExecutor();
+    private TransactionPager pager;
+    private int boundGeneration = -1;
+    private final Handler searchHandler = new Handler(Looper.getMainLooper());
+    private final Runnable searchRunnable = this::applySearch;
 
     // Filter parameters
     private List<String> monthOptions = new ArrayList<>();
+    private List<int[]> monthValues = new ArrayList<>();  // {year, Calendar.MONTH}, parallel to monthOptions
     private List<String> categoryOptions = new ArrayList<>();
     private String selectedMonthYear = "All Months";
+    private int selectedMonthPosition = 0;
     private String selectedCategory = "All Categories";
-
-    private List<TransactionEntity> allTransactions = new ArrayList<>();
+    // Filter last applied, for the totals line
+    private long filterStartMillis = Long.MIN_VALUE;
+    private long filterEndMillis = Long.MAX_VALUE;
+    private String filterCategory;
 
     public static TransactionsFragment newInstance() {
         return new TransactionsFragment();
@@ -65,9 +76,16 @@ public class TransactionsFragment extends Fragment {
         // Set long click listener
         adapter.setOnTransactionLongClickListener(this::showEditDeleteDialog);
 
+        // Rows are loaded page by page as the user scrolls
+        pager = viewModel.getPager();
+        if (pager != null) {
+            adapter.setOnLoadMoreListener(pager::loadMore);
+        }
+
         // Setup filters
         setupMonthDropdown();
         setupCategoryDropdown();
+        setupSearch();
 
         // Observe transactions
         observeTransactions();
@@ -75,9 +93,11 @@ public class TransactionsFragment extends Fragment {
         // Button listeners
         binding.btnShowAll.setOnClickListener(v -> {
             selectedMonthYear = "All Months";
+            selectedMonthPosition = 0;
             selectedCategory = "All Categories";
             binding.spinnerMonth.setSelection(0);
             binding.spinnerCategory.setSelection(0);
+            binding.etSearch.setText(null);
             applyFilters();
             Toast.makeText(requireContext(), "Showing all transactions", Toast.LENGTH_SHORT).show();
         });
@@ -101,7 +121,9 @@ public class TransactionsFragment extends Fragment {
 
     private void setupMonthDropdown() {
         monthOptions.clear();
+        monthValues.clear();
         monthOptions.add("All Months");
+        monthValues.add(null);
 
         // Generate last 12 months
         Calendar cal = Calendar.getInstance();
@@ -109,6 +131,7 @@ public class TransactionsFragment extends Fragment {
 
         for (int i = 0; i < 12; i++) {
             monthOptions.add(monthFormat.format(cal.getTime()));
+            monthValues.add(new int[]{cal.get(Calendar.YEAR), cal.get(Calendar.MONTH)});
             cal.add(Calendar.MONTH, -1);
         }
 
@@ -124,6 +147,7 @@ public class TransactionsFragment extends Fragment {
             @Override
             public void onItemSelected(AdapterView<?> parent, View view, int position, long id) {
                 selectedMonthYear = monthOptions.get(position);
+                selectedMonthPosition = position;
             }
 
             @Override
@@ -166,81 +190,104 @@ public class TransactionsFragment extends Fragment {
         });
     }
 
-    private void observeTransactions() {
-        viewModel.getAllTransactions().observe(getViewLifecycleOwner(), entities -> {
-            if (entities != null) {
-                allTransactions = new ArrayList<>(entities);
-                applyFilters();
+    private void setupSearch() {
+        binding.etSearch.addTextChangedListener(new TextWatcher() {
+            @Override
+            public void beforeTextChanged(CharSequence s, int start, int count, int after) {
             }
-        });
-    }
 
-    private void applyFilters() {
-        List<TransactionEntity> filteredTransactions = new ArrayList<>();
-
-        for (TransactionEntity entity : allTransactions) {
-            boolean matchesMonth = true;
-            boolean matchesCategory = true;
-
-            // Month filter
-            if (!selectedMonthYear.equals("All Months")) {
-                Calendar cal = Calendar.getInstance();
-                cal.setTimeInMillis(entity.dateTimestamp);
-                SimpleDateFormat monthFormat = new SimpleDateFormat("MMMM yyyy", Locale.getDefault());
-                String transactionMonthYear = monthFormat.format(cal.getTime());
-                matchesMonth = transactionMonthYear.equals(selectedMonthYear);
+            @Override
+            public void onTextChanged(CharSequence s, int start, int before, int count) {
             }
 
-            // Category filter
-            if (!selectedCategory.equals("All Categories")) {
-                String entityCategory = entity.category != null ? entity.category : "Others";
-                matchesCategory = entityCategory.equals(selectedCategory);
+            @Override
+            public void afterTextChanged(Editable s) {
+                searchHandler.removeCallbacks(searchRunnable);
+                searchHandler.postDelayed(searchRunnable, SEARCH_DEBOUNCE_MS);
             }
+        });
+    }
+
+    private void applySearch() {
+        if (pager == null || binding == null) return;
+        pager.setSearchQuery(binding.etSearch.getText() != null ? binding.etSearch.getText().toString() : null);
+    }
 
-            if (matchesMonth && matchesCategory) {
-                filteredTransactions.add(entity);
+    private void observeTransactions() {
+        if (pager == null) return;
+        pager.getSnapshot().observe(getViewLifecycleOwner(), snapshot -> {
+            if (snapshot != null) {
+                bindSnapshot(snapshot);
+            }
+        });
+        viewModel.getColumns().observe(getViewLifecycleOwner(), columns -> {
+            if (columns != null) {
+                showFilterTotals(columns);
             }
+        });
+        // The search box starts empty; drop any search kept from a previous view
+        pager.setSearchQuery(null);
+        applyFilters();
+    }
+
+    private void applyFilters() {
+        if (pager == null) return;
+
+        // Month filter becomes an index range on dateTimestamp
+        long startMillis = Long.MIN_VALUE;
+        long endMillis = Long.MAX_VALUE;
+        int[] month = monthValues.get(selectedMonthPosition);
+        if (month != null) {
+            startMillis = DateKeys.monthStart(month[0], month[1]);
+            endMillis = DateKeys.monthEnd(month[0], month[1]);
         }
 
-        updateTransactionsList(filteredTransactions);
-    }
+        // Category filter
+        String category = selectedCategory.equals("All Categories") ? null : selectedCategory;
 
-    private void updateTransactionsList(List<TransactionEntity> entities) {
-        transactionMap.clear();
-        List<TransactionAdapter.TransactionItem> items = new ArrayList<>();
-        SimpleDateFormat sdf = new SimpleDateFormat("yyyy-MM-dd", Locale.getDefault());
+        pager.setFilter(startMillis, endMillis, category);
 
-        if (entities == null) {
-            entities = new ArrayList<>();
+        filterStartMillis = startMillis;
+        filterEndMillis = endMillis;
+        filterCategory = category;
+        TransactionColumnStore.Columns columns = viewModel.getColumns().getValue();
+        if (columns != null) {
+            showFilterTotals(columns);
         }
+    }
 
-        for (TransactionEntity e : entities) {
-            transactionMap.put(e.id, e);
-            String dateText = sdf.format(new Date(e.dateTimestamp));
-            boolean isExpense = "expense".equals(e.type);
-            String title = (e.note != null && !e.note.isEmpty()) ? e.note : e.category;
-
-
-            items.add(new TransactionAdapter.TransactionItem(
-                    e.id,
-                    e.category,
-                    title,
-                    e.amount,
-                    e.wallet,
-                    dateText,
-                    isExpense
-            ));
+    /**
+     * Totals for the whole filter, not just the pages loaded so far
+     */
+    private void showFilterTotals(TransactionColumnStore.Columns columns) {
+        int categoryId = TransactionColumnStore.Columns.ANY;
+        if (filterCategory != null) {
+            categoryId = columns.categoryId(filterCategory);
+            if (categoryId == TransactionColumnStore.Columns.NONE) {
+                binding.tvFilterTotals.setText("No transactions");
+                return;
+            }
         }
-        adapter.updateItems(items);
+        long expense = columns.sum(TransactionEntity.TYPE_EXPENSE, categoryId, filterStartMillis, filterEndMillis);
+        long income = columns.sum(TransactionEntity.TYPE_INCOME, categoryId, filterStartMillis, filterEndMillis);
+        int count = columns.count(TransactionColumnStore.Columns.ANY, categoryId, filterStartMillis, filterEndMillis);
+        binding.tvFilterTotals.setText(String.format(Locale.getDefault(),
+                "%d transactions · Expense ৳%.2f · Income ৳%.2f",
+                count, Money.toMajor(expense), Money.toMajor(income)));
     }
 
-    private void showEditDeleteDialog(long transactionId, int position) {
-        TransactionEntity transaction = transactionMap.get(transactionId);
-        if (transaction == null) {
-            Toast.makeText(requireContext(), "Transaction not found", Toast.LENGTH_SHORT).show();
-            return;
+    private void bindSnapshot(TransactionPager.Snapshot snapshot) {
+        if (snapshot.generation != boundGeneration) {
+            // Reloaded from the top
+            boundGeneration = snapshot.generation;
+            adapter.updateItems(snapshot.items);
+        } else {
+            // Same generation only ever appends; bind just the new page
+            adapter.appendItems(snapshot.items.subList(adapter.getItemCount(), snapshot.items.size()));
         }
+    }
 
+    private void showEditDeleteDialog(long transactionId, int position) {
         String[] options = {"Edit", "Delete"};
 
         new AlertDialog.Builder(requireContext())
@@ -248,34 +295,36 @@ public class TransactionsFragment extends Fragment {
                 .setItems(options, (dialog, which) -> {
                     if (which == 0) {
                         // Edit
-                        editTransaction(transactionId);
+                        editTransaction(transactionId, position);
                     } else {
                         // Delete
-                        confirmDelete(transaction);
+                        confirmDelete(transactionId);
                     }
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
     }
 
-    private void editTransaction(long transactionId) {
+    private void editTransaction(long transactionId, int position) {
+        // The row on screen has everything the edit screen shows
+        if (position >= 0 && position < adapter.getItemCount()
+                && adapter.getItem(position).id == transactionId) {
+            viewModel.rememberForEdit(adapter.getItem(position));
+        }
         Intent intent = new Intent(requireContext(), AddTransactionActivity.class);
         intent.putExtra("EDIT_MODE", true);
         intent.putExtra("TRANSACTION_ID", transactionId);
         startActivity(intent);
     }
 
-    private void confirmDelete(TransactionEntity transaction) {
+    private void confirmDelete(long transactionId) {
         new AlertDialog.Builder(requireContext())
                 .setTitle("Delete Transaction")
                 .setMessage("Are you sure you want to delete this transaction?")
                 .setPositiveButton("Delete", (dialog, which) -> {
-                    executor.execute(() -> {
-                        viewModel.delete(transaction);
-                        requireActivity().runOnUiThread(() ->
-                            Toast.makeText(requireContext(), "Transaction deleted", Toast.LENGTH_SHORT).show()
-                        );
-                    });
+                    // Queued on the shared writer; the list updates from the change feed
+                    viewModel.deleteById(transactionId);
+                    Toast.makeText(requireContext(), "Transaction deleted", Toast.LENGTH_SHORT).show();
                 })
                 .setNegativeButton("Cancel", null)
                 .show();
@@ -284,6 +333,7 @@ public class TransactionsFragment extends Fragment {
     @Override
     public void onDestroyView() {
         super.onDestroyView();
+        searchHandler.removeCallbacks(searchRunnable);
         binding = null;
     }
 }
@@ -0,0 +1,141 @@
+package com.example.expensemanager.ui.main;
+
+import android.os.Bundle;
+import android.widget.TextView;
+
+import androidx.annotation.Nullable;
+import androidx.appcompat.app.AppCompatActivity;
+import androidx.core.content.ContextCompat;
+import androidx.lifecycle.ViewModelProvider;
+
+import com.example.expensemanager.R;
+import com.example.expensemanager.data.TransactionColumnStore;
+import com.example.expensemanager.data.TrendSeries;
+import com.example.expensemanager.utils.DateKeys;
+import com.example.expensemanager.utils.Money;
+import com.github.mikephil.charting.charts.LineChart;
+import com.github.mikephil.charting.components.XAxis;
+import com.github.mikephil.charting.data.Entry;
+import com.github.mikephil.charting.data.LineData;
+import com.github.mikephil.charting.data.LineDataSet;
+import com.github.mikephil.charting.formatter.IndexAxisValueFormatter;
+import com.google.android.material.button.MaterialButtonToggleGroup;
+
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Calendar;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Income against expense over the last 30 days, 26 weeks or 12 months. Series come
+ * from the column store's trend buckets, so switching resolution reads no rows.
+ */
+public class TrendActivity extends AppCompatActivity {
+
+    private static final int DAYS_SHOWN = 30;
+    private static final int WEEKS_SHOWN = 26;
+    private static final int MONTHS_SHOWN = 12;
+
+    private LineChart trendChart;
+    private TextView tvTrendSummary;
+    private TransactionViewModel viewModel;
+    private TrendSeries.Resolution resolution = TrendSeries.Resolution.MONTH;
+
+    @Override
+    protected void onCreate(@Nullable Bundle savedInstanceState) {
+        super.onCreate(savedInstanceState);
+        setContentView(R.layout.activity_trend);
+
+        trendChart = findViewById(R.id.trendChart);
+        tvTrendSummary = findViewById(R.id.tvTrendSummary);
+
+        MaterialButtonToggleGroup toggleResolution = findViewById(R.id.toggleResolution);
+        toggleResolution.addOnButtonCheckedListener((group, checkedId, isChecked) -> {
+            if (!isChecked) return;
+            if (checkedId == R.id.btnDaily) {
+                resolution = TrendSeries.Resolution.DAY;
+            } else if (checkedId == R.id.btnWeekly) {
+                resolution = TrendSeries.Resolution.WEEK;
+            } else {
+                resolution = TrendSeries.Resolution.MONTH;
+            }
+            showTrend();
+        });
+
+        viewModel = new ViewModelProvider(this).get(TransactionViewModel.class);
+        // Redraw once loaded and after every change
+        viewModel.getColumns().observe(this, columns -> showTrend());
+    }
+
+    private void showTrend() {
+        TransactionColumnStore columnStore = viewModel.getColumnStore();
+        if (columnStore == null) return;
+
+        // Whole buckets ending with the current one
+        Calendar cal = Calendar.getInstance();
+        int today = DateKeys.dayKey(cal.getTimeInMillis());
+        switch (resolution) {
+            case DAY:
+                cal.add(Calendar.DAY_OF_MONTH, -(DAYS_SHOWN - 1));
+                break;
+            case WEEK:
+                cal.add(Calendar.DAY_OF_MONTH, -((cal.get(Calendar.DAY_OF_WEEK) + 5) % 7));  // back to Monday
+                cal.add(Calendar.WEEK_OF_YEAR, -(WEEKS_SHOWN - 1));
+                break;
+            default:
+                cal.set(Calendar.DAY_OF_MONTH, 1);
+                cal.add(Calendar.MONTH, -(MONTHS_SHOWN - 1));
+                break;
+        }
+        TrendSeries series = columnStore.trend(resolution, TransactionColumnStore.Columns.ANY,
+                TransactionColumnStore.Columns.ANY, DateKeys.dayKey(cal.getTimeInMillis()), today);
+
+        List<Entry> incomeEntries = new ArrayList<>();
+        List<Entry> expenseEntries = new ArrayList<>();
+        List<String> labels = new ArrayList<>();
+        SimpleDateFormat labelFormat = new SimpleDateFormat(
+                resolution == TrendSeries.Resolution.MONTH ? "MMM yy" : "dd MMM", Locale.getDefault());
+        long totalIncome = 0;
+        long totalExpense = 0;
+        for (int i = 0; i < series.size(); i++) {
+            incomeEntries.add(new Entry(i, (float) Money.toMajor(series.incomeAt(i))));
+            expenseEntries.add(new Entry(i, (float) Money.toMajor(series.expenseAt(i))));
+            labels.add(labelFormat.format(toDate(series.startDayKey(i)).getTime()));
+            totalIncome += series.incomeAt(i);
+            totalExpense += series.expenseAt(i);
+        }
+
+        LineDataSet incomeSet = lineDataSet(incomeEntries, "Income", ContextCompat.getColor(this, R.color.incomeColor));
+        LineDataSet expenseSet = lineDataSet(expenseEntries, "Expense", ContextCompat.getColor(this, R.color.expenseColor));
+        trendChart.setData(new LineData(incomeSet, expenseSet));
+        trendChart.getDescription().setEnabled(false);
+        trendChart.getAxisRight().setEnabled(false);
+        XAxis xAxis = trendChart.getXAxis();
+        xAxis.setPosition(XAxis.XAxisPosition.BOTTOM);
+        xAxis.setGranularity(1f);
+        xAxis.setValueFormatter(new IndexAxisValueFormatter(labels));
+        trendChart.invalidate();
+
+        tvTrendSummary.setText(String.format(Locale.getDefault(),
+                "Income: ৳%.2f\nExpense: ৳%.2f\nNet: ৳%.2f",
+                Money.toMajor(totalIncome), Money.toMajor(totalExpense), Money.toMajor(totalIncome - totalExpense)));
+    }
+
+    private static LineDataSet lineDataSet(List<Entry> entries, String label, int color) {
+        LineDataSet dataSet = new LineDataSet(entries, label);
+        dataSet.setColor(color);
+        dataSet.setCircleColor(color);
+        dataSet.setLineWidth(2f);
+        dataSet.setCircleRadius(3f);
+        dataSet.setDrawValues(false);
+        return dataSet;
+    }
+
+    private static Calendar toDate(int dayKey) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(dayKey / 10000, dayKey / 100 % 100 - 1, dayKey % 100);
+        return cal;
+    }
+}
@@ -0,0 +1,52 @@
+package com.example.expensemanager.utils;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+
+import com.google.firebase.auth.FirebaseAuth;
+import com.google.firebase.auth.FirebaseUser;
+
+/**
+ * Utility class for managing the archive horizon: transactions older than this many
+ * whole months are moved to the archive table
+ */
+public class ArchivePreferences {
+
+    private static final String PREF_NAME = "ArchivePreferences";
+    private static final String KEY_HORIZON_PREFIX = "archive_horizon_months_";
+
+    /**
+     * Save the archive horizon for the current user
+     * @param context Application context
+     * @param months Months of history to keep in the hot table, or 0 to turn archiving off
+     */
+    public static void saveHorizonMonths(Context context, int months) {
+        String userId = getCurrentUserId();
+        if (userId == null) return;
+
+        SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        prefs.edit().putInt(KEY_HORIZON_PREFIX + userId, Math.max(0, months)).apply();
+    }
+
+    /**
+     * Get the archive horizon for the current user
+     * @param context Application context
+     * @return Months of history kept in the hot table, or 0 if archiving is off
+     */
+    public static int getHorizonMonths(Context context) {
+        String userId = getCurrentUserId();
+        if (userId == null) return 0;
+
+        SharedPreferences prefs = context.getSharedPreferences(PREF_NAME, Context.MODE_PRIVATE);
+        return prefs.getInt(KEY_HORIZON_PREFIX + userId, 0);
+    }
+
+    /**
+     * Get current user ID from Firebase Auth
+     * @return User ID or null
+     */
+    private static String getCurrentUserId() {
+        FirebaseUser user = FirebaseAuth.getInstance().getCurrentUser();
+        return user != null ? user.getUid() : null;
+    }
+}
@@ -0,0 +1,154 @@
+package com.example.expensemanager.utils;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+/**
+ * Table-driven replacement for DateKeys' per-call Calendar work. Local midnights are
+ * computed once for a span of years around today, and a timestamp is mapped to its
+ * day by index instead of by a new Calendar. DST days are 23 or 25 hours long, so the
+ * table holds each real midnight rather than assuming 24-hour days. Timestamps outside
+ * the span fall back to a Calendar.
+ * <p>
+ * A table belongs to one time zone. current() returns one for the device zone and
+ * builds a new one when the zone changes, so callers should call it once per batch
+ * rather than keep it.
+ */
+public final class DateBuckets {
+
+    static final int YEARS_BACK = 20;
+    static final int YEARS_AHEAD = 10;
+    private static final long DAY_MILLIS = 24L * 60 * 60 * 1000;
+
+    private static volatile DateBuckets current;
+
+    private final TimeZone zone;
+    private final int firstYear;
+    private final int endYear;         // exclusive
+    private final long[] dayStarts;    // local midnight of each day, plus the end of the span
+    private final int[] dayKeys;       // yyyyMMdd, parallel to dayStarts
+    private final long[] monthStarts;  // local midnight on the 1st, plus the end of the span
+
+    DateBuckets(TimeZone zone, int firstYear, int endYear) {
+        this.zone = (TimeZone) zone.clone();
+        this.firstYear = firstYear;
+        this.endYear = endYear;
+
+        Calendar cal = Calendar.getInstance(this.zone);
+        int months = (endYear - firstYear) * 12;
+        monthStarts = new long[months + 1];
+        int days = 0;
+        for (int i = 0; i < months; i++) {
+            cal.clear();
+            cal.set(firstYear + i / 12, i % 12, 1);
+            monthStarts[i] = cal.getTimeInMillis();
+            days += cal.getActualMaximum(Calendar.DAY_OF_MONTH);
+        }
+        cal.clear();
+        cal.set(endYear, Calendar.JANUARY, 1);
+        monthStarts[months] = cal.getTimeInMillis();
+
+        dayStarts = new long[days + 1];
+        dayKeys = new int[days + 1];
+        int index = 0;
+        for (int i = 0; i < months; i++) {
+            int year = firstYear + i / 12;
+            int month = i % 12;
+            cal.clear();
+            cal.set(year, month, 1);
+            int length = cal.getActualMaximum(Calendar.DAY_OF_MONTH);
+            for (int day = 1; day <= length; day++) {
+                // Set each day explicitly, as DateKeys does; where midnight is skipped
+                // this lands on the first instant that exists
+                cal.clear();
+                cal.set(year, month, day);
+                dayStarts[index] = cal.getTimeInMillis();
+                dayKeys[index] = year * 10000 + (month + 1) * 100 + day;
+                index++;
+            }
+        }
+        dayStarts[days] = monthStarts[months];
+        dayKeys[days] = endYear * 10000 + 101;
+    }
+
+    /**
+     * Tables for the device time zone, rebuilt if the zone has changed since the last call
+     */
+    public static DateBuckets current() {
+        TimeZone zone = TimeZone.getDefault();
+        DateBuckets buckets = current;
+        if (buckets == null || !buckets.zone.getID().equals(zone.getID()) || !buckets.zone.hasSameRules(zone)) {
+            Calendar cal = Calendar.getInstance(zone);
+            int year = cal.get(Calendar.YEAR);
+            buckets = new DateBuckets(zone, year - YEARS_BACK, year + YEARS_AHEAD);
+            current = buckets;
+        }
+        return buckets;
+    }
+
+    /**
+     * Same result as DateKeys.dayKey in this table's zone
+     * @return Day key, e.g. 20241018
+     */
+    public int dayKey(long millis) {
+        int index = dayIndex(millis);
+        return index >= 0 ? dayKeys[index] : fallbackDayKey(millis);
+    }
+
+    /**
+     * Same result as DateKeys.yearMonth in this table's zone
+     * @return Year-month key, e.g. 202410
+     */
+    public int yearMonth(long millis) {
+        int index = dayIndex(millis);
+        return index >= 0 ? dayKeys[index] / 100 : fallbackDayKey(millis) / 100;
+    }
+
+    /**
+     * Same result as DateKeys.monthStart in this table's zone
+     * @param month Calendar.MONTH value (0-11)
+     */
+    public long monthStart(int year, int month) {
+        if (year < firstYear || year >= endYear) {
+            Calendar cal = Calendar.getInstance(zone);
+            cal.clear();
+            cal.set(year, month, 1);
+            return cal.getTimeInMillis();
+        }
+        return monthStarts[(year - firstYear) * 12 + month];
+    }
+
+    /**
+     * Same result as DateKeys.monthEnd in this table's zone
+     * @param month Calendar.MONTH value (0-11)
+     */
+    public long monthEnd(int year, int month) {
+        return month == Calendar.DECEMBER ? monthStart(year + 1, Calendar.JANUARY) : monthStart(year, month + 1);
+    }
+
+    /**
+     * Row of the day containing millis, or -1 outside the span. Days are close to 24
+     * hours, so dividing gives the right row or one next to it; the loops correct for
+     * DST and historical offset changes.
+     */
+    private int dayIndex(long millis) {
+        int last = dayStarts.length - 1;
+        if (millis < dayStarts[0] || millis >= dayStarts[last]) return -1;
+        int index = (int) Math.min((millis - dayStarts[0]) / DAY_MILLIS, last - 1);
+        while (dayStarts[index] > millis) {
+            index--;
+        }
+        while (dayStarts[index + 1] <= millis) {
+            index++;
+        }
+        return index;
+    }
+
+    private int fallbackDayKey(long millis) {
+        Calendar cal = Calendar.getInstance(zone);
+        cal.setTimeInMillis(millis);
+        return cal.get(Calendar.YEAR) * 10000
+                + (cal.get(Calendar.MONTH) + 1) * 100
+                + cal.get(Calendar.DAY_OF_MONTH);
+    }
+}
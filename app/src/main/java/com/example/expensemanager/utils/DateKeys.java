@@ -0,0 +1,122 @@
+package com.example.expensemanager.utils;
+
+import java.util.Calendar;
+
+/**
+ * Utility class for converting timestamps to calendar keys and month boundaries
+ * in the device time zone
+ */
+public class DateKeys {
+
+    /**
+     * Get the yyyyMM key for a timestamp
+     * @param millis Epoch milliseconds
+     * @return Year-month key, e.g. 202410
+     */
+    public static int yearMonth(long millis) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(millis);
+        return cal.get(Calendar.YEAR) * 100 + cal.get(Calendar.MONTH) + 1;
+    }
+
+    /**
+     * Get the yyyyMMdd key for a timestamp
+     * @param millis Epoch milliseconds
+     * @return Day key, e.g. 20241018
+     */
+    public static int dayKey(long millis) {
+        Calendar cal = Calendar.getInstance();
+        cal.setTimeInMillis(millis);
+        return cal.get(Calendar.YEAR) * 10000
+                + (cal.get(Calendar.MONTH) + 1) * 100
+                + cal.get(Calendar.DAY_OF_MONTH);
+    }
+
+    /**
+     * Format a day key as yyyy-MM-dd straight from its digits, without a Calendar
+     * or SimpleDateFormat
+     * @param dayKey Day key, e.g. 20241018
+     * @return e.g. "2024-10-18"
+     */
+    public static String formatDayKey(int dayKey) {
+        int year = dayKey / 10000;
+        int month = dayKey / 100 % 100;
+        int day = dayKey % 100;
+        char[] text = new char[10];
+        text[0] = (char) ('0' + year / 1000 % 10);
+        text[1] = (char) ('0' + year / 100 % 10);
+        text[2] = (char) ('0' + year / 10 % 10);
+        text[3] = (char) ('0' + year % 10);
+        text[4] = '-';
+        text[5] = (char) ('0' + month / 10);
+        text[6] = (char) ('0' + month % 10);
+        text[7] = '-';
+        text[8] = (char) ('0' + day / 10);
+        text[9] = (char) ('0' + day % 10);
+        return new String(text);
+    }
+
+    /**
+     * Days since 1970-01-01 for a day key, by calendar arithmetic alone. Consecutive
+     * days give consecutive numbers whatever the time zone did in between.
+     * @param dayKey Day key, e.g. 20241018
+     * @return Epoch day, e.g. 20014
+     */
+    public static int epochDay(int dayKey) {
+        int year = dayKey / 10000;
+        int month = dayKey / 100 % 100;
+        int day = dayKey % 100;
+        // Count from March so the leap day falls at the end of the year
+        if (month <= 2) year--;
+        int era = Math.floorDiv(year, 400);
+        int yearOfEra = year - era * 400;
+        int dayOfYear = (153 * (month + (month > 2 ? -3 : 9)) + 2) / 5 + day - 1;
+        int dayOfEra = yearOfEra * 365 + yearOfEra / 4 - yearOfEra / 100 + dayOfYear;
+        return era * 146097 + dayOfEra - 719468;
+    }
+
+    /**
+     * Day key for a number of days since 1970-01-01; the inverse of epochDay
+     * @param epochDay Epoch day, e.g. 20014
+     * @return Day key, e.g. 20241018
+     */
+    public static int fromEpochDay(int epochDay) {
+        int shifted = epochDay + 719468;
+        int era = Math.floorDiv(shifted, 146097);
+        int dayOfEra = shifted - era * 146097;
+        int yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+        int dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+        int monthIndex = (5 * dayOfYear + 2) / 153;  // from March
+        int day = dayOfYear - (153 * monthIndex + 2) / 5 + 1;
+        int month = monthIndex < 10 ? monthIndex + 3 : monthIndex - 9;
+        int year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+        return year * 10000 + month * 100 + day;
+    }
+
+    /**
+     * Get the first millisecond of a month
+     * @param year Calendar year
+     * @param month Calendar.MONTH value (0-11)
+     * @return Epoch milliseconds at local midnight on the 1st
+     */
+    public static long monthStart(int year, int month) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, 1);
+        return cal.getTimeInMillis();
+    }
+
+    /**
+     * Get the first millisecond after a month (exclusive upper bound)
+     * @param year Calendar year
+     * @param month Calendar.MONTH value (0-11)
+     * @return Epoch milliseconds at local midnight on the 1st of the next month
+     */
+    public static long monthEnd(int year, int month) {
+        Calendar cal = Calendar.getInstance();
+        cal.clear();
+        cal.set(year, month, 1);
+        cal.add(Calendar.MONTH, 1);
+        return cal.getTimeInMillis();
+    }
+}
@@ -0,0 +1,96 @@
+package com.example.expensemanager.utils;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * An amount of taka held as a whole number of paisa, so sums stay exact.
+ * Transactions are stored and aggregated in these minor units; doubles are
+ * only produced at the edges, for display and charts.
+ */
+public final class Money implements Comparable<Money> {
+
+    public static final int MINOR_PER_MAJOR = 100;
+    private static final int SCALE = 2;
+
+    public static final Money ZERO = new Money(0);
+
+    private final long minor;
+
+    private Money(long minor) {
+        this.minor = minor;
+    }
+
+    public static Money ofMinor(long minor) {
+        return new Money(minor);
+    }
+
+    /**
+     * Parse user input such as "1250" or "12.5", rounding to the nearest paisa
+     * @throws NumberFormatException if the text is not a number or is out of range
+     */
+    public static Money parse(String text) {
+        try {
+            return new Money(new BigDecimal(text.trim())
+                    .setScale(SCALE, RoundingMode.HALF_UP)
+                    .unscaledValue()
+                    .longValueExact());
+        } catch (ArithmeticException e) {
+            throw new NumberFormatException("Amount out of range: " + text);
+        }
+    }
+
+    /**
+     * Paisa for a taka amount held as a double, e.g. from an old backup
+     */
+    public static long toMinor(double major) {
+        return Math.round(major * MINOR_PER_MAJOR);
+    }
+
+    public static double toMajor(long minor) {
+        return minor / (double) MINOR_PER_MAJOR;
+    }
+
+    public long getMinor() {
+        return minor;
+    }
+
+    public double toMajor() {
+        return toMajor(minor);
+    }
+
+    public Money plus(Money other) {
+        return new Money(Math.addExact(minor, other.minor));
+    }
+
+    public Money minus(Money other) {
+        return new Money(Math.subtractExact(minor, other.minor));
+    }
+
+    public boolean isZero() {
+        return minor == 0;
+    }
+
+    @Override
+    public int compareTo(Money other) {
+        return Long.compare(minor, other.minor);
+    }
+
+    @Override
+    public boolean equals(Object o) {
+        return o instanceof Money && ((Money) o).minor == minor;
+    }
+
+    @Override
+    public int hashCode() {
+        return Long.hashCode(minor);
+    }
+
+    /**
+     * Plain decimal with two places, e.g. "1250.50", suitable for an input field
+     */
+    @Override
+    public String toString() {
+        return BigDecimal.valueOf(minor, SCALE).toPlainString();
+    }
+}
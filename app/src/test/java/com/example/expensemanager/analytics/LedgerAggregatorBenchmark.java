@@ -0,0 +1,76 @@
+package com.example.expensemanager.analytics;
+
+import com.example.expensemanager.data.TestColumns;
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.utils.DateKeys;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A full ledger summary over years of imported history, on a pool of 1, 2, 4 and 8
+ * workers. One worker takes the sequential path, so it is the baseline the others
+ * scale from; on a machine with fewer cores the larger pools stop improving.
+ * Run with the main method from the IDE or the unit test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LedgerAggregatorBenchmark {
+
+    private static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+
+    @Param({"100000", "500000"})
+    public int rows;
+
+    @Param({"1", "2", "4", "8"})
+    public int workers;
+
+    private Columns columns;
+    private ForkJoinPool pool;
+    private long now;
+    private int selectedYearMonth;
+
+    @Setup
+    public void setUp() {
+        now = System.currentTimeMillis();
+        selectedYearMonth = DateKeys.yearMonth(now);
+        columns = TestColumns.random(rows, 42, now - 5 * YEAR, now, 12);
+        pool = new ForkJoinPool(workers);
+    }
+
+    @TearDown
+    public void tearDown() {
+        pool.shutdown();
+    }
+
+    @Benchmark
+    public LedgerSummary summarize() {
+        return LedgerAggregator.summarize(columns, now, selectedYearMonth, 0, () -> false, pool);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(LedgerAggregatorBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.expensemanager.analytics;
+
+import com.example.expensemanager.data.TestColumns;
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.CategoryTotal;
+import com.example.expensemanager.utils.DateKeys;
+
+import org.junit.Test;
+
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.*;
+
+public class LedgerAggregatorTest {
+
+    private static final long YEAR = 365L * 24 * 60 * 60 * 1000;
+    private static final long NOW = System.currentTimeMillis();
+
+    private static void assertSameTotals(List<CategoryTotal> expected, List<CategoryTotal> actual) {
+        assertEquals(expected.size(), actual.size());
+        for (int i = 0; i < expected.size(); i++) {
+            assertEquals(expected.get(i).category, actual.get(i).category);
+            assertEquals(expected.get(i).total, actual.get(i).total);
+            assertEquals(expected.get(i).count, actual.get(i).count);
+        }
+    }
+
+    @Test
+    public void summarize_parallelMatchesSequential() {
+        Columns columns = TestColumns.random(LedgerAggregator.PARALLEL_THRESHOLD * 2, 24, NOW - 3 * YEAR, NOW, 12);
+        int selected = DateKeys.yearMonth(NOW - YEAR / 2);
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // One worker means the sequential path
+            LedgerSummary sequential = LedgerAggregator.summarize(columns, NOW, selected, 0, () -> false, single);
+            LedgerSummary parallel = LedgerAggregator.summarize(columns, NOW, selected, 0, () -> false, pool);
+            assertEquals(sequential.totalIncome, parallel.totalIncome);
+            assertEquals(sequential.totalExpense, parallel.totalExpense);
+            assertEquals(sequential.incomeCount, parallel.incomeCount);
+            assertEquals(sequential.expenseCount, parallel.expenseCount);
+            assertEquals(sequential.currentMonthIncome, parallel.currentMonthIncome);
+            assertEquals(sequential.previousMonthIncome, parallel.previousMonthIncome);
+            assertSameTotals(sequential.currentMonthByCategory, parallel.currentMonthByCategory);
+            assertSameTotals(sequential.previousMonthByCategory, parallel.previousMonthByCategory);
+            assertSameTotals(sequential.selectedMonthByCategory, parallel.selectedMonthByCategory);
+            assertSameTotals(sequential.yearToDateByCategory, parallel.yearToDateByCategory);
+            assertEquals(columns.size, parallel.transactionCount());
+        } finally {
+            single.shutdown();
+            pool.shutdown();
+        }
+    }
+
+    @Test
+    public void summarize_parallelStopsWhenCancelled() {
+        Columns columns = TestColumns.random(LedgerAggregator.PARALLEL_THRESHOLD * 2, 7, NOW - YEAR, NOW, 5);
+        AtomicInteger polls = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(4);
+        try {
+            // Let a few chunks start, then cancel
+            assertNull(LedgerAggregator.summarize(columns, NOW, 202401, 0, () -> polls.incrementAndGet() > 3, pool));
+        } finally {
+            pool.shutdown();
+        }
+    }
+}
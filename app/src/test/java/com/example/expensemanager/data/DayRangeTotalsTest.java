@@ -0,0 +1,76 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static com.example.expensemanager.data.TestColumns.entity;
+import static org.junit.Assert.*;
+
+public class DayRangeTotalsTest {
+
+    private static final int EXPENSE = TransactionEntity.TYPE_EXPENSE;
+    private static final int INCOME = TransactionEntity.TYPE_INCOME;
+
+    @Test
+    public void build_matchesPerDayTotals() {
+        // Timestamps double as epoch days here
+        Columns columns = Columns.EMPTY
+                .with(1, entity(100, 500, EXPENSE, 1))
+                .with(2, entity(100, 250, EXPENSE, 2))
+                .with(3, entity(103, 1000, INCOME, null))
+                .with(4, entity(110, 700, EXPENSE, 1));
+        int[] days = {100, 100, 103, 110};
+        DayRangeTotals totals = DayRangeTotals.build(columns, days, 105);
+
+        assertEquals(1450, totals.sum(EXPENSE, Columns.ANY, 100, 110));
+        assertEquals(750, totals.sum(EXPENSE, Columns.ANY, 100, 100));
+        assertEquals(700, totals.sum(EXPENSE, 1, 101, 200));
+        assertEquals(1000, totals.sum(INCOME, Columns.NONE, 0, 1000));
+        assertEquals(2450, totals.sum(Columns.ANY, Columns.ANY, Integer.MIN_VALUE, Integer.MAX_VALUE));
+        assertEquals(0, totals.sum(EXPENSE, 9, 100, 110));
+        assertEquals(0, totals.sum(EXPENSE, Columns.ANY, 110, 100));
+    }
+
+    @Test
+    public void add_updatesRangesAndRejectsDaysOutsideSpan() {
+        DayRangeTotals totals = new DayRangeTotals(1000, 64);
+        assertTrue(totals.add(1000, EXPENSE, 3, 400));
+        assertTrue(totals.add(1063, EXPENSE, 3, 100));
+        assertTrue(totals.add(1000, EXPENSE, 3, -150));
+        assertFalse(totals.add(1064, EXPENSE, 3, 999));
+        assertFalse(totals.add(999, INCOME, Columns.NONE, 999));
+
+        assertEquals(250, totals.sum(EXPENSE, 3, 1000, 1000));
+        assertEquals(350, totals.sum(EXPENSE, Columns.ANY, 0, 5000));
+        assertEquals(0, totals.sum(INCOME, Columns.ANY, 0, 5000));
+    }
+
+    @Test
+    public void sum_agreesWithScanOverRandomRanges() {
+        Random random = new Random(20);
+        int span = 500;
+        long[][] daily = new long[4][span];
+        DayRangeTotals totals = new DayRangeTotals(0, span);
+        for (int i = 0; i < 2000; i++) {
+            int day = random.nextInt(span);
+            int category = random.nextInt(4);
+            long amount = random.nextInt(10_000);
+            totals.add(day, EXPENSE, category, amount);
+            daily[category][day] += amount;
+        }
+        for (int i = 0; i < 200; i++) {
+            int from = random.nextInt(span);
+            int to = from + random.nextInt(span - from);
+            int category = random.nextInt(4);
+            long expected = 0;
+            for (int day = from; day <= to; day++) {
+                expected += daily[category][day];
+            }
+            assertEquals(expected, totals.sum(EXPENSE, category, from, to));
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateKeys;
+
+import org.junit.Test;
+
+import java.util.List;
+
+import static com.example.expensemanager.data.TestColumns.entity;
+import static org.junit.Assert.*;
+
+public class SpendAnomalyDetectorTest {
+
+    private static final int FIRST_DAY = DateKeys.epochDay(20240901);
+    // Only names category 1; the detector's own state carries the amounts
+    private static final Columns NAMES =
+            Columns.EMPTY.with(1, entity(0, 0, TransactionEntity.TYPE_EXPENSE, 1, "Food"));
+
+    private static SpendAnomalyDetector steadyMonth() {
+        SpendAnomalyDetector detector = new SpendAnomalyDetector();
+        for (int day = 0; day < 30; day++) {
+            // 400-600 a day
+            assertTrue(detector.add(FIRST_DAY + day, 1, 40_000 + (day % 5) * 5_000));
+        }
+        return detector;
+    }
+
+    @Test
+    public void add_flagsASpikeAgainstSteadySpending() {
+        SpendAnomalyDetector detector = steadyMonth();
+        assertTrue(detector.since(FIRST_DAY, NAMES).isEmpty());
+
+        detector.add(FIRST_DAY + 30, 1, 30_000);
+        detector.add(FIRST_DAY + 30, 1, 250_000);  // same day, so the total counts
+        List<SpendAnomaly> anomalies = detector.since(FIRST_DAY + 30, NAMES);
+        assertEquals(1, anomalies.size());
+        SpendAnomaly anomaly = anomalies.get(0);
+        assertEquals("Food", anomaly.category);
+        assertEquals(DateKeys.fromEpochDay(FIRST_DAY + 30), anomaly.dayKey);
+        assertEquals(280_000, anomaly.amount);
+        assertTrue(anomaly.expected > 40_000 && anomaly.expected < 60_000);
+        assertTrue(anomaly.deviations >= SpendAnomalyDetector.THRESHOLD);
+
+        // Still reported after ordinary days follow, until the window moves past it
+        detector.add(FIRST_DAY + 31, 1, 50_000);
+        assertEquals(1, detector.since(FIRST_DAY + 30, NAMES).size());
+        assertTrue(detector.since(FIRST_DAY + 31, NAMES).isEmpty());
+    }
+
+    @Test
+    public void add_waitsForWarmUpAndRefusesEarlierDays() {
+        SpendAnomalyDetector detector = new SpendAnomalyDetector();
+        for (int day = 0; day < SpendAnomalyDetector.WARM_UP_DAYS - 1; day++) {
+            detector.add(FIRST_DAY + day, 2, 10_000);
+        }
+        // Only 13 days are behind the last one
+        detector.add(FIRST_DAY + SpendAnomalyDetector.WARM_UP_DAYS - 1, 2, 1_000_000);
+        assertTrue(detector.since(FIRST_DAY, Columns.EMPTY).isEmpty());
+        assertFalse(detector.add(FIRST_DAY + 5, 2, 10_000));
+    }
+
+    @Test
+    public void build_replaysExpensesOnly() {
+        Columns columns = Columns.EMPTY;
+        int[] days = new int[40];
+        for (int i = 0; i < 40; i++) {
+            TransactionEntity entity = new TransactionEntity();
+            entity.dateTimestamp = i;
+            entity.amountMinor = i == 39 ? 500_000 : 50_000;
+            entity.typeCode = i % 2 == 0 || i == 39 ? TransactionEntity.TYPE_EXPENSE : TransactionEntity.TYPE_INCOME;
+            entity.categoryId = 1;
+            entity.category = "Food";
+            columns = columns.with(i + 1, entity);
+            days[i] = FIRST_DAY + i;
+        }
+        List<SpendAnomaly> anomalies = SpendAnomalyDetector.build(columns, days).since(FIRST_DAY, columns);
+        assertEquals(1, anomalies.size());
+        assertEquals(DateKeys.fromEpochDay(FIRST_DAY + 39), anomalies.get(0).dayKey);
+    }
+}
@@ -0,0 +1,70 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateKeys;
+
+import org.junit.Test;
+
+import static com.example.expensemanager.data.TestColumns.entity;
+import static org.junit.Assert.*;
+
+public class SpendForecasterTest {
+
+    private static final int SEPTEMBER = DateKeys.epochDay(20240901);
+    private static final int OCTOBER = DateKeys.epochDay(20241001);
+    private static final int NOVEMBER = DateKeys.epochDay(20241101);
+
+    @Test
+    public void forecast_projectsSteadySpendingToMonthEnd() {
+        SpendForecaster forecaster = new SpendForecaster();
+        for (int day = SEPTEMBER; day < OCTOBER + 10; day++) {
+            assertTrue(forecaster.add(day, 1, 10_000));
+        }
+        // Ten days of October at 100 a day, 31 days in all
+        SpendForecast forecast = forecaster.forecast(OCTOBER + 9, OCTOBER, NOVEMBER, 100_000, 0, Columns.EMPTY);
+        assertEquals(100_000, forecast.spentSoFar);
+        assertEquals(310_000, forecast.projectedTotal, 1_000);
+        assertFalse(forecast.willOvershoot());
+    }
+
+    @Test
+    public void forecast_findsTheDayTheBudgetRunsOut() {
+        SpendForecaster forecaster = new SpendForecaster();
+        for (int day = SEPTEMBER; day < OCTOBER + 10; day++) {
+            forecaster.add(day, 1, 10_000);
+        }
+        // 100 a day from 1,000 on the 10th passes 2,000 during the 21st
+        SpendForecast forecast = forecaster.forecast(OCTOBER + 9, OCTOBER, NOVEMBER, 100_000, 200_000, Columns.EMPTY);
+        assertTrue(forecast.willOvershoot());
+        assertEquals(20241021, forecast.overshootDayKey);
+
+        forecast = forecaster.forecast(OCTOBER + 9, OCTOBER, NOVEMBER, 250_000, 200_000, Columns.EMPTY);
+        assertEquals(20241010, forecast.overshootDayKey);
+    }
+
+    @Test
+    public void forecast_weightsWeekdaysByTheirUsualShare() {
+        SpendForecaster forecaster = new SpendForecaster();
+        // Eight weeks of spending on Saturdays only
+        for (int day = SEPTEMBER - 56; day < OCTOBER; day++) {
+            if (SpendForecaster.weekday(day) == 5) {
+                forecaster.add(day, 2, 70_000);
+            }
+        }
+        // From Tuesday 1 October, Saturdays 5, 12, 19 and 26 remain
+        SpendForecast forecast = forecaster.forecast(OCTOBER, OCTOBER, NOVEMBER, 0, 0,
+                Columns.EMPTY.with(1, entity(0, 0, TransactionEntity.TYPE_EXPENSE, 2, "Rent")));
+        assertEquals("Rent", forecast.topCategory);
+        double perSaturday = forecast.projectedTotal / 4.0;
+        assertTrue(perSaturday > 40_000 && perSaturday < 80_000);
+    }
+
+    @Test
+    public void add_refusesEarlierDays() {
+        SpendForecaster forecaster = new SpendForecaster();
+        assertTrue(forecaster.add(OCTOBER, 1, 100));
+        assertTrue(forecaster.add(OCTOBER, 3, 100));
+        assertFalse(forecaster.add(OCTOBER - 1, 4, 100));
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Rows and Columns for the column store tests and benchmarks. Single rows set only
+ * the fields Columns reads; large Columns are built in one go rather than a row at a
+ * time through Columns.with().
+ */
+public final class TestColumns {
+
+    private TestColumns() {
+    }
+
+    /**
+     * A committed row as the column store sees it
+     * @param categoryId Category id, or null for none
+     * @param category Name of the category, or null
+     */
+    public static TransactionEntity entity(long timestamp, long amountMinor, int typeCode, Integer categoryId,
+                                           String category) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.dateTimestamp = timestamp;
+        entity.amountMinor = amountMinor;
+        entity.typeCode = typeCode;
+        entity.categoryId = categoryId;
+        entity.category = category;
+        return entity;
+    }
+
+    /**
+     * As above, with the category named after its id
+     */
+    public static TransactionEntity entity(long timestamp, long amountMinor, int typeCode, Integer categoryId) {
+        return entity(timestamp, amountMinor, typeCode, categoryId,
+                categoryId != null ? "Category " + categoryId : null);
+    }
+
+    /**
+     * Random rows spread evenly over a time range, about one in five income
+     * @param categories Expense categories, ids 1 to categories; a few rows get none
+     */
+    public static Columns random(int rows, long seed, long startMillis, long endMillis, int categories) {
+        Random random = new Random(seed);
+        long[] timestamps = new long[rows];
+        for (int i = 0; i < rows; i++) {
+            timestamps[i] = startMillis + (long) (random.nextDouble() * (endMillis - startMillis));
+        }
+        Arrays.sort(timestamps);
+
+        long[] ids = new long[rows];
+        long[] amounts = new long[rows];
+        int[] types = new int[rows];
+        int[] categoryIds = new int[rows];
+        int[] wallets = new int[rows];
+        for (int i = 0; i < rows; i++) {
+            ids[i] = i + 1;
+            amounts[i] = 100 + random.nextInt(500_000);
+            types[i] = random.nextInt(5) == 0 ? TransactionEntity.TYPE_INCOME : TransactionEntity.TYPE_EXPENSE;
+            categoryIds[i] = types[i] == TransactionEntity.TYPE_EXPENSE ? random.nextInt(categories + 1) : Columns.NONE;
+            wallets[i] = 1 + random.nextInt(4);
+        }
+        String[] categoryNames = new String[categories + 1];
+        for (int id = 1; id <= categories; id++) {
+            categoryNames[id] = "Category " + id;
+        }
+        String[] walletNames = {null, "Cash", "bKash", "Nagad", "Bank"};
+        return new Columns(rows, ids, timestamps, amounts, types, categoryIds, wallets, categoryNames, walletNames);
+    }
+}
@@ -0,0 +1,59 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TransactionCacheTest {
+
+    private static TransactionEntity entity(long id, long amountMinor) {
+        TransactionEntity entity = new TransactionEntity();
+        entity.id = id;
+        entity.userId = "user-a";
+        entity.amountMinor = amountMinor;
+        return entity;
+    }
+
+    @Test
+    public void get_returnsCopies() {
+        TransactionCache cache = TransactionCache.getInstance();
+        cache.put(entity(1001, 500));
+
+        TransactionEntity hit = cache.get(1001);
+        hit.amountMinor = 1;
+        assertEquals(500, cache.get(1001).amountMinor);
+    }
+
+    @Test
+    public void put_evictsLeastRecentlyUsed() {
+        TransactionCache cache = TransactionCache.getInstance();
+        cache.put(entity(2000, 1));
+        for (long id = 2001; id < 2001 + TransactionCache.MAX_ENTRIES; id++) {
+            if (id == 2010) {
+                cache.get(2000); // touching it keeps it
+            }
+            cache.put(entity(id, 1));
+        }
+        assertNotNull(cache.get(2000));
+        assertNull(cache.get(2001));
+    }
+
+    @Test
+    public void committedChanges_keepEntriesCurrent() {
+        TransactionCache cache = TransactionCache.getInstance();
+        TransactionChangeFeed feed = TransactionChangeFeed.getInstance();
+        cache.put(entity(3001, 100));
+
+        // A pending update may still fail, so the cached copy stays
+        feed.publish(TransactionChange.Kind.UPDATED, true, feed.nextToken(), "user-a", 3001, null, entity(3001, 200));
+        assertEquals(100, cache.get(3001).amountMinor);
+
+        feed.publish(TransactionChange.Kind.UPDATED, "user-a", 3001, entity(3001, 100), entity(3001, 200));
+        assertEquals(200, cache.get(3001).amountMinor);
+
+        feed.publish(TransactionChange.Kind.DELETED, "user-a", 3001, entity(3001, 200), null);
+        assertNull(cache.get(3001));
+    }
+}
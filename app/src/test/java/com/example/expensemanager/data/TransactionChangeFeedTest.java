@@ -0,0 +1,100 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+public class TransactionChangeFeedTest {
+
+    @Test
+    public void publish_numbersChangesAndDeliversDeltas() {
+        TransactionChangeFeed feed = TransactionChangeFeed.getInstance();
+        List<TransactionChange> seen = new ArrayList<>();
+        TransactionRepository.OnTransactionChangeListener listener = seen::add;
+        feed.addListener(listener);
+        try {
+            long start = feed.getVersion();
+            TransactionEntity before = new TransactionEntity();
+            before.amountMinor = 100;
+            TransactionEntity after = new TransactionEntity();
+            after.amountMinor = 250;
+
+            feed.publish(TransactionChange.Kind.UPDATED, "user-a", 7, before, after);
+            feed.publish(TransactionChange.Kind.DELETED, "user-a", 7, after, null);
+
+            assertEquals(2, seen.size());
+            assertEquals(start + 1, seen.get(0).version);
+            assertEquals(start + 2, seen.get(1).version);
+            assertEquals(start + 2, feed.getVersion());
+            assertEquals(150, seen.get(0).after.amountMinor - seen.get(0).before.amountMinor);
+            assertNull(seen.get(1).after);
+        } finally {
+            feed.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void removedListener_stopsReceiving() {
+        TransactionChangeFeed feed = TransactionChangeFeed.getInstance();
+        List<TransactionChange> seen = new ArrayList<>();
+        TransactionRepository.OnTransactionChangeListener listener = seen::add;
+        feed.addListener(listener);
+        feed.removeListener(listener);
+
+        feed.publish(TransactionChange.Kind.RELOAD, "user-a", 0, null, null);
+        assertTrue(seen.isEmpty());
+    }
+
+    @Test
+    public void pendingChange_andItsOutcome_shareAToken() {
+        TransactionChangeFeed feed = TransactionChangeFeed.getInstance();
+        List<TransactionChange> seen = new ArrayList<>();
+        TransactionRepository.OnTransactionChangeListener listener = seen::add;
+        feed.addListener(listener);
+        try {
+            long token = feed.nextToken();
+            TransactionEntity entity = new TransactionEntity();
+            feed.publish(TransactionChange.Kind.INSERTED, true, token, "user-a", -token, null, entity);
+            feed.publish(TransactionChange.Kind.REVERTED, false, token, "user-a", 0, null, null);
+
+            assertTrue(seen.get(0).pending);
+            assertTrue(seen.get(0).id < 0);
+            assertFalse(seen.get(1).pending);
+            assertEquals(seen.get(0).token, seen.get(1).token);
+            assertNotEquals(token, feed.nextToken());
+        } finally {
+            feed.removeListener(listener);
+        }
+    }
+
+    @Test
+    public void publish_keepsItsOwnCopyOfTheRow() {
+        TransactionChangeFeed feed = TransactionChangeFeed.getInstance();
+        List<TransactionChange> seen = new ArrayList<>();
+        TransactionRepository.OnTransactionChangeListener listener = seen::add;
+        feed.addListener(listener);
+        try {
+            long token = feed.nextToken();
+            TransactionEntity entity = new TransactionEntity();
+            entity.amountMinor = 500;
+            feed.publish(TransactionChange.Kind.INSERTED, true, token, "user-a", -token, null, entity);
+
+            // As the writer thread does once the insert commits
+            entity.id = 42;
+            entity.dayKey = 20241018;
+
+            TransactionChange pending = seen.get(0);
+            assertNotSame(entity, pending.after);
+            assertEquals(0, pending.after.id);
+            assertEquals(0, pending.after.dayKey);
+            assertEquals(500, pending.after.amountMinor);
+        } finally {
+            feed.removeListener(listener);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.local.ArchiveDao;
+import com.example.expensemanager.data.local.TransactionEntity;
+
+import org.junit.Test;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static com.example.expensemanager.data.TestColumns.entity;
+import static org.junit.Assert.*;
+
+public class TransactionColumnStoreTest {
+
+    private static Columns sample() {
+        return Columns.EMPTY
+                .with(3, entity(300, 700, TransactionEntity.TYPE_EXPENSE, 2, "Rent"))
+                .with(1, entity(100, 500, TransactionEntity.TYPE_EXPENSE, 1, "Food"))
+                .with(4, entity(100, 1000, TransactionEntity.TYPE_INCOME, null, null))
+                .with(2, entity(200, 250, TransactionEntity.TYPE_EXPENSE, 1, "Food"));
+    }
+
+    @Test
+    public void with_keepsRowsInTimestampThenIdOrder() {
+        Columns columns = sample();
+        assertEquals(4, columns.size);
+        long[] expected = {1, 4, 2, 3};
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(expected[i], columns.idAt(i));
+        }
+        assertEquals(3, columns.categorySlots());
+        assertEquals("Rent", columns.categoryName(2));
+        assertEquals(1, columns.categoryId("Food"));
+        assertEquals(Columns.NONE, columns.categoryId("Travel"));
+    }
+
+    @Test
+    public void sum_andCount_filterByRangeTypeAndCategory() {
+        Columns columns = sample();
+        assertEquals(1450, columns.sum(TransactionEntity.TYPE_EXPENSE, Columns.ANY, Long.MIN_VALUE, Long.MAX_VALUE));
+        assertEquals(1000, columns.sum(TransactionEntity.TYPE_INCOME, Columns.ANY, 100, 101));
+        assertEquals(750, columns.sum(Columns.ANY, 1, 0, 1000));
+        assertEquals(250, columns.sum(Columns.ANY, 1, 150, 300)); // end is exclusive
+        assertEquals(3, columns.count(Columns.ANY, Columns.ANY, 100, 300));
+
+        long[] byCategory = new long[columns.categorySlots()];
+        columns.sumByCategory(TransactionEntity.TYPE_EXPENSE, Long.MIN_VALUE, Long.MAX_VALUE, byCategory);
+        assertArrayEquals(new long[]{0, 750, 700}, byCategory);
+    }
+
+    @Test
+    public void without_removesOnlyThatRow() {
+        Columns columns = sample();
+        Columns fewer = columns.without(2, 200);
+        assertEquals(3, fewer.size);
+        assertEquals(500, fewer.sum(TransactionEntity.TYPE_EXPENSE, 1, Long.MIN_VALUE, Long.MAX_VALUE));
+        // A wrong timestamp hint still finds the row
+        assertEquals(2, fewer.without(3, 0).size);
+        assertSame(fewer, fewer.without(99, 200));
+        assertEquals(4, columns.size); // the original is untouched
+    }
+
+    @Test
+    public void withAndWithout_keepOrderAcrossSegments() {
+        Random random = new Random(16);
+        Columns columns = Columns.EMPTY;
+        List<long[]> rows = new ArrayList<>();  // id, timestamp, amount
+        int total = Columns.SEGMENT_ROWS * 5;
+        for (int id = 1; id <= total; id++) {
+            long timestamp = random.nextInt(total);
+            long amount = 1 + random.nextInt(1000);
+            columns = columns.with(id, entity(timestamp, amount, TransactionEntity.TYPE_EXPENSE, 1, "Food"));
+            rows.add(new long[]{id, timestamp, amount});
+        }
+        assertSameRows(rows, columns);
+
+        // Deletes shrink segments until they merge with a neighbour
+        while (rows.size() > 10) {
+            long[] row = rows.remove(random.nextInt(rows.size()));
+            columns = columns.without(row[0], row[1]);
+        }
+        assertSameRows(rows, columns);
+    }
+
+    @Test
+    public void load_failureIsContainedAndRetriedOnTheNextChange() {
+        int[] reads = {0};
+        ArchiveDao failing = (ArchiveDao) Proxy.newProxyInstance(ArchiveDao.class.getClassLoader(),
+                new Class<?>[]{ArchiveDao.class}, (proxy, method, args) -> {
+                    reads[0]++;
+                    throw new IllegalStateException("disk I/O error");
+                });
+        // Runs the load on this thread, so an exception escaping it would fail the test
+        TransactionColumnStore store = TransactionColumnStore.open(failing, null, Runnable::run, "load-fails");
+        try {
+            assertEquals(1, reads[0]);
+            assertNull(store.getColumns().getValue());
+            assertSame(Columns.EMPTY, store.snapshot());
+
+            TransactionChangeFeed.getInstance().publish(TransactionChange.Kind.INSERTED, "load-fails", 1, null,
+                    entity(100, 500, TransactionEntity.TYPE_EXPENSE, 1, "Food"));
+            assertEquals(2, reads[0]);
+            assertNull(store.getColumns().getValue());
+        } finally {
+            store.close();
+        }
+    }
+
+    private static void assertSameRows(List<long[]> rows, Columns columns) {
+        rows.sort((a, b) -> a[1] != b[1] ? Long.compare(a[1], b[1]) : Long.compare(a[0], b[0]));
+        assertEquals(rows.size(), columns.size);
+        long sum = 0;
+        for (int i = 0; i < rows.size(); i++) {
+            assertEquals(rows.get(i)[0], columns.idAt(i));
+            assertEquals(rows.get(i)[1], columns.timestampAt(i));
+            assertEquals(rows.get(i)[2], columns.amountAt(i));
+            sum += rows.get(i)[2];
+        }
+        assertEquals(sum, columns.sum(Columns.ANY, Columns.ANY, Long.MIN_VALUE, Long.MAX_VALUE));
+        long middle = rows.get(rows.size() / 2)[1];
+        int from = 0;
+        long later = 0;
+        for (long[] row : rows) {
+            if (row[1] < middle) {
+                from++;
+            } else {
+                later += row[2];
+            }
+        }
+        assertEquals(from, columns.lowerBound(middle));
+        assertEquals(later, columns.sum(Columns.ANY, Columns.ANY, middle, Long.MAX_VALUE));
+    }
+}
@@ -0,0 +1,86 @@
+package com.example.expensemanager.data;
+
+import com.example.expensemanager.data.TransactionColumnStore.Columns;
+import com.example.expensemanager.data.TrendSeries.Resolution;
+import com.example.expensemanager.data.local.TransactionEntity;
+import com.example.expensemanager.utils.DateKeys;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class TrendBucketsTest {
+
+    private static final int EXPENSE = TransactionEntity.TYPE_EXPENSE;
+    private static final int INCOME = TransactionEntity.TYPE_INCOME;
+
+    private static int day(int dayKey) {
+        return DateKeys.epochDay(dayKey);
+    }
+
+    private static TrendBuckets sample() {
+        TrendBuckets trends = new TrendBuckets(day(20240101), 366);
+        trends.add(day(20240930), EXPENSE, 1, 2, 300);  // Monday
+        trends.add(day(20241001), EXPENSE, 2, 2, 200);
+        trends.add(day(20241006), INCOME, Columns.NONE, 1, 5000);  // Sunday
+        trends.add(day(20241007), EXPENSE, 1, 1, 100);
+        trends.add(day(20241101), EXPENSE, 1, 2, 50);
+        return trends;
+    }
+
+    @Test
+    public void series_bucketsByWeekFromMonday() {
+        TrendSeries series = sample().series(Resolution.WEEK, Columns.ANY, Columns.ANY,
+                day(20240930), day(20241013));
+        assertEquals(2, series.size());
+        assertEquals(20240930, series.startDayKey(0));
+        assertEquals(20241007, series.startDayKey(1));
+        assertEquals(500, series.expenseAt(0));
+        assertEquals(5000, series.incomeAt(0));
+        assertEquals(100, series.expenseAt(1));
+        assertEquals(0, series.incomeAt(1));
+    }
+
+    @Test
+    public void series_countsOnlyDaysInsideTheWindowAtTheEdges() {
+        TrendSeries series = sample().series(Resolution.MONTH, Columns.ANY, Columns.ANY,
+                day(20241001), day(20241130));
+        assertEquals(2, series.size());
+        assertEquals(20241001, series.startDayKey(0));
+        assertEquals(300, series.expenseAt(0));
+        assertEquals(50, series.expenseAt(1));
+
+        // Starting mid-month leaves out the 1st
+        series = sample().series(Resolution.MONTH, Columns.ANY, Columns.ANY, day(20241002), day(20241031));
+        assertEquals(1, series.size());
+        assertEquals(20241001, series.startDayKey(0));
+        assertEquals(100, series.expenseAt(0));
+    }
+
+    @Test
+    public void series_filtersByCategoryOrWallet() {
+        TrendBuckets trends = sample();
+        TrendSeries food = trends.series(Resolution.MONTH, 1, Columns.ANY, day(20240101), day(20241231));
+        assertEquals(12, food.size());
+        assertEquals(300, food.expenseAt(8));
+        assertEquals(100, food.expenseAt(9));
+        assertEquals(50, food.expenseAt(10));
+
+        TrendSeries wallet = trends.series(Resolution.DAY, Columns.ANY, 1, day(20241006), day(20241007));
+        assertEquals(5000, wallet.incomeAt(0));
+        assertEquals(100, wallet.expenseAt(1));
+
+        TrendSeries none = trends.series(Resolution.WEEK, 9, Columns.ANY, day(20240101), day(20241231));
+        assertEquals(0, none.expenseAt(39));
+    }
+
+    @Test
+    public void add_takesAwayAndRejectsDaysOutsideSpan() {
+        TrendBuckets trends = sample();
+        assertTrue(trends.add(day(20240930), EXPENSE, 1, 2, -300));
+        assertFalse(trends.add(day(20250101), EXPENSE, 1, 2, 10));
+        TrendSeries series = trends.series(Resolution.WEEK, Columns.ANY, Columns.ANY,
+                day(20240930), day(20241006));
+        assertEquals(200, series.expenseAt(0));
+    }
+}
@@ -0,0 +1,112 @@
+package com.example.expensemanager.data.local;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class QuantileSketchTest {
+
+    private static final int N = 100_000;
+    // Rank error allowed; about three times the expected error at the default k
+    private static final double TOLERANCE = 0.02;
+
+    private static long[] amounts(long seed) {
+        Random random = new Random(seed);
+        long[] values = new long[N];
+        for (int i = 0; i < N; i++) {
+            // Skewed like real spending: many small, a few large
+            values[i] = (long) Math.exp(8 + 1.5 * random.nextGaussian());
+        }
+        return values;
+    }
+
+    private static void assertCloseInRank(long[] sorted, QuantileSketch sketch) {
+        for (double fraction : new double[]{0.01, 0.1, 0.25, 0.5, 0.75, 0.9, 0.99}) {
+            long estimate = sketch.quantile(fraction);
+            int below = Arrays.binarySearch(sorted, estimate);
+            if (below < 0) below = -below - 1;
+            double rank = below / (double) sorted.length;
+            assertEquals("rank of quantile " + fraction, fraction, rank, TOLERANCE);
+        }
+    }
+
+    @Test
+    public void quantile_isWithinRankErrorOfExact() {
+        long[] values = amounts(1);
+        QuantileSketch sketch = new QuantileSketch();
+        for (long value : values) {
+            sketch.update(value);
+        }
+        Arrays.sort(values);
+        assertEquals(N, sketch.count());
+        assertEquals(values[0], sketch.quantile(0));
+        assertEquals(values[N - 1], sketch.quantile(1));
+        assertCloseInRank(values, sketch);
+        // A few KB, not the 800 KB the values take
+        assertTrue(sketch.toBytes().length < 8 * 1024);
+    }
+
+    @Test
+    public void merge_matchesOneSketchOfAllValues() {
+        long[] values = amounts(2);
+        QuantileSketch[] months = new QuantileSketch[12];
+        for (int i = 0; i < months.length; i++) {
+            months[i] = new QuantileSketch();
+        }
+        for (int i = 0; i < N; i++) {
+            months[i % months.length].update(values[i]);
+        }
+        QuantileSketch merged = new QuantileSketch();
+        for (QuantileSketch month : months) {
+            merged.merge(month);
+        }
+        Arrays.sort(values);
+        assertEquals(N, merged.count());
+        assertCloseInRank(values, merged);
+    }
+
+    @Test
+    public void rank_isExactForSmallSketches() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (long value = 1; value <= 100; value++) {
+            sketch.update(value * 100);
+        }
+        assertEquals(5_000, sketch.quantile(0.5));
+        assertEquals(0.9, sketch.rank(9_000), 1e-9);
+        assertEquals(0, sketch.rank(99), 1e-9);
+        assertEquals(1, sketch.rank(10_000), 1e-9);
+    }
+
+    @Test
+    public void bytes_roundTrip() {
+        QuantileSketch sketch = new QuantileSketch();
+        for (long value : amounts(3)) {
+            sketch.update(value);
+        }
+        QuantileSketch copy = QuantileSketch.fromBytes(sketch.toBytes());
+        assertEquals(sketch.count(), copy.count());
+        assertArrayEquals(sketch.toBytes(), copy.toBytes());
+        assertEquals(sketch.quantile(0.9), copy.quantile(0.9));
+
+        // Updates continue where the original would
+        sketch.update(42);
+        copy.update(42);
+        assertArrayEquals(sketch.toBytes(), copy.toBytes());
+    }
+
+    @Test
+    public void emptySketch_answersZero() {
+        QuantileSketch sketch = QuantileSketch.fromBytes(new QuantileSketch().toBytes());
+        assertTrue(sketch.isEmpty());
+        assertEquals(0, sketch.quantile(0.5));
+        assertEquals(0, sketch.rank(100), 1e-9);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void fromBytes_rejectsUnknownFormat() {
+        QuantileSketch.fromBytes(new byte[]{9, 0, 0, 0});
+    }
+}
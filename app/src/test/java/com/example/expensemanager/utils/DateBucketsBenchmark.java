@@ -0,0 +1,74 @@
+package com.example.expensemanager.utils;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Day and month keys for a batch of 10,000 timestamps spread over five years, the
+ * way a backup import computes them: DateKeys builds a Calendar per call, DateBuckets
+ * looks the day up in its table.
+ * Run with the main method from the IDE or the unit test classpath.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DateBucketsBenchmark {
+
+    private static final int ROWS = 10_000;
+    private static final long FIVE_YEARS = 5 * 365L * 24 * 60 * 60 * 1000;
+
+    private long[] timestamps;
+
+    @Setup
+    public void setUp() {
+        Random random = new Random(42);
+        long end = System.currentTimeMillis();
+        timestamps = new long[ROWS];
+        for (int i = 0; i < ROWS; i++) {
+            timestamps[i] = end - (long) (random.nextDouble() * FIVE_YEARS);
+        }
+    }
+
+    @Benchmark
+    public long dateKeys() {
+        long sum = 0;
+        for (long timestamp : timestamps) {
+            sum += DateKeys.yearMonth(timestamp) + DateKeys.dayKey(timestamp);
+        }
+        return sum;
+    }
+
+    @Benchmark
+    public long dateBuckets() {
+        DateBuckets buckets = DateBuckets.current();
+        long sum = 0;
+        for (long timestamp : timestamps) {
+            int dayKey = buckets.dayKey(timestamp);
+            sum += dayKey / 100 + dayKey;
+        }
+        return sum;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(DateBucketsBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,82 @@
+package com.example.expensemanager.utils;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+import java.util.TimeZone;
+
+import static org.junit.Assert.*;
+
+public class DateBucketsTest {
+
+    // Half-hour DST, midnight DST changes, a 24-hour offset jump, and plain DST
+    private static final String[] ZONES = {
+            "America/New_York", "Europe/London", "Australia/Lord_Howe", "America/Sao_Paulo",
+            "Pacific/Apia", "Asia/Dhaka", "UTC"
+    };
+
+    private static int calendarDayKey(TimeZone zone, long millis) {
+        Calendar cal = Calendar.getInstance(zone);
+        cal.setTimeInMillis(millis);
+        return cal.get(Calendar.YEAR) * 10000 + (cal.get(Calendar.MONTH) + 1) * 100 + cal.get(Calendar.DAY_OF_MONTH);
+    }
+
+    @Test
+    public void dayKey_matchesCalendarAcrossDstAndOffsetChanges() {
+        for (String id : ZONES) {
+            TimeZone zone = TimeZone.getTimeZone(id);
+            DateBuckets buckets = new DateBuckets(zone, 2008, 2014);
+            Calendar cal = Calendar.getInstance(zone);
+            cal.clear();
+            cal.set(2007, Calendar.DECEMBER, 30);
+            long end = buckets.monthStart(2014, Calendar.JANUARY) + 2 * 24 * 3600_000L;
+            // Every 15 minutes, across the edges of the table as well
+            for (long millis = cal.getTimeInMillis(); millis < end; millis += 15 * 60_000L) {
+                int expected = calendarDayKey(zone, millis);
+                assertEquals(id + " at " + millis, expected, buckets.dayKey(millis));
+                assertEquals(id + " at " + millis, expected / 100, buckets.yearMonth(millis));
+            }
+        }
+    }
+
+    @Test
+    public void dayKey_isExactAtMidnights() {
+        TimeZone zone = TimeZone.getTimeZone("America/New_York");
+        DateBuckets buckets = new DateBuckets(zone, 2020, 2022);
+        Calendar cal = Calendar.getInstance(zone);
+        cal.clear();
+        cal.set(2021, Calendar.MARCH, 15);
+        long midnight = cal.getTimeInMillis();
+        assertEquals(20210315, buckets.dayKey(midnight));
+        assertEquals(20210314, buckets.dayKey(midnight - 1));
+    }
+
+    @Test
+    public void monthBounds_matchDateKeys() {
+        DateBuckets buckets = new DateBuckets(TimeZone.getDefault(), 2020, 2025);
+        for (int year = 2018; year < 2027; year++) {
+            for (int month = 0; month < 12; month++) {
+                assertEquals(DateKeys.monthStart(year, month), buckets.monthStart(year, month));
+                assertEquals(DateKeys.monthEnd(year, month), buckets.monthEnd(year, month));
+            }
+        }
+    }
+
+    @Test
+    public void current_followsTheDefaultZone() {
+        TimeZone original = TimeZone.getDefault();
+        try {
+            TimeZone.setDefault(TimeZone.getTimeZone("Asia/Dhaka"));
+            DateBuckets dhaka = DateBuckets.current();
+            assertSame(dhaka, DateBuckets.current());
+
+            TimeZone.setDefault(TimeZone.getTimeZone("America/Los_Angeles"));
+            DateBuckets losAngeles = DateBuckets.current();
+            assertNotSame(dhaka, losAngeles);
+            long millis = 1_700_000_000_000L;
+            assertEquals(DateKeys.dayKey(millis), losAngeles.dayKey(millis));
+        } finally {
+            TimeZone.setDefault(original);
+        }
+    }
+}
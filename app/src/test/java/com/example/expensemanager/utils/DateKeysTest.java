@@ -0,0 +1,41 @@
+package com.example.expensemanager.utils;
+
+import org.junit.Test;
+
+import java.util.Calendar;
+
+import static org.junit.Assert.*;
+
+public class DateKeysTest {
+
+    @Test
+    public void formatDayKey_padsMonthAndDay() {
+        assertEquals("2024-10-18", DateKeys.formatDayKey(20241018));
+        assertEquals("2025-01-05", DateKeys.formatDayKey(20250105));
+    }
+
+    @Test
+    public void epochDay_countsDaysFrom1970() {
+        assertEquals(0, DateKeys.epochDay(19700101));
+        assertEquals(-1, DateKeys.epochDay(19691231));
+        assertEquals(20014, DateKeys.epochDay(20241018));
+        assertEquals(DateKeys.epochDay(20240228) + 2, DateKeys.epochDay(20240301));
+        assertEquals(DateKeys.epochDay(21000228) + 1, DateKeys.epochDay(21000301));
+    }
+
+    @Test
+    public void fromEpochDay_invertsEpochDay() {
+        assertEquals(19700101, DateKeys.fromEpochDay(0));
+        assertEquals(20240229, DateKeys.fromEpochDay(DateKeys.epochDay(20240229)));
+        for (int day = -700_000; day < 800_000; day += 37) {
+            assertEquals(day, DateKeys.epochDay(DateKeys.fromEpochDay(day)));
+        }
+    }
+
+    @Test
+    public void formatDayKey_matchesCalendarDate() {
+        Calendar cal = Calendar.getInstance();
+        cal.set(2023, Calendar.FEBRUARY, 28, 23, 59);
+        assertEquals("2023-02-28", DateKeys.formatDayKey(DateKeys.dayKey(cal.getTimeInMillis())));
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.expensemanager.utils;
+
+import org.junit.Test;
+
+import static org.junit.Assert.*;
+
+public class MoneyTest {
+
+    @Test
+    public void parse_roundsToWholePaisa() {
+        assertEquals(1250, Money.parse("12.5").getMinor());
+        assertEquals(1235, Money.parse(" 12.345 ").getMinor());
+        assertEquals(100000, Money.parse("1000").getMinor());
+        assertEquals(-199, Money.parse("-1.99").getMinor());
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void parse_rejectsText() {
+        Money.parse("twelve");
+    }
+
+    @Test
+    public void toString_hasTwoDecimals() {
+        assertEquals("12.50", Money.ofMinor(1250).toString());
+        assertEquals("0.05", Money.ofMinor(5).toString());
+        assertEquals("-3.00", Money.ofMinor(-300).toString());
+    }
+
+    @Test
+    public void sums_areExactWhereDoublesDrift() {
+        double doubleSum = 0;
+        Money moneySum = Money.ZERO;
+        for (int i = 0; i < 1_000_000; i++) {
+            doubleSum += 0.1;
+            moneySum = moneySum.plus(Money.parse("0.1"));
+        }
+        assertNotEquals(100000.0, doubleSum, 0.0);
+        assertEquals(Money.ofMinor(10_000_000), moneySum);
+    }
+
+    @Test
+    public void toMinor_roundTripsDoubleAmounts() {
+        assertEquals(1999, Money.toMinor(19.99));
+        assertEquals(19.99, Money.toMajor(1999), 0.0);
+    }
+}